@@ -2,9 +2,17 @@ package cn.autumnclouds.sql;
 
 import cn.autumnclouds.sql.core.DatabaseContainer;
 import cn.autumnclouds.sql.core.SQLExecutor;
+import cn.autumnclouds.sql.sink.ResultSink;
+
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
 import java.util.Scanner;
 
 /**
+ * 从标准输入逐行读取SQL语句并执行，查询结果写入标准输出。
+ * <p>
+ * 参数 --format=text|csv|jsonl|binary 选择查询结果的格式，默认为对齐文本。
+ *
  * @author Oreki
  * @since ${DATE}
  */
@@ -12,6 +20,14 @@ public class Main {
     public static final String test_sql = "CREATE DATABASE IF NOT EXISTS test;USE test;CREATE TABLE IF NOT EXISTS test_table (id INT, name VARCHAR);INSERT INTO test_table (id,name) VALUES (1, 'test1'), (2, 'test2'), (3, ‘test3’);select * from test_table order by id desc;DELETE FROM test_table WHERE id = 1;SELECT * FROM test_table;UPDATE test_table SET name = 'test4' WHERE id = 2;SELECT * FROM test_table WHERE id = 2;DROP TABLE test_table;DROP DATABASE test;";
 
     public static void main(String[] args) {
+        String format = "text";
+        for (String arg : args) {
+            if (arg.startsWith("--format=")) {
+                format = arg.substring("--format=".length());
+            }
+        }
+        // 直接写入标准输出的文件描述符，由编码器负责缓冲
+        ResultSink sink = ResultSink.of(format, new FileOutputStream(FileDescriptor.out));
         SQLExecutor sqlExecutor = new SQLExecutor(DatabaseContainer.getInstance());
         Scanner scanner = new Scanner(System.in);
         while (scanner.hasNextLine()) {
@@ -19,7 +35,7 @@ public class Main {
             if ("exit".equals(sql)) {
                 break;
             }
-            sqlExecutor.executeSql(sql);
+            sqlExecutor.executeSql(sql, sink);
         }
     }
 }
\ No newline at end of file
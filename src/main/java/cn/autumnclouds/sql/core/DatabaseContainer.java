@@ -1,14 +1,20 @@
 package cn.autumnclouds.sql.core;
 
 import cn.autumnclouds.sql.entity.Database;
+import cn.autumnclouds.sql.entity.QueryResult;
+import cn.autumnclouds.sql.entity.Sampling;
+import cn.autumnclouds.sql.sink.ResultSink;
 import com.alibaba.druid.sql.ast.SQLExpr;
 import com.alibaba.druid.sql.ast.SQLOrderBy;
+import com.alibaba.druid.sql.ast.SQLPartition;
+import com.alibaba.druid.sql.ast.SQLPartitionBy;
 import com.alibaba.druid.sql.ast.statement.*;
 import com.alibaba.druid.util.StringUtils;
 
-import java.util.HashMap;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 数据库容器类，用于管理多个数据库对象。
@@ -20,7 +26,7 @@ public class DatabaseContainer {
     private final Map<String, Database> databaseMap;  // 数据库对象映射
 
     private static final String DEFAULT_DATA_BASE_NAME = "default";  // 默认数据库名称
-    private String currentDatabaseName;  // 当前数据库名称
+    private volatile String currentDatabaseName;  // 当前数据库名称（未指定数据库的会话使用）
 
     /**
      * 切换使用指定名称的数据库。
@@ -46,7 +52,33 @@ public class DatabaseContainer {
      * @param databaseName  数据库名称
      */
     public void dropDatabase(String databaseName) {
-        databaseMap.remove(databaseName);
+        Database database = databaseMap.remove(databaseName);
+        if (database != null) {
+            database.close();
+        }
+    }
+
+    /**
+     * 将数据库备份到目录，每张表一个二进制快照文件。
+     *
+     * @param databaseName  数据库名称
+     * @param directory     快照目录
+     */
+    public void backupDatabase(String databaseName, Path directory) {
+        getDatabase(databaseName).backup(directory);
+    }
+
+    /**
+     * 从目录恢复数据库，已存在的同名数据库会被替换。
+     *
+     * @param databaseName  数据库名称
+     * @param directory     快照目录
+     */
+    public void restoreDatabase(String databaseName, Path directory) {
+        Database replaced = databaseMap.put(databaseName, Database.restore(databaseName, directory));
+        if (replaced != null) {
+            replaced.close();
+        }
     }
 
     /**
@@ -54,11 +86,64 @@ public class DatabaseContainer {
      *
      * @param tableSource          表格源
      * @param columnDefinitions    列定义列表
+     * @param constraints          表级约束列表
+     * @param partitionBy          PARTITION BY 子句，为 null 时不分区
+     * @param comment              表注释，为 null 时没有注释
+     * @param ifNotExists          表格已存在时是否忽略，否则抛出异常
      */
-    public void createTable(SQLExprTableSource tableSource, List<SQLColumnDefinition> columnDefinitions) {
+    public void createTable(SQLExprTableSource tableSource, List<SQLColumnDefinition> columnDefinitions,
+                            List<SQLTableConstraint> constraints, SQLPartitionBy partitionBy, SQLExpr comment, boolean ifNotExists) {
         Database database = getDatabase(tableSource);
         String tableName = tableSource.getTableName();
-        database.creatTable(tableName, columnDefinitions);
+        database.creatTable(tableName, columnDefinitions, constraints, partitionBy, comment, ifNotExists);
+    }
+
+    /**
+     * 创建物化视图。
+     *
+     * @param tableSource   视图名称对应的表格源
+     * @param select        视图定义的查询语句
+     */
+    public void createMaterializedView(SQLExprTableSource tableSource, SQLSelect select) {
+        Database database = getDatabase(tableSource);
+        String viewName = tableSource.getTableName();
+        database.createMaterializedView(viewName, select);
+    }
+
+    /**
+     * 删除物化视图。
+     *
+     * @param tableSource   视图名称对应的表格源
+     */
+    public void dropMaterializedView(SQLExprTableSource tableSource) {
+        Database database = getDatabase(tableSource);
+        String viewName = tableSource.getTableName();
+        database.dropMaterializedView(viewName);
+    }
+
+    /**
+     * 向表格添加 RANGE 分区。
+     *
+     * @param tableSource   表格源
+     * @param definitions   分区定义列表
+     */
+    public void addPartitions(SQLExprTableSource tableSource, List<SQLPartition> definitions) {
+        Database database = getDatabase(tableSource);
+        String tableName = tableSource.getTableName();
+        database.addPartitions(tableName, definitions);
+    }
+
+    /**
+     * 删除表格的 RANGE 分区及其中的行。
+     *
+     * @param tableSource       表格源
+     * @param partitionNames    分区名称列表
+     * @return                  删除的行数
+     */
+    public long dropPartitions(SQLExprTableSource tableSource, List<String> partitionNames) {
+        Database database = getDatabase(tableSource);
+        String tableName = tableSource.getTableName();
+        return database.dropPartitions(tableName, partitionNames);
     }
 
     /**
@@ -80,11 +165,58 @@ public class DatabaseContainer {
      * @param tableSource   表格源
      * @param columnNames   列名称列表
      * @param valuesList    值列表
+     * @param duplicateKeyUpdate  ON DUPLICATE KEY UPDATE 的赋值列表，为空时按普通插入处理
+     * @return              受影响的行数
+     */
+    public int insertRow(SQLExprTableSource tableSource, List<String> columnNames, List<SQLInsertStatement.ValuesClause> valuesList,
+                         List<SQLExpr> duplicateKeyUpdate) {
+        Database database = getDatabase(tableSource);
+        String tableName = tableSource.getTableName();
+        return database.insertRow(tableName, columnNames, valuesList, duplicateKeyUpdate);
+    }
+
+    /**
+     * 向表格中插入已计算出的行，用于 INSERT ... SELECT。
+     *
+     * @param tableSource   表格源
+     * @param columnNames   列名称列表
+     * @param rows          行数据列表
+     * @param duplicateKeyUpdate  ON DUPLICATE KEY UPDATE 的赋值列表，为空时按普通插入处理
+     * @return              受影响的行数
      */
-    public void insertRow(SQLExprTableSource tableSource, List<String> columnNames, List<SQLInsertStatement.ValuesClause> valuesList) {
+    public int insertRows(SQLExprTableSource tableSource, List<String> columnNames, List<List<Object>> rows,
+                          List<SQLExpr> duplicateKeyUpdate) {
         Database database = getDatabase(tableSource);
         String tableName = tableSource.getTableName();
-        database.insertRow(tableName, columnNames, valuesList);
+        return database.insertRows(tableName, columnNames, rows, duplicateKeyUpdate);
+    }
+
+    /**
+     * 以 REPLACE 方式向表格中插入行，先删除键值冲突的已有行。
+     *
+     * @param tableSource   表格源
+     * @param columnNames   列名称列表
+     * @param valuesList    值列表
+     * @return              插入和删除的行数之和
+     */
+    public int replaceRow(SQLExprTableSource tableSource, List<String> columnNames, List<SQLInsertStatement.ValuesClause> valuesList) {
+        Database database = getDatabase(tableSource);
+        String tableName = tableSource.getTableName();
+        return database.replaceRow(tableName, columnNames, valuesList);
+    }
+
+    /**
+     * 以 REPLACE 方式向表格中插入已计算出的行，用于 REPLACE ... SELECT。
+     *
+     * @param tableSource   表格源
+     * @param columnNames   列名称列表
+     * @param rows          行数据列表
+     * @return              插入和删除的行数之和
+     */
+    public int replaceRows(SQLExprTableSource tableSource, List<String> columnNames, List<List<Object>> rows) {
+        Database database = getDatabase(tableSource);
+        String tableName = tableSource.getTableName();
+        return database.replaceRows(tableName, columnNames, rows);
     }
 
     /**
@@ -92,11 +224,12 @@ public class DatabaseContainer {
      *
      * @param exprTableSource  表格源
      * @param where            删除条件
+     * @return                 删除的行数
      */
-    public void deleteRow(SQLExprTableSource exprTableSource, SQLExpr where) {
+    public int deleteRow(SQLExprTableSource exprTableSource, SQLExpr where) {
         Database database = getDatabase(exprTableSource);
         String tableName = exprTableSource.getTableName();
-        database.deleteRow(tableName, where);
+        return database.deleteRow(tableName, where);
     }
 
     /**
@@ -105,10 +238,11 @@ public class DatabaseContainer {
      * @param exprTableSource   表格源
      * @param updateSetItems    更新项列表
      * @param where             更新条件
+     * @return                  更新的行数
      */
-    public void updateRow(SQLExprTableSource exprTableSource, List<SQLUpdateSetItem> updateSetItems, SQLExpr where) {
+    public int updateRow(SQLExprTableSource exprTableSource, List<SQLUpdateSetItem> updateSetItems, SQLExpr where) {
         Database database = getDatabase(exprTableSource);
-        database.updateRow(exprTableSource.getTableName(), updateSetItems, where);
+        return database.updateRow(exprTableSource.getTableName(), updateSetItems, where);
     }
 
     /**
@@ -118,11 +252,56 @@ public class DatabaseContainer {
      * @param selectList     查询项列表
      * @param where          查询条件
      * @param orderBy        排序规则
+     * @return               查询结果
+     */
+    public QueryResult selectRow(SQLExprTableSource tableSource, List<SQLSelectItem> selectList, SQLExpr where, SQLOrderBy orderBy) {
+        Database database = getDatabase(tableSource);
+        String tableName = tableSource.getTableName();
+        return database.selectRow(tableName, selectList, where, orderBy);
+    }
+
+    /**
+     * 查询表格中的行，并将结果行依次写入接收者。
+     *
+     * @param tableSource    表格源
+     * @param selectList     查询项列表
+     * @param where          查询条件
+     * @param orderBy        排序规则
+     * @param sink           结果接收者
+     * @return               结果行数
+     */
+    public long selectRow(SQLExprTableSource tableSource, List<SQLSelectItem> selectList, SQLExpr where, SQLOrderBy orderBy, ResultSink sink) {
+        return selectRow(tableSource, selectList, where, orderBy, null, sink);
+    }
+
+    /**
+     * 按抽样方式查询表格中的行，并将结果行依次写入接收者。
+     *
+     * @param tableSource    表格源
+     * @param selectList     查询项列表
+     * @param where          查询条件
+     * @param orderBy        排序规则
+     * @param sampling       抽样方式，为 null 时不抽样
+     * @param sink           结果接收者
+     * @return               结果行数
      */
-    public void selectRow(SQLExprTableSource tableSource, List<SQLSelectItem> selectList, SQLExpr where, SQLOrderBy orderBy) {
+    public long selectRow(SQLExprTableSource tableSource, List<SQLSelectItem> selectList, SQLExpr where, SQLOrderBy orderBy,
+                          Sampling sampling, ResultSink sink) {
         Database database = getDatabase(tableSource);
         String tableName = tableSource.getTableName();
-        database.selectRow(tableName, selectList, where, orderBy);
+        return database.selectRow(tableName, selectList, where, orderBy, sampling, sink);
+    }
+
+    /**
+     * 判断两个表格源是否指向同一张表，未指定数据库的表格源使用当前数据库。
+     *
+     * @param tableSource1  表格源
+     * @param tableSource2  表格源
+     * @return              是否为同一张表
+     */
+    public boolean isSameTable(SQLExprTableSource tableSource1, SQLExprTableSource tableSource2) {
+        return getDatabase(tableSource1) == getDatabase(tableSource2)
+                && tableSource1.getTableName().equals(tableSource2.getTableName());
     }
 
     /**
@@ -137,6 +316,17 @@ public class DatabaseContainer {
         if (StringUtils.isEmpty(databaseName)) {
             databaseName = currentDatabaseName;
         }
+        return getDatabase(databaseName);
+    }
+
+    /**
+     * 根据名称获取数据库对象。
+     *
+     * @param databaseName     数据库名称
+     * @return                 数据库对象
+     * @throws RuntimeException 若数据库不存在时抛出异常
+     */
+    private Database getDatabase(String databaseName) {
         Database database = databaseMap.get(databaseName);
         if (database == null) {
             throw new RuntimeException("database named " + databaseName + " does not exist");
@@ -146,7 +336,7 @@ public class DatabaseContainer {
 
     // 单例模式
     private DatabaseContainer() {
-        databaseMap = new HashMap<>();
+        databaseMap = new ConcurrentHashMap<>();
         databaseMap.put(DEFAULT_DATA_BASE_NAME, new Database(DEFAULT_DATA_BASE_NAME));
         currentDatabaseName = DEFAULT_DATA_BASE_NAME;
     }
@@ -0,0 +1,92 @@
+package cn.autumnclouds.sql.core;
+
+import cn.autumnclouds.sql.entity.QueryResult;
+import cn.autumnclouds.sql.entity.QueryStatistics;
+
+/**
+ * 一条SQL语句的执行结果，查询语句包含查询结果（结果已写入接收者时只包含行数），其余语句包含影响的行数。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class ExecutionResult {
+    private final boolean query;                // 是否为查询语句
+    private final QueryResult queryResult;      // 查询结果，非查询语句或结果已写入接收者时为 null
+    private final long rowCount;                // 查询结果的行数，非查询语句为 0
+    private final int updateCount;              // 影响的行数，查询语句为 -1
+    private final QueryStatistics statistics;   // 执行统计信息
+
+    private ExecutionResult(boolean query, QueryResult queryResult, long rowCount, int updateCount, QueryStatistics statistics) {
+        this.query = query;
+        this.queryResult = queryResult;
+        this.rowCount = rowCount;
+        this.updateCount = updateCount;
+        this.statistics = statistics;
+    }
+
+    /**
+     * 创建查询语句的执行结果。
+     *
+     * @param queryResult 查询结果
+     * @param statistics  执行统计信息
+     * @return 执行结果
+     */
+    public static ExecutionResult ofQuery(QueryResult queryResult, QueryStatistics statistics) {
+        return new ExecutionResult(true, queryResult, queryResult.getRows().size(), -1, statistics);
+    }
+
+    /**
+     * 创建结果已写入接收者的查询语句的执行结果。
+     *
+     * @param rowCount   写入的行数
+     * @param statistics 执行统计信息
+     * @return 执行结果
+     */
+    public static ExecutionResult ofStreamedQuery(long rowCount, QueryStatistics statistics) {
+        return new ExecutionResult(true, null, rowCount, -1, statistics);
+    }
+
+    /**
+     * 创建非查询语句的执行结果。
+     *
+     * @param updateCount 影响的行数
+     * @param statistics  执行统计信息
+     * @return 执行结果
+     */
+    public static ExecutionResult ofUpdateCount(int updateCount, QueryStatistics statistics) {
+        return new ExecutionResult(false, null, 0, updateCount, statistics);
+    }
+
+    /**
+     * 判断是否为查询语句的执行结果。
+     *
+     * @return 查询语句时返回 true
+     */
+    public boolean isQuery() {
+        return query;
+    }
+
+    public QueryResult getQueryResult() {
+        return queryResult;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public int getUpdateCount() {
+        return updateCount;
+    }
+
+    public QueryStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public String toString() {
+        if (!query) {
+            return "updateCount=" + updateCount;
+        }
+        return queryResult != null ? queryResult.toString() : "rowCount=" + rowCount;
+    }
+}
@@ -0,0 +1,75 @@
+package cn.autumnclouds.sql.core;
+
+import cn.autumnclouds.sql.entity.Table;
+import cn.autumnclouds.sql.sink.ResultSink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * 将源查询的结果行分批写入目标表的接收者，用于 INSERT ... SELECT 和 REPLACE ... SELECT。
+ * <p>
+ * 结果行积累到批量大小时在目标表的一次写锁内追加，内存中最多保留一批行，不会物化整个源结果集。
+ * 各批次分别提交：某一批失败（如键值冲突）时之前的批次已经写入目标表，与非事务存储引擎的行为一致。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+class InsertingResultSink implements ResultSink {
+    static final int BATCH_SIZE = Table.BLOCK_SIZE;     // 每批写入的行数
+
+    private final int batchSize;                        // 每批写入的行数
+    private final ToIntFunction<List<List<Object>>> target;     // 将一批行写入目标表，返回受影响的行数
+    private List<List<Object>> batch;                   // 尚未写入的行
+    private int affected;                               // 已写入的批次受影响的行数
+
+    /**
+     * 创建一个新的 InsertingResultSink 对象。
+     *
+     * @param batchSize 每批写入的行数
+     * @param target    将一批行写入目标表的函数，返回受影响的行数
+     */
+    InsertingResultSink(int batchSize, ToIntFunction<List<List<Object>>> target) {
+        this.batchSize = batchSize;
+        this.target = target;
+        this.batch = new ArrayList<>();
+    }
+
+    @Override
+    public void begin(List<String> columnNames) {
+        batch = new ArrayList<>();
+    }
+
+    @Override
+    public void accept(List<Object> row) {
+        batch.add(row);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void end() {
+        flush();
+    }
+
+    // 将积累的行写入目标表，写入后丢弃这一批行
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<List<Object>> rows = batch;
+        batch = new ArrayList<>();
+        affected += target.applyAsInt(rows);
+    }
+
+    /**
+     * 获取所有已写入的批次受影响的行数。
+     *
+     * @return 受影响的行数
+     */
+    int getAffected() {
+        return affected;
+    }
+}
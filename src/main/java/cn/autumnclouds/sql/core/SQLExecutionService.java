@@ -0,0 +1,149 @@
+package cn.autumnclouds.sql.core;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SQL异步执行服务，为 {@link SQLExecutor#executeAsync(String)} 提供执行线程、准入控制和超时调度
+ * <p>
+ * 服务中等待执行和正在执行的语句总数受准入队列容量限制，队列已满时根据准入策略拒绝或阻塞提交者。
+ * 同一个服务可以被多个会话（SQLExecutor）共享。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class SQLExecutionService {
+
+    /**
+     * 准入队列已满时的处理策略
+     */
+    public enum AdmissionPolicy {
+        REJECT,     // 立即拒绝，返回以 RejectedExecutionException 异常结束的 Future
+        BLOCK       // 阻塞提交线程，直到队列中有空位
+    }
+
+    private static final int DEFAULT_MAX_PENDING_STATEMENTS = 1024;    // 默认准入队列容量
+
+    private final ExecutorService executor;             // 执行语句的线程池
+    private final Semaphore admission;                  // 准入许可，每条等待或执行中的语句占用一个
+    private final AdmissionPolicy admissionPolicy;      // 准入策略
+    private final ScheduledExecutorService timer;       // 超时调度器
+
+    /**
+     * 创建一个新的 SQLExecutionService 对象
+     *
+     * @param executor             执行语句的线程池
+     * @param maxPendingStatements 准入队列容量，即等待和执行中的语句总数上限
+     * @param admissionPolicy      准入队列已满时的处理策略
+     */
+    public SQLExecutionService(ExecutorService executor, int maxPendingStatements, AdmissionPolicy admissionPolicy) {
+        if (maxPendingStatements <= 0) {
+            throw new IllegalArgumentException("maxPendingStatements must be positive");
+        }
+        this.executor = executor;
+        this.admission = new Semaphore(maxPendingStatements);
+        this.admissionPolicy = admissionPolicy;
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("sql-executor-timer"));
+    }
+
+    /**
+     * 创建使用固定大小线程池的执行服务
+     *
+     * @param threads              线程数
+     * @param maxPendingStatements 准入队列容量
+     * @param admissionPolicy      准入策略
+     * @return 执行服务
+     */
+    public static SQLExecutionService fixedThreadPool(int threads, int maxPendingStatements, AdmissionPolicy admissionPolicy) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, daemonThreadFactory("sql-executor-worker"));
+        return new SQLExecutionService(executor, maxPendingStatements, admissionPolicy);
+    }
+
+    /**
+     * 创建每条语句使用一个虚拟线程的执行服务，需要运行在 JDK 21 及以上版本
+     *
+     * @param maxPendingStatements 准入队列容量
+     * @param admissionPolicy      准入策略
+     * @return 执行服务
+     * @throws UnsupportedOperationException 当前 JDK 不支持虚拟线程时抛出异常
+     */
+    public static SQLExecutionService virtualThreads(int maxPendingStatements, AdmissionPolicy admissionPolicy) {
+        try {
+            // 以 Java 8 为编译目标，通过反射调用 JDK 21 的 API
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new SQLExecutionService(executor, maxPendingStatements, admissionPolicy);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("virtual threads require JDK 21 or later", e);
+        }
+    }
+
+    /**
+     * 获取默认的执行服务：JDK 21 及以上使用虚拟线程，否则使用与处理器数量相同的固定线程池，队列已满时阻塞提交者
+     *
+     * @return 默认的执行服务
+     */
+    public static SQLExecutionService getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * 关闭执行服务，已提交的语句会继续执行
+     */
+    public void shutdown() {
+        executor.shutdown();
+        timer.shutdown();
+    }
+
+    // 获取准入许可，队列已满时根据准入策略拒绝或阻塞
+    void acquire() {
+        if (admissionPolicy == AdmissionPolicy.REJECT) {
+            if (!admission.tryAcquire()) {
+                throw new RejectedExecutionException("admission queue is full");
+            }
+            return;
+        }
+        try {
+            admission.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted while waiting for admission", e);
+        }
+    }
+
+    // 释放准入许可
+    void release() {
+        admission.release();
+    }
+
+    // 在执行线程中运行任务
+    void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    // 延迟运行任务
+    ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return timer.schedule(task, delay, unit);
+    }
+
+    // 创建守护线程工厂，避免执行服务阻止进程退出
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class DefaultHolder {
+        private static final SQLExecutionService INSTANCE = createDefault();
+
+        private static SQLExecutionService createDefault() {
+            try {
+                return virtualThreads(DEFAULT_MAX_PENDING_STATEMENTS, AdmissionPolicy.BLOCK);
+            } catch (UnsupportedOperationException e) {
+                return fixedThreadPool(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_PENDING_STATEMENTS, AdmissionPolicy.BLOCK);
+            }
+        }
+    }
+}
@@ -1,91 +1,285 @@
 package cn.autumnclouds.sql.core;
 
+import cn.autumnclouds.sql.entity.QueryResult;
+import cn.autumnclouds.sql.entity.QueryStatistics;
+import cn.autumnclouds.sql.entity.Sampling;
+import cn.autumnclouds.sql.sink.AlignedTextResultSink;
+import cn.autumnclouds.sql.sink.CollectingResultSink;
+import cn.autumnclouds.sql.sink.ResultSink;
 import com.alibaba.druid.DbType;
 import com.alibaba.druid.sql.ast.*;
 import com.alibaba.druid.sql.ast.statement.*;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlInsertStatement;
 import com.alibaba.druid.sql.parser.*;
+import com.alibaba.druid.util.StringUtils;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToIntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
  * SQL执行器，用于执行SQL语句
- * 支持的操作包括：创建数据库、创建表、删除数据库、删除表、插入数据、删除数据、更新数据、查询数据、切换数据库
+ * 支持的操作包括：创建数据库、创建表、删除数据库、删除表、插入数据、删除数据、更新数据、查询数据、切换数据库、备份和恢复数据库
  * 使用阿里巴巴的Druid库进行SQL解析和处理
+ * <p>
+ * 每个SQLExecutor对象是一个会话：USE切换的数据库只对本会话生效；
+ * 通过 {@link #executeAsync(String)} 提交的语句在会话内按提交顺序依次执行，不同会话之间并发执行
  *
  * @author Oreki
  * @since 2023/5/29
  */
 public class SQLExecutor {
 
+    // BACKUP DATABASE db TO '/path' 与 RESTORE DATABASE db FROM '/path'，Druid 无法解析，单独处理
+    private static final Pattern BACKUP_RESTORE_PATTERN = Pattern.compile(
+            "^\\s*(BACKUP\\s+DATABASE\\s+`?(\\w+)`?\\s+TO|RESTORE\\s+DATABASE\\s+`?(\\w+)`?\\s+FROM)\\s+'([^']*)'\\s*$",
+            Pattern.CASE_INSENSITIVE);
+
     private final DatabaseContainer databaseContainer;
+    private final SQLExecutionService executionService;    // 异步执行服务
+    private volatile String currentDatabaseName;        // 会话的当前数据库，为 null 时使用容器的当前数据库
+    private volatile QueryStatistics lastStatistics;   // 最近一条语句的统计信息
+    private ResultSink consoleSink;                    // executeSql 默认使用的标准输出编码器
+    private CompletableFuture<Void> sessionTail = CompletableFuture.completedFuture(null);  // 会话中最后提交的异步语句结束时完成
 
     /**
-     * 构造函数，接收一个DatabaseContainer对象作为参数
+     * 构造函数，接收一个DatabaseContainer对象作为参数，异步语句使用默认的执行服务
      *
      * @param databaseContainer 数据库容器对象，用于管理数据库和表
      */
     public SQLExecutor(DatabaseContainer databaseContainer) {
+        this(databaseContainer, null);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param databaseContainer 数据库容器对象，用于管理数据库和表
+     * @param executionService  异步语句使用的执行服务，为 null 时使用默认的执行服务
+     */
+    public SQLExecutor(DatabaseContainer databaseContainer, SQLExecutionService executionService) {
         this.databaseContainer = databaseContainer;
+        this.executionService = executionService;
     }
 
     /**
      * 批量执行SQL语句
      *
      * @param sqls SQL语句数组
+     * @return 最后一条语句的执行结果
      */
-    private void executeBatch(String[] sqls) {
+    private ExecutionResult executeBatch(String[] sqls) {
+        ExecutionResult result = null;
         for (String sql : sqls) {
-            // 创建SQL语句解析器，并指定使用的数据库类型为MySQL
-            SQLStatementParser sqlStatementParser = SQLParserUtils.createSQLStatementParser(sql, DbType.mysql);
-            // 获取SQL语句的类型
-            SQLType sqlType = SQLParserUtils.getSQLType(sql, DbType.mysql);
-            if (sqlType.equals(SQLType.CREATE)) {
-                // 判断是创建数据库还是创建表
-                SQLStatement sqlCreateStatement = sqlStatementParser.parseCreate();
-                if (sqlCreateStatement instanceof SQLCreateDatabaseStatement) {
-                    createDatabase((SQLCreateDatabaseStatement) sqlCreateStatement);
-                } else if (sqlCreateStatement instanceof SQLCreateTableStatement) {
-                    createTable((SQLCreateTableStatement) sqlCreateStatement);
-                }
-            } else if (sqlType.equals(SQLType.DROP)) {
-                // 判断是删除数据库还是删除表
-                SQLStatement sqlDropStatement = sqlStatementParser.parseDrop();
-                if (sqlDropStatement instanceof SQLDropDatabaseStatement) {
-                    dropDatabase((SQLDropDatabaseStatement) sqlDropStatement);
-                } else if (sqlDropStatement instanceof SQLDropTableStatement) {
-                    dropTable((SQLDropTableStatement) sqlDropStatement);
-                }
-            } else if (sqlType.equals(SQLType.INSERT)) {
-                SQLStatement sqlInsertStatement = sqlStatementParser.parseInsert();
-                insertRow((SQLInsertStatement) sqlInsertStatement);
-            } else if (sqlType.equals(SQLType.DELETE)) {
-                SQLDeleteStatement sqlDeleteStatement = sqlStatementParser.parseDeleteStatement();
-                deleteRow(sqlDeleteStatement);
-            } else if (sqlType.equals(SQLType.UPDATE)) {
-                SQLUpdateStatement sqlUpdateStatement = sqlStatementParser.parseUpdateStatement();
-                updateRow(sqlUpdateStatement);
-            } else if (sqlType.equals(SQLType.SELECT)) {
-                SQLStatement sqlSelectStatement = sqlStatementParser.parseSelect();
-                selectRow((SQLSelectStatement) sqlSelectStatement);
-            } else if (sqlType.equals(SQLType.USE)) {
-                SQLUseStatement sqlUseStatement = sqlStatementParser.parseUse();
-                useDatabase(sqlUseStatement);
-            } else {
+            // 语句被取消或超时时不再执行后续语句
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("statement cancelled");
+            }
+            result = executeStatement(sql);
+        }
+        return result;
+    }
+
+    /**
+     * 执行一条SQL语句，查询结果收集在执行结果中
+     *
+     * @param sql SQL语句
+     * @return 执行结果
+     */
+    private ExecutionResult executeStatement(String sql) {
+        return executeStatement(sql, null);
+    }
+
+    /**
+     * 执行一条SQL语句
+     *
+     * @param sql  SQL语句
+     * @param sink 查询结果的接收者，为 null 时查询结果收集在执行结果中
+     * @return 执行结果
+     */
+    private ExecutionResult executeStatement(String sql, ResultSink sink) {
+        QueryStatistics statistics = QueryStatistics.begin();
+        lastStatistics = statistics;
+        Matcher backupRestoreMatcher = BACKUP_RESTORE_PATTERN.matcher(sql);
+        if (backupRestoreMatcher.matches()) {
+            backupOrRestore(backupRestoreMatcher);
+            return ExecutionResult.ofUpdateCount(0, statistics);
+        }
+        // 创建SQL语句解析器，并指定使用的数据库类型为MySQL
+        SQLStatementParser sqlStatementParser = SQLParserUtils.createSQLStatementParser(sql, DbType.mysql);
+        // 获取SQL语句的类型
+        SQLType sqlType = SQLParserUtils.getSQLType(sql, DbType.mysql);
+        int updateCount = 0;
+        if (sqlType.equals(SQLType.CREATE)) {
+            // 判断是创建数据库还是创建表
+            SQLStatement sqlCreateStatement = sqlStatementParser.parseCreate();
+            if (sqlCreateStatement instanceof SQLCreateDatabaseStatement) {
+                createDatabase((SQLCreateDatabaseStatement) sqlCreateStatement);
+            } else if (sqlCreateStatement instanceof SQLCreateTableStatement) {
+                createTable((SQLCreateTableStatement) sqlCreateStatement);
+            } else if (sqlCreateStatement instanceof SQLCreateMaterializedViewStatement) {
+                createMaterializedView((SQLCreateMaterializedViewStatement) sqlCreateStatement);
+            }
+        } else if (sqlType.equals(SQLType.DROP)) {
+            // 判断是删除数据库还是删除表
+            SQLStatement sqlDropStatement = sqlStatementParser.parseDrop();
+            if (sqlDropStatement instanceof SQLDropDatabaseStatement) {
+                dropDatabase((SQLDropDatabaseStatement) sqlDropStatement);
+            } else if (sqlDropStatement instanceof SQLDropTableStatement) {
+                dropTable((SQLDropTableStatement) sqlDropStatement);
+            } else if (sqlDropStatement instanceof SQLDropMaterializedViewStatement) {
+                SQLName viewName = ((SQLDropMaterializedViewStatement) sqlDropStatement).getName();
+                databaseContainer.dropMaterializedView(resolveDatabase(new SQLExprTableSource(viewName)));
+            }
+        } else if (sqlType.equals(SQLType.INSERT)) {
+            SQLStatement sqlInsertStatement = sqlStatementParser.parseInsert();
+            updateCount = insertRow((SQLInsertStatement) sqlInsertStatement);
+        } else if (sqlType.equals(SQLType.REPLACE)) {
+            SQLStatement sqlReplaceStatement = sqlStatementParser.parseStatement();
+            updateCount = replaceRow((SQLReplaceStatement) sqlReplaceStatement);
+        } else if (sqlType.equals(SQLType.DELETE)) {
+            SQLDeleteStatement sqlDeleteStatement = sqlStatementParser.parseDeleteStatement();
+            updateCount = deleteRow(sqlDeleteStatement);
+        } else if (sqlType.equals(SQLType.UPDATE)) {
+            SQLUpdateStatement sqlUpdateStatement = sqlStatementParser.parseUpdateStatement();
+            updateCount = updateRow(sqlUpdateStatement);
+        } else if (sqlType.equals(SQLType.SELECT)) {
+            SQLStatement sqlSelectStatement = sqlStatementParser.parseSelect();
+            if (sink != null) {
+                return ExecutionResult.ofStreamedQuery(selectRow((SQLSelectStatement) sqlSelectStatement, sink), statistics);
+            }
+            return ExecutionResult.ofQuery(selectRow((SQLSelectStatement) sqlSelectStatement), statistics);
+        } else if (sqlType.equals(SQLType.ALTER)) {
+            SQLStatement sqlAlterStatement = sqlStatementParser.parseAlter();
+            if (!(sqlAlterStatement instanceof SQLAlterTableStatement)) {
                 throw new RuntimeException("Unsupported SQL Type");
             }
+            updateCount = alterTable((SQLAlterTableStatement) sqlAlterStatement);
+        } else if (sqlType.equals(SQLType.USE)) {
+            SQLUseStatement sqlUseStatement = sqlStatementParser.parseUse();
+            useDatabase(sqlUseStatement);
+        } else {
+            throw new RuntimeException("Unsupported SQL Type");
         }
+        return ExecutionResult.ofUpdateCount(updateCount, statistics);
     }
 
     /**
-     * 执行单条SQL语句
+     * 执行单条SQL语句，查询结果以对齐文本的形式输出到标准输出
      *
      * @param sql 要执行的SQL语句
      */
     public void executeSql(String sql) {
-        // 将SQL语句按分号进行分割成多个语句，并执行批量执行
-        String[] split = sql.split(";");
-        executeBatch(split);
+        if (consoleSink == null) {
+            consoleSink = new AlignedTextResultSink(System.out);
+        }
+        executeSql(sql, consoleSink);
+    }
+
+    /**
+     * 执行SQL语句，查询结果依次写入接收者
+     *
+     * @param sql  要执行的SQL语句，可以包含以分号分隔的多条语句
+     * @param sink 查询结果的接收者
+     */
+    public void executeSql(String sql, ResultSink sink) {
+        // 将SQL语句按分号进行分割成多个语句，并依次执行
+        for (String statement : sql.split(";")) {
+            executeStatement(statement, sink);
+        }
+    }
+
+    /**
+     * 异步执行SQL语句，语句在执行服务的线程中运行，同一会话中的语句按提交顺序依次执行
+     *
+     * @param sql 要执行的SQL语句，包含多条语句时返回最后一条语句的结果
+     * @return 执行结果的Future；准入队列已满且策略为拒绝时以 RejectedExecutionException 异常结束
+     */
+    public CompletableFuture<ExecutionResult> executeAsync(String sql) {
+        return executeAsync(sql, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 异步执行SQL语句，超过指定时间（从提交开始计算）仍未完成时以 TimeoutException 异常结束并中断执行
+     * <p>
+     * 调用返回的Future的 cancel(true) 会中断正在执行的语句；语句在开始修改数据之前检查中断，
+     * 查询语句在扫描每个数据块之前检查中断
+     *
+     * @param sql     要执行的SQL语句，包含多条语句时返回最后一条语句的结果
+     * @param timeout 超时时间，小于等于 0 时不限制
+     * @param unit    超时时间单位
+     * @return 执行结果的Future
+     */
+    public CompletableFuture<ExecutionResult> executeAsync(String sql, long timeout, TimeUnit unit) {
+        SQLExecutionService service = executionService != null ? executionService : SQLExecutionService.getDefault();
+        StatementFuture future = new StatementFuture();
+        try {
+            service.acquire();
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        // 将语句追加到会话的执行链尾部，前一条语句结束后才开始执行
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        CompletableFuture<Void> previous;
+        synchronized (this) {
+            previous = sessionTail;
+            sessionTail = finished;
+        }
+        previous.whenComplete((ignored, throwable) -> {
+            try {
+                service.execute(() -> runAsync(sql, future, finished, service));
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+                service.release();
+                finished.complete(null);
+            }
+        });
+        if (timeout > 0) {
+            ScheduledFuture<?> timer = service.schedule(future::timeout, timeout, unit);
+            future.whenComplete((result, throwable) -> timer.cancel(false));
+        }
+        return future;
+    }
+
+    // 在执行线程中运行异步语句
+    private void runAsync(String sql, StatementFuture future, CompletableFuture<Void> finished, SQLExecutionService service) {
+        try {
+            // 语句在开始执行之前已被取消或超时
+            if (!future.start()) {
+                return;
+            }
+            future.complete(executeBatch(sql.split(";")));
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            future.finish();
+            // 清除取消或超时留下的中断状态，避免影响执行线程的下一个任务
+            Thread.interrupted();
+            service.release();
+            finished.complete(null);
+        }
+    }
+
+    /**
+     * 获取最近执行的一条语句的统计信息，包括扫描和通过区域映射跳过的数据块数量
+     *
+     * @return 统计信息，尚未执行任何语句时为 null
+     */
+    public QueryStatistics getLastStatistics() {
+        return lastStatistics;
     }
 
     /**
@@ -94,8 +288,35 @@ public class SQLExecutor {
      * @param sqlUseStatement USE语句对象
      */
     private void useDatabase(SQLUseStatement sqlUseStatement) {
-        String databaseName = sqlUseStatement.getDatabase().getSimpleName();
-        databaseContainer.useDatabase(databaseName);
+        currentDatabaseName = sqlUseStatement.getDatabase().getSimpleName();
+    }
+
+    /**
+     * 备份或恢复数据库
+     *
+     * @param matcher 匹配了BACKUP或RESTORE语句的Matcher
+     */
+    private void backupOrRestore(Matcher matcher) {
+        Path directory = Paths.get(matcher.group(4));
+        if (matcher.group(2) != null) {
+            databaseContainer.backupDatabase(matcher.group(2), directory);
+        } else {
+            databaseContainer.restoreDatabase(matcher.group(3), directory);
+        }
+    }
+
+    /**
+     * 未指定数据库的表格源使用会话的当前数据库
+     *
+     * @param tableSource 表格源
+     * @return 表格源
+     */
+    private SQLExprTableSource resolveDatabase(SQLExprTableSource tableSource) {
+        String databaseName = currentDatabaseName;
+        if (databaseName != null && StringUtils.isEmpty(tableSource.getSchema())) {
+            tableSource.setSchema(databaseName);
+        }
+        return tableSource;
     }
 
     /**
@@ -124,9 +345,56 @@ public class SQLExecutor {
      * @param sqlCreateTableStatement CREATE TABLE语句对象
      */
     private void createTable(SQLCreateTableStatement sqlCreateTableStatement) {
-        SQLExprTableSource tableSource = sqlCreateTableStatement.getTableSource();
+        SQLExprTableSource tableSource = resolveDatabase(sqlCreateTableStatement.getTableSource());
         List<SQLColumnDefinition> columnDefinitions = sqlCreateTableStatement.getColumnDefinitions();
-        databaseContainer.createTable(tableSource, columnDefinitions);
+        List<SQLTableConstraint> constraints = sqlCreateTableStatement.getTableElementList().stream()
+                .filter(element -> element instanceof SQLTableConstraint)
+                .map(element -> (SQLTableConstraint) element).collect(Collectors.toList());
+        databaseContainer.createTable(tableSource, columnDefinitions, constraints, sqlCreateTableStatement.getPartitioning(),
+                sqlCreateTableStatement.getComment(), sqlCreateTableStatement.isIfNotExists());
+    }
+
+    /**
+     * 创建物化视图，基表必须与视图属于同一个数据库
+     *
+     * @param sqlCreateMaterializedViewStatement CREATE MATERIALIZED VIEW语句对象
+     */
+    private void createMaterializedView(SQLCreateMaterializedViewStatement sqlCreateMaterializedViewStatement) {
+        SQLExprTableSource tableSource = resolveDatabase(new SQLExprTableSource(sqlCreateMaterializedViewStatement.getName()));
+        SQLSelect select = sqlCreateMaterializedViewStatement.getQuery();
+        SQLTableSource from = select.getFirstQueryBlock() == null ? null : select.getFirstQueryBlock().getFrom();
+        if (from instanceof SQLExprTableSource && !StringUtils.isEmpty(((SQLExprTableSource) from).getSchema())
+                && !((SQLExprTableSource) from).getSchema().equalsIgnoreCase(tableSource.getSchema())) {
+            throw new RuntimeException("materialized view " + tableSource.getTableName() + " must be in the same database as its base table");
+        }
+        databaseContainer.createMaterializedView(tableSource, select);
+    }
+
+    /**
+     * 修改表，支持 ADD PARTITION 和 DROP PARTITION
+     *
+     * @param sqlAlterTableStatement ALTER TABLE语句对象
+     * @return 删除分区时删除的行数
+     */
+    private int alterTable(SQLAlterTableStatement sqlAlterTableStatement) {
+        SQLExprTableSource tableSource = resolveDatabase(sqlAlterTableStatement.getTableSource());
+        long updateCount = 0;
+        for (SQLAlterTableItem item : sqlAlterTableStatement.getItems()) {
+            if (item instanceof SQLAlterTableAddPartition) {
+                List<SQLPartition> definitions = new ArrayList<>();
+                for (SQLObject partition : ((SQLAlterTableAddPartition) item).getPartitions()) {
+                    definitions.add((SQLPartition) partition);
+                }
+                databaseContainer.addPartitions(tableSource, definitions);
+            } else if (item instanceof SQLAlterTableDropPartition) {
+                List<String> partitionNames = ((SQLAlterTableDropPartition) item).getPartitions().stream()
+                        .map(name -> ((SQLName) name).getSimpleName()).collect(Collectors.toList());
+                updateCount += databaseContainer.dropPartitions(tableSource, partitionNames);
+            } else {
+                throw new RuntimeException("Unsupported ALTER TABLE operation: " + item);
+            }
+        }
+        return (int) Math.min(updateCount, Integer.MAX_VALUE);
     }
 
     /**
@@ -136,58 +404,175 @@ public class SQLExecutor {
      */
     private void dropTable(SQLDropTableStatement sqlDropTableStatement) {
         List<SQLExprTableSource> tableSources = sqlDropTableStatement.getTableSources();
+        tableSources.forEach(this::resolveDatabase);
         databaseContainer.dropTable(tableSources);
     }
 
     /**
-     * 插入数据
+     * 插入数据，支持 ON DUPLICATE KEY UPDATE
      *
      * @param sqlInsertStatement INSERT语句对象
+     * @return 受影响的行数
      */
-    private void insertRow(SQLInsertStatement sqlInsertStatement) {
-        SQLExprTableSource tableSource = sqlInsertStatement.getTableSource();
+    private int insertRow(SQLInsertStatement sqlInsertStatement) {
+        SQLExprTableSource tableSource = resolveDatabase(sqlInsertStatement.getTableSource());
         List<SQLExpr> columns = sqlInsertStatement.getColumns();
         List<String> columnNames = columns.stream().map(Object::toString).collect(Collectors.toList());
+        List<SQLExpr> duplicateKeyUpdate = sqlInsertStatement instanceof MySqlInsertStatement
+                ? ((MySqlInsertStatement) sqlInsertStatement).getDuplicateKeyUpdate() : Collections.emptyList();
+        if (sqlInsertStatement.getQuery() != null) {
+            return insertSelect(tableSource, sqlInsertStatement.getQuery(),
+                    rows -> databaseContainer.insertRows(tableSource, columnNames, rows, duplicateKeyUpdate));
+        }
         List<SQLInsertStatement.ValuesClause> valuesList = sqlInsertStatement.getValuesList();
-        databaseContainer.insertRow(tableSource, columnNames, valuesList);
+        return databaseContainer.insertRow(tableSource, columnNames, valuesList, duplicateKeyUpdate);
+    }
+
+    /**
+     * 以 REPLACE 方式插入数据，先删除与新行键值冲突的已有行
+     *
+     * @param sqlReplaceStatement REPLACE语句对象
+     * @return 插入和删除的行数之和
+     */
+    private int replaceRow(SQLReplaceStatement sqlReplaceStatement) {
+        SQLExprTableSource tableSource = resolveDatabase(sqlReplaceStatement.getTableSource());
+        List<String> columnNames = sqlReplaceStatement.getColumns().stream().map(Object::toString).collect(Collectors.toList());
+        if (sqlReplaceStatement.getQuery() != null) {
+            return insertSelect(tableSource, sqlReplaceStatement.getQuery().getSubQuery(),
+                    rows -> databaseContainer.replaceRows(tableSource, columnNames, rows));
+        }
+        return databaseContainer.replaceRow(tableSource, columnNames, sqlReplaceStatement.getValuesList());
+    }
+
+    /**
+     * 执行 INSERT ... SELECT 和 REPLACE ... SELECT，源查询的结果行按批写入目标表，见 {@link InsertingResultSink}
+     * <p>
+     * 每个源数据块在源表读锁内投影，写入在锁外进行，源表与目标表相同时也不会死锁；
+     * 但源表与目标表相同时追加到最后一个数据块的行会被之后的扫描读到，因此先收集完整的源结果再写入
+     *
+     * @param tableSource 目标表的表格源
+     * @param select      源查询
+     * @param target      将一批行写入目标表的函数，返回受影响的行数
+     * @return 受影响的行数
+     */
+    private int insertSelect(SQLExprTableSource tableSource, SQLSelect select, ToIntFunction<List<List<Object>>> target) {
+        SQLTableSource from = select.getFirstQueryBlock().getFrom();
+        if (from instanceof SQLExprTableSource
+                && databaseContainer.isSameTable(tableSource, resolveDatabase((SQLExprTableSource) from))) {
+            return target.applyAsInt(selectRow(select).getRows());
+        }
+        InsertingResultSink sink = new InsertingResultSink(InsertingResultSink.BATCH_SIZE, target);
+        selectRow(select, sink);
+        return sink.getAffected();
     }
 
     /**
      * 删除数据
      *
      * @param sqlDeleteStatement DELETE语句对象
+     * @return 删除的行数
      */
-    private void deleteRow(SQLDeleteStatement sqlDeleteStatement) {
-        SQLExprTableSource tableSource = sqlDeleteStatement.getExprTableSource();
+    private int deleteRow(SQLDeleteStatement sqlDeleteStatement) {
+        SQLExprTableSource tableSource = resolveDatabase(sqlDeleteStatement.getExprTableSource());
         SQLExpr where = sqlDeleteStatement.getWhere();
-        databaseContainer.deleteRow(tableSource, where);
+        return databaseContainer.deleteRow(tableSource, where);
     }
 
     /**
      * 更新数据
      *
      * @param sqlUpdateStatement UPDATE语句对象
+     * @return 更新的行数
      */
-    private void updateRow(SQLUpdateStatement sqlUpdateStatement) {
+    private int updateRow(SQLUpdateStatement sqlUpdateStatement) {
         SQLTableSource tableSource = sqlUpdateStatement.getTableSource();
-        SQLExprTableSource exprTableSource = (SQLExprTableSource) tableSource;
+        SQLExprTableSource exprTableSource = resolveDatabase((SQLExprTableSource) tableSource);
         List<SQLUpdateSetItem> items = sqlUpdateStatement.getItems();
         SQLExpr where = sqlUpdateStatement.getWhere();
-        databaseContainer.updateRow(exprTableSource, items, where);
+        return databaseContainer.updateRow(exprTableSource, items, where);
     }
 
     /**
      * 查询数据
      *
      * @param sqlSelectStatement SELECT语句对象
+     * @return 查询结果
+     */
+    private QueryResult selectRow(SQLSelectStatement sqlSelectStatement) {
+        return selectRow(sqlSelectStatement.getSelect());
+    }
+
+    /**
+     * 查询数据，并将结果行依次写入接收者
+     *
+     * @param sqlSelectStatement SELECT语句对象
+     * @param sink               结果接收者
+     * @return 结果行数
      */
-    private void selectRow(SQLSelectStatement sqlSelectStatement) {
-        SQLSelectQueryBlock queryBlock = sqlSelectStatement.getSelect().getFirstQueryBlock();
-        SQLExprTableSource tableSource = (SQLExprTableSource) queryBlock.getFrom();
+    private long selectRow(SQLSelectStatement sqlSelectStatement, ResultSink sink) {
+        return selectRow(sqlSelectStatement.getSelect(), sink);
+    }
+
+    // 执行查询并收集完整结果的私有辅助方法，同时用于源表与目标表相同的 INSERT ... SELECT
+    private QueryResult selectRow(SQLSelect select) {
+        CollectingResultSink sink = new CollectingResultSink();
+        selectRow(select, sink);
+        return sink.getResult();
+    }
+
+    private long selectRow(SQLSelect select, ResultSink sink) {
+        SQLSelectQueryBlock queryBlock = select.getFirstQueryBlock();
+        if (queryBlock.getGroupBy() != null) {
+            throw new RuntimeException("GROUP BY is only supported by materialized views");
+        }
+        SQLExprTableSource tableSource = resolveDatabase((SQLExprTableSource) queryBlock.getFrom());
         SQLExpr where = queryBlock.getWhere();
         List<SQLSelectItem> selectList = queryBlock.getSelectList();
         SQLOrderBy orderBy = queryBlock.getOrderBy();
-        databaseContainer.selectRow(tableSource, selectList, where, orderBy);
+        Sampling sampling = Sampling.of(tableSource.getSampling(), queryBlock.getHints());
+        return databaseContainer.selectRow(tableSource, selectList, where, orderBy, sampling, sink);
     }
 
+    /**
+     * 异步语句的Future，取消或超时时中断正在执行语句的线程
+     */
+    private static class StatementFuture extends CompletableFuture<ExecutionResult> {
+        private Thread runner;      // 正在执行语句的线程
+
+        // 标记语句开始执行，语句已被取消或超时时返回 false
+        synchronized boolean start() {
+            if (isDone()) {
+                return false;
+            }
+            runner = Thread.currentThread();
+            return true;
+        }
+
+        // 标记语句执行结束
+        synchronized void finish() {
+            runner = null;
+        }
+
+        // 超时处理
+        void timeout() {
+            if (completeExceptionally(new TimeoutException("statement timed out"))) {
+                interruptRunner();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && mayInterruptIfRunning) {
+                interruptRunner();
+            }
+            return cancelled;
+        }
+
+        private synchronized void interruptRunner() {
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+    }
 }
@@ -0,0 +1,393 @@
+package cn.autumnclouds.sql.entity;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLAggregateExpr;
+import com.alibaba.druid.sql.ast.expr.SQLAggregateOption;
+import com.alibaba.druid.sql.ast.expr.SQLAllColumnExpr;
+import com.alibaba.druid.sql.ast.expr.SQLMethodInvokeExpr;
+import com.alibaba.druid.sql.ast.statement.SQLSelectItem;
+import cn.autumnclouds.sql.expression.Expression;
+import cn.autumnclouds.sql.expression.ValueType;
+import cn.autumnclouds.sql.sketch.HyperLogLog;
+import cn.autumnclouds.sql.sketch.KllSketch;
+import cn.autumnclouds.sql.util.ConvertUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 不带 GROUP BY 的聚合查询，结果只有一行，支持 COUNT、APPROX_COUNT_DISTINCT 和 APPROX_PERCENTILE。
+ * <p>
+ * 每个扫描线程维护一组部分结果（计数、HyperLogLog 草图或 KLL 草图），扫描结束后逐个合并，
+ * 因此数据块可以并行扫描。近似查询（使用了 APPROX_ 函数或抽样）的结果在所有聚合值之后
+ * 为每个聚合项附加一列 ERROR(聚合项)，值为约 95% 置信区间的半宽，单位与聚合值相同：
+ * <ul>
+ *     <li>COUNT：抽样时按抽样率放大，误差按 Horvitz-Thompson 估计的方差计算，按数据块抽样时以数据块为单位</li>
+ *     <li>APPROX_COUNT_DISTINCT：HyperLogLog 的草图误差；抽样时结果是样本中的不同值数量，不放大，只能作为下界</li>
+ *     <li>APPROX_PERCENTILE(列, 分位点)：KLL 草图的秩误差与抽样的秩误差之和换算为值的误差</li>
+ * </ul>
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+class Aggregation {
+    private static final double Z_95 = 1.96;   // 95% 置信度对应的标准正态分位数
+
+    private final List<Item> items;             // 聚合项
+    private final List<String> columnNames;     // 结果列名
+    private final boolean approximate;          // 是否为近似查询，近似查询附加误差列
+
+    private Aggregation(List<Item> items, List<String> columnNames, boolean approximate) {
+        this.items = items;
+        this.columnNames = columnNames;
+        this.approximate = approximate;
+    }
+
+    /**
+     * 判断查询项列表中是否包含聚合函数。
+     *
+     * @param selectList 查询项列表
+     * @return 包含聚合函数时返回 true
+     */
+    static boolean isAggregate(List<SQLSelectItem> selectList) {
+        for (SQLSelectItem selectItem : selectList) {
+            if (selectItem.getExpr() instanceof SQLAggregateExpr || isApproximateFunction(selectItem.getExpr())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 判断表达式是否为近似聚合函数，这些函数不是 MySQL 的内置聚合函数，解析器将其解析为普通函数调用
+    private static boolean isApproximateFunction(SQLExpr expr) {
+        if (!(expr instanceof SQLMethodInvokeExpr)) {
+            return false;
+        }
+        String name = ((SQLMethodInvokeExpr) expr).getMethodName().toUpperCase(Locale.ROOT);
+        return name.equals("APPROX_COUNT_DISTINCT") || name.equals("APPROX_PERCENTILE");
+    }
+
+    /**
+     * 编译聚合查询，查询项必须都是聚合函数。
+     *
+     * @param selectList 查询项列表
+     * @param compiler   在表的行上求值的表达式编译器
+     * @param sampled    查询是否抽样
+     * @return 聚合查询
+     */
+    static Aggregation compile(List<SQLSelectItem> selectList, Function<SQLExpr, Expression> compiler, boolean sampled) {
+        List<Item> items = new ArrayList<>(selectList.size());
+        List<String> columnNames = new ArrayList<>();
+        boolean approximate = sampled;
+        for (SQLSelectItem selectItem : selectList) {
+            SQLExpr expr = selectItem.getExpr();
+            if (!(expr instanceof SQLAggregateExpr) && !isApproximateFunction(expr)) {
+                throw new RuntimeException(expr + " must appear in an aggregate function, GROUP BY is only supported by materialized views");
+            }
+            SQLMethodInvokeExpr function = (SQLMethodInvokeExpr) expr;
+            String name = function.getMethodName().toUpperCase(Locale.ROOT);
+            List<SQLExpr> arguments = function.getArguments();
+            if (name.equals("COUNT")) {
+                if (((SQLAggregateExpr) function).getOption() == SQLAggregateOption.DISTINCT) {
+                    throw new RuntimeException("COUNT(DISTINCT) is not supported, use APPROX_COUNT_DISTINCT");
+                }
+                checkArgumentCount(function, 1);
+                Expression argument = arguments.get(0) instanceof SQLAllColumnExpr ? null : compiler.apply(arguments.get(0));
+                items.add(new Item(argument, CountAccumulator::new));
+            } else if (name.equals("APPROX_COUNT_DISTINCT")) {
+                checkArgumentCount(function, 1);
+                items.add(new Item(compiler.apply(arguments.get(0)), DistinctAccumulator::new));
+                approximate = true;
+            } else if (name.equals("APPROX_PERCENTILE")) {
+                checkArgumentCount(function, 2);
+                Expression argument = compiler.apply(arguments.get(0));
+                if (!argument.getType().isNumeric()) {
+                    throw new RuntimeException("APPROX_PERCENTILE requires a numeric argument: " + arguments.get(0));
+                }
+                double fraction = fraction(arguments.get(1));
+                boolean integral = argument.getType() == ValueType.LONG;
+                items.add(new Item(argument, () -> new PercentileAccumulator(fraction, integral)));
+                approximate = true;
+            } else {
+                throw new RuntimeException("unsupported aggregate function: " + expr);
+            }
+            columnNames.add(selectItem.getAlias() != null ? selectItem.getAlias() : expr.toString());
+        }
+        if (approximate) {
+            for (int i = 0; i < selectList.size(); i++) {
+                columnNames.add("ERROR(" + columnNames.get(i) + ")");
+            }
+        }
+        return new Aggregation(items, columnNames, approximate);
+    }
+
+    private static void checkArgumentCount(SQLMethodInvokeExpr function, int count) {
+        if (function.getArguments().size() != count) {
+            throw new RuntimeException("incorrect argument count for " + function.getMethodName() + ": " + function);
+        }
+    }
+
+    // 解析分位点，必须是 0 到 1 之间的常量
+    private static double fraction(SQLExpr expr) {
+        double fraction;
+        try {
+            fraction = Double.parseDouble(ConvertUtils.getLiteralText(expr));
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("percentile must be a numeric constant: " + expr);
+        }
+        if (!(fraction >= 0 && fraction <= 1)) {
+            throw new RuntimeException("percentile must be between 0 and 1: " + expr);
+        }
+        return fraction;
+    }
+
+    /**
+     * 创建一组空的部分结果，每个扫描线程使用一组。
+     *
+     * @return 部分结果
+     */
+    State newState() {
+        Accumulator[] accumulators = new Accumulator[items.size()];
+        for (int i = 0; i < accumulators.length; i++) {
+            accumulators[i] = items.get(i).factory.get();
+        }
+        return new State(accumulators);
+    }
+
+    /**
+     * 根据合并后的部分结果生成结果行。
+     *
+     * @param state    合并后的部分结果
+     * @param sampling 抽样方式，不抽样时为 null
+     * @return 结果行
+     */
+    List<Object> result(State state, Sampling sampling) {
+        List<Object> row = new ArrayList<>(columnNames.size());
+        for (Accumulator accumulator : state.accumulators) {
+            row.add(accumulator.result(sampling));
+        }
+        if (approximate) {
+            for (Accumulator accumulator : state.accumulators) {
+                row.add(accumulator.error(sampling));
+            }
+        }
+        return row;
+    }
+
+    List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * 一个扫描线程的部分结果，可以与其他线程的部分结果合并
+     */
+    class State {
+        private final Accumulator[] accumulators;   // 各聚合项的部分结果
+        private long rows;                          // 满足条件的行数
+
+        private State(Accumulator[] accumulators) {
+            this.accumulators = accumulators;
+        }
+
+        /**
+         * 累加一行满足条件的数据。
+         *
+         * @param row 行数据
+         */
+        void accept(List<Object> row) {
+            rows++;
+            for (int i = 0; i < accumulators.length; i++) {
+                Expression argument = items.get(i).argument;
+                accumulators[i].add(argument == null ? Boolean.TRUE : argument.evaluate(row));
+            }
+        }
+
+        /**
+         * 结束一个数据块，按数据块抽样时数据块是估计误差的单位。
+         */
+        void endBlock() {
+            for (Accumulator accumulator : accumulators) {
+                accumulator.endBlock();
+            }
+        }
+
+        /**
+         * 合并另一个线程的部分结果。
+         *
+         * @param other 部分结果
+         */
+        void merge(State other) {
+            rows += other.rows;
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i].merge(other.accumulators[i]);
+            }
+        }
+
+        long getRows() {
+            return rows;
+        }
+    }
+
+    /**
+     * 聚合项：参数表达式和部分结果的创建方式
+     */
+    private static class Item {
+        private final Expression argument;                  // 参数表达式，COUNT(*) 为 null
+        private final Supplier<Accumulator> factory;        // 部分结果的创建方式
+
+        private Item(Expression argument, Supplier<Accumulator> factory) {
+            this.argument = argument;
+            this.factory = factory;
+        }
+    }
+
+    /**
+     * 聚合项的部分结果
+     */
+    private interface Accumulator {
+        // 累加一个值，空值不参与聚合
+        void add(Object value);
+
+        // 结束一个数据块
+        default void endBlock() {
+        }
+
+        // 合并同类型的部分结果
+        void merge(Accumulator other);
+
+        // 聚合值
+        Object result(Sampling sampling);
+
+        // 约 95% 置信区间的半宽
+        Object error(Sampling sampling);
+    }
+
+    /**
+     * COUNT 的部分结果，记录每个数据块的计数平方和用于估计按数据块抽样的方差
+     */
+    private static class CountAccumulator implements Accumulator {
+        private long count;             // 计数
+        private long blockCount;        // 当前数据块的计数
+        private double sumOfSquares;    // 各数据块计数的平方和
+
+        @Override
+        public void add(Object value) {
+            if (value != null) {
+                count++;
+                blockCount++;
+            }
+        }
+
+        @Override
+        public void endBlock() {
+            sumOfSquares += (double) blockCount * blockCount;
+            blockCount = 0;
+        }
+
+        @Override
+        public void merge(Accumulator other) {
+            count += ((CountAccumulator) other).count;
+            sumOfSquares += ((CountAccumulator) other).sumOfSquares;
+        }
+
+        @Override
+        public Object result(Sampling sampling) {
+            return sampling == null ? count : Math.round(count / sampling.getRate());
+        }
+
+        @Override
+        public Object error(Sampling sampling) {
+            if (sampling == null) {
+                return 0L;
+            }
+            double rate = sampling.getRate();
+            // 按行抽样时以行为单位，每个单位的计数都是 1
+            double squares = sampling.getMethod() == Sampling.Method.BERNOULLI ? count : sumOfSquares;
+            return Math.round(Z_95 * Math.sqrt((1 - rate) * squares) / rate);
+        }
+    }
+
+    /**
+     * APPROX_COUNT_DISTINCT 的部分结果
+     */
+    private static class DistinctAccumulator implements Accumulator {
+        private final HyperLogLog sketch = new HyperLogLog();
+
+        @Override
+        public void add(Object value) {
+            sketch.add(value);
+        }
+
+        @Override
+        public void merge(Accumulator other) {
+            sketch.merge(((DistinctAccumulator) other).sketch);
+        }
+
+        @Override
+        public Object result(Sampling sampling) {
+            return Math.round(sketch.estimate());
+        }
+
+        @Override
+        public Object error(Sampling sampling) {
+            return Math.round(Z_95 * sketch.relativeError() * sketch.estimate());
+        }
+    }
+
+    /**
+     * APPROX_PERCENTILE 的部分结果
+     */
+    private static class PercentileAccumulator implements Accumulator {
+        private final double fraction;      // 分位点
+        private final boolean integral;     // 参数是否为整数，整数参数的结果也是整数
+        private final KllSketch sketch = new KllSketch();
+
+        private PercentileAccumulator(double fraction, boolean integral) {
+            this.fraction = fraction;
+            this.integral = integral;
+        }
+
+        @Override
+        public void add(Object value) {
+            if (value != null) {
+                sketch.add(((Number) value).doubleValue());
+            }
+        }
+
+        @Override
+        public void merge(Accumulator other) {
+            sketch.merge(((PercentileAccumulator) other).sketch);
+        }
+
+        @Override
+        public Object result(Sampling sampling) {
+            return sketch.getCount() == 0 ? null : toResult(sketch.quantile(fraction));
+        }
+
+        @Override
+        public Object error(Sampling sampling) {
+            if (sketch.getCount() == 0) {
+                return null;
+            }
+            // 样本分位数的秩误差近似服从正态分布，标准差为 sqrt(q(1-q)/n)
+            double rankError = sketch.rankError();
+            if (sampling != null && sampling.getRate() < 1) {
+                rankError += Z_95 * Math.sqrt(fraction * (1 - fraction) / sketch.getCount());
+            }
+            double value = sketch.quantile(fraction);
+            double lower = sketch.quantile(Math.max(0, fraction - rankError));
+            double upper = sketch.quantile(Math.min(1, fraction + rankError));
+            return toResult(Math.max(value - lower, upper - value));
+        }
+
+        private Object toResult(double value) {
+            if (integral) {
+                return Math.round(value);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package cn.autumnclouds.sql.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntPredicate;
+
+/**
+ * 表中的数据块，按插入顺序存放固定数量的行，并维护块级的区域映射。
+ * <p>
+ * 对于使用字典编码的字符串列，行中保存的是字典中的同一个字符串实例，
+ * 同时数据块另外保存一份整数编码，过滤条件可以直接比较编码。保序字典插入新值使已有编码过期时，
+ * 数据块在下次读取编码时才按行中的字符串重新编码，期间字典无论后移多少次，每个数据块也只改写一次。
+ * <p>
+ * 从快照恢复的数据块只带有行数和区域映射，行数据在第一次被访问时才由加载器解码。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class Block {
+    private final int capacity;                 // 块容量
+    private final List<List<Object>> rows;      // 块中的行
+    private final ZoneMap zoneMap;              // 区域映射
+    private final Dictionary[] dictionaries;    // 创建时表级共享的列字典，未编码的列为 null；表停用某列的字典后已有数据块仍使用原字典
+    private final int[][] codes;                // 字典编码列的编码，未编码的列为 null
+    private final AtomicIntegerArray codeVersions;  // 各列编码对应的字典版本号，与字典的版本号不同时编码已过期
+    private final int unloadedSize;             // 尚未加载时的行数
+    private volatile Loader loader;             // 延迟加载器，加载完成后为 null
+
+    /**
+     * 创建一个新的 Block 对象。
+     *
+     * @param capacity     块容量
+     * @param dictionaries 表级共享的列字典，数组长度即列数
+     */
+    public Block(int capacity, Dictionary[] dictionaries) {
+        this(capacity, dictionaries, new ZoneMap(dictionaries.length), 0, null);
+    }
+
+    /**
+     * 创建一个延迟加载的 Block 对象，行数据在第一次被访问时由加载器填充。
+     *
+     * @param capacity     块容量
+     * @param dictionaries 表级共享的列字典，数组长度即列数
+     * @param zoneMap      已知的区域映射
+     * @param size         行数
+     * @param loader       加载器
+     */
+    Block(int capacity, Dictionary[] dictionaries, ZoneMap zoneMap, int size, Loader loader) {
+        this.capacity = capacity;
+        this.rows = new ArrayList<>(Math.max(capacity, size));
+        this.zoneMap = zoneMap;
+        this.unloadedSize = size;
+        this.loader = loader;
+        this.dictionaries = dictionaries.clone();
+        this.codes = new int[dictionaries.length][];
+        this.codeVersions = new AtomicIntegerArray(dictionaries.length);
+        for (int i = 0; i < dictionaries.length; i++) {
+            if (dictionaries[i] != null) {
+                codes[i] = new int[Math.max(capacity, size)];
+                codeVersions.set(i, dictionaries[i].getVersion());
+            }
+        }
+    }
+
+    // 确保行数据已加载
+    private void ensureLoaded() {
+        if (loader == null) {
+            return;
+        }
+        synchronized (this) {
+            Loader current = loader;
+            if (current != null) {
+                current.load(rows, codes);
+                loader = null;
+            }
+        }
+    }
+
+    /**
+     * 向块中追加一行数据。
+     *
+     * @param row 行数据
+     */
+    public void add(List<Object> row) {
+        ensureLoaded();
+        int rowIndex = rows.size();
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] != null) {
+                codes[i][rowIndex] = encode(row, i);
+            }
+        }
+        rows.add(row);
+        zoneMap.add(row);
+    }
+
+    /**
+     * 更新一行中指定列的值，同时维护编码并放宽区域映射。
+     *
+     * @param rowIndex 行在块中的位置
+     * @param column   列索引
+     * @param value    新值
+     */
+    public void set(int rowIndex, int column, Object value) {
+        ensureLoaded();
+        List<Object> row = rows.get(rowIndex);
+        row.set(column, value);
+        if (codes[column] != null) {
+            codes[column][rowIndex] = encode(row, column);
+        }
+        zoneMap.widen(column, row.get(column));
+    }
+
+    /**
+     * 删除满足条件的行，区域映射保持不变，块被清空时重置区域映射。
+     *
+     * @param filter 删除条件，参数为行在块中的位置（删除前）
+     * @return 删除的行数
+     */
+    public int removeIf(IntPredicate filter) {
+        ensureLoaded();
+        int size = rows.size();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (filter.test(i)) {
+                continue;
+            }
+            if (kept != i) {
+                rows.set(kept, rows.get(i));
+                for (int[] columnCodes : codes) {
+                    if (columnCodes != null) {
+                        columnCodes[kept] = columnCodes[i];
+                    }
+                }
+            }
+            kept++;
+        }
+        rows.subList(kept, size).clear();
+        if (rows.isEmpty()) {
+            zoneMap.reset();
+        }
+        return size - kept;
+    }
+
+    /**
+     * 为已存在的行建立指定列的字典编码，在列启用字典编码时调用。
+     *
+     * @param column     列索引
+     * @param dictionary 列字典
+     */
+    public void encodeColumn(int column, Dictionary dictionary) {
+        ensureLoaded();
+        dictionaries[column] = dictionary;
+        codes[column] = new int[Math.max(capacity, rows.size())];
+        for (int i = 0; i < rows.size(); i++) {
+            codes[column][i] = encode(rows.get(i), column);
+        }
+        codeVersions.set(column, dictionary.getVersion());
+    }
+
+    // 保序字典插入新值后已有编码过期，按行中的字符串重新编码；读锁内可能有多个线程同时读取，重新编码时互斥
+    private void refreshCodes(int column) {
+        Dictionary dictionary = dictionaries[column];
+        int version = dictionary.getVersion();
+        if (codeVersions.get(column) == version) {
+            return;
+        }
+        synchronized (this) {
+            if (codeVersions.get(column) != version) {
+                int[] columnCodes = codes[column];
+                for (int i = 0; i < rows.size(); i++) {
+                    columnCodes[i] = dictionary.codeOf((String) rows.get(i).get(column));
+                }
+                codeVersions.set(column, version);
+            }
+        }
+    }
+
+    // 对行中指定列编码，并将值替换为字典中的字符串实例
+    private int encode(List<Object> row, int column) {
+        Object value = row.get(column);
+        Dictionary dictionary = dictionaries[column];
+        int code = dictionary.encode(value == null ? null : value.toString());
+        row.set(column, dictionary.decode(code));
+        return code;
+    }
+
+    /**
+     * 判断块是否已满。
+     *
+     * @return 块已满时返回 true
+     */
+    public boolean isFull() {
+        return size() >= capacity;
+    }
+
+    /**
+     * 判断指定列是否保存了字典编码。
+     *
+     * @param column 列索引
+     * @return 保存了字典编码时返回 true
+     */
+    public boolean hasCodes(int column) {
+        return codes[column] != null;
+    }
+
+    /**
+     * 获取指定行指定列的字典编码。
+     *
+     * @param rowIndex 行在块中的位置
+     * @param column   列索引
+     * @return 字典编码
+     */
+    public int getCode(int rowIndex, int column) {
+        ensureLoaded();
+        refreshCodes(column);
+        return codes[column][rowIndex];
+    }
+
+    /**
+     * 判断行数据是否已加载。
+     *
+     * @return 已加载时返回 true
+     */
+    public boolean isLoaded() {
+        return loader == null;
+    }
+
+    public int size() {
+        return loader == null ? rows.size() : unloadedSize;
+    }
+
+    public List<List<Object>> getRows() {
+        ensureLoaded();
+        return rows;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public ZoneMap getZoneMap() {
+        return zoneMap;
+    }
+
+    /**
+     * 数据块的延迟加载器
+     */
+    interface Loader {
+
+        /**
+         * 将行数据和字典编码填充到数据块中，字典编码为创建数据块时的字典版本下的编码。
+         *
+         * @param rows  待填充的行列表
+         * @param codes 待填充的字典编码，未编码的列为 null
+         */
+        void load(List<List<Object>> rows, int[][] codes);
+    }
+}
@@ -0,0 +1,121 @@
+package cn.autumnclouds.sql.entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntPredicate;
+
+/**
+ * 表的扫描辅助方法：根据条件和区域映射裁剪分区与数据块，逐行判断条件，并在语句被取消时终止扫描。
+ * <p>
+ * 裁剪时记录当前线程的统计信息；调用方需持有表的读锁或写锁。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+class BlockScanner {
+
+    /**
+     * 根据分区方式和分区的区域映射筛选可能包含满足条件的行的分区，并记录扫描和跳过的分区数
+     *
+     * @param partitionScheme 表的分区方式
+     * @param conditions      条件列表
+     * @param <T>             值类型
+     * @return 需要扫描的分区
+     */
+    static <T> List<Partition> prunePartitions(PartitionScheme partitionScheme, List<Condition<Comparable<T>>> conditions) {
+        checkInterrupted();
+        QueryStatistics statistics = QueryStatistics.current();
+        Collection<Partition> partitions = partitionScheme.prune(conditions);
+        List<Partition> candidates = new ArrayList<>(partitions.size());
+        for (Partition partition : partitions) {
+            if (mayMatch(partition.getZoneMap(), conditions)) {
+                candidates.add(partition);
+                statistics.addScannedPartition();
+            } else {
+                statistics.addSkippedPartition();
+            }
+        }
+        for (int i = partitions.size(); i < partitionScheme.getPartitions().size(); i++) {
+            statistics.addSkippedPartition();
+        }
+        return candidates;
+    }
+
+    /**
+     * 根据区域映射筛选分区中可能包含满足条件的行的数据块，并记录扫描和跳过的块数
+     *
+     * @param partition  分区
+     * @param conditions 条件列表
+     * @param <T>        值类型
+     * @return 需要扫描的数据块
+     */
+    static <T> List<Block> pruneBlocks(Partition partition, List<Condition<Comparable<T>>> conditions) {
+        return pruneBlocks(partition, conditions, null);
+    }
+
+    /**
+     * 根据区域映射和抽样方式筛选分区中需要扫描的数据块，并记录扫描、跳过和未抽中的块数
+     *
+     * @param partition  分区
+     * @param conditions 条件列表
+     * @param sampling   抽样方式，为 null 时不抽样
+     * @param <T>        值类型
+     * @return 需要扫描的数据块
+     */
+    static <T> List<Block> pruneBlocks(Partition partition, List<Condition<Comparable<T>>> conditions, Sampling sampling) {
+        checkInterrupted();
+        QueryStatistics statistics = QueryStatistics.current();
+        List<Block> candidates = new ArrayList<>(partition.getBlocks().size());
+        for (Block block : partition.getBlocks()) {
+            if (block.size() == 0 || !mayMatch(block.getZoneMap(), conditions)) {
+                statistics.addSkippedBlock();
+            } else if (sampling != null && !sampling.sampleBlock()) {
+                statistics.addUnsampledBlock();
+            } else {
+                candidates.add(block);
+                statistics.addScannedBlock(block.size());
+            }
+        }
+        return candidates;
+    }
+
+    // 执行语句的线程被中断（语句被取消或超时）时终止扫描
+    static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("statement cancelled");
+        }
+    }
+
+    // 判断区域映射覆盖的行中是否可能存在满足所有条件的行
+    private static <T> boolean mayMatch(ZoneMap zoneMap, List<Condition<Comparable<T>>> conditions) {
+        for (Condition<Comparable<T>> condition : conditions) {
+            if (!zoneMap.mayMatch(condition)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 判断块中的一行数据是否满足所有条件，字典编码列直接比较编码，空值不满足任何比较条件
+    static <T> boolean matches(Block block, int rowIndex, List<Condition<Comparable<T>>> conditions) {
+        List<Object> row = block.getRows().get(rowIndex);
+        for (Condition<Comparable<T>> condition : conditions) {
+            int index = condition.getIndex();
+            IntPredicate codePredicate = condition.getCodePredicate();
+            if (codePredicate != null && block.hasCodes(index)) {
+                int code = block.getCode(rowIndex, index);
+                if (code == Dictionary.NULL_CODE || !codePredicate.test(code)) {
+                    return false;
+                }
+                continue;
+            }
+            Comparable<T> value = ConditionCompiler.cast(row.get(index));
+            if (value == null || !condition.getPredicate().test(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
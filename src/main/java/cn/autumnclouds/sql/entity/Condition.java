@@ -1,5 +1,8 @@
 package cn.autumnclouds.sql.entity;
 
+import java.util.Collection;
+import java.util.function.BiPredicate;
+import java.util.function.IntPredicate;
 import java.util.function.Predicate;
 
 /**
@@ -12,16 +15,59 @@ import java.util.function.Predicate;
 public class Condition<T> {
     private int index;                          // 要比较的列的索引
     private Predicate<T> predicate;             // 表示条件的谓词
+    private BiPredicate<T, T> rangePredicate;   // 判断 [最小值, 最大值] 范围内是否可能满足条件的谓词
+    private IntPredicate codePredicate;         // 直接作用于字典编码的谓词，列未编码时为 null
+    private Collection<?> values;               // 等值和 IN 条件可能命中的全部值，其余条件为 null
 
     /**
-     * 创建一个新的 Condition 对象。
+     * 创建一个新的 Condition 对象，不提供范围判断，数据块总是需要扫描。
      *
      * @param index     要比较的列的索引
      * @param predicate 表示条件的谓词
      */
     public Condition(int index, Predicate<T> predicate) {
+        this(index, predicate, (min, max) -> true);
+    }
+
+    /**
+     * 创建一个新的 Condition 对象。
+     *
+     * @param index          要比较的列的索引
+     * @param predicate      表示条件的谓词
+     * @param rangePredicate 判断 [最小值, 最大值] 范围内是否可能满足条件的谓词
+     */
+    public Condition(int index, Predicate<T> predicate, BiPredicate<T, T> rangePredicate) {
+        this(index, predicate, rangePredicate, null);
+    }
+
+    /**
+     * 创建一个新的 Condition 对象。
+     *
+     * @param index          要比较的列的索引
+     * @param predicate      表示条件的谓词
+     * @param rangePredicate 判断 [最小值, 最大值] 范围内是否可能满足条件的谓词
+     * @param codePredicate  直接作用于字典编码的谓词，列未编码时为 null
+     */
+    public Condition(int index, Predicate<T> predicate, BiPredicate<T, T> rangePredicate, IntPredicate codePredicate) {
+        this(index, predicate, rangePredicate, codePredicate, null);
+    }
+
+    /**
+     * 创建一个新的 Condition 对象。
+     *
+     * @param index          要比较的列的索引
+     * @param predicate      表示条件的谓词
+     * @param rangePredicate 判断 [最小值, 最大值] 范围内是否可能满足条件的谓词
+     * @param codePredicate  直接作用于字典编码的谓词，列未编码时为 null
+     * @param values         等值和 IN 条件可能命中的全部值，其余条件为 null
+     */
+    public Condition(int index, Predicate<T> predicate, BiPredicate<T, T> rangePredicate, IntPredicate codePredicate,
+                     Collection<?> values) {
         this.index = index;
         this.predicate = predicate;
+        this.rangePredicate = rangePredicate;
+        this.codePredicate = codePredicate;
+        this.values = values;
     }
 
     /**
@@ -42,4 +88,31 @@ public class Condition<T> {
         return predicate;
     }
 
+    /**
+     * 获取判断值范围内是否可能满足条件的谓词。
+     *
+     * @return 范围谓词
+     */
+    public BiPredicate<T, T> getRangePredicate() {
+        return rangePredicate;
+    }
+
+    /**
+     * 获取直接作用于字典编码的谓词。
+     *
+     * @return 编码谓词，列未编码时为 null
+     */
+    public IntPredicate getCodePredicate() {
+        return codePredicate;
+    }
+
+    /**
+     * 获取等值和 IN 条件可能命中的全部值，用于按哈希值裁剪分区。
+     *
+     * @return 可能命中的全部值，其余条件为 null
+     */
+    public Collection<?> getValues() {
+        return values;
+    }
+
 }
@@ -0,0 +1,220 @@
+package cn.autumnclouds.sql.entity;
+
+import cn.autumnclouds.sql.util.ConvertUtils;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBetweenExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOpExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOperator;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInListExpr;
+import com.alibaba.druid.sql.ast.expr.SQLLiteralExpr;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.BiPredicate;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * WHERE 条件编译器，将以 AND 连接的“列 运算符 字面量”、BETWEEN 和 IN 条件编译为表上的条件列表。
+ * <p>
+ * 每个条件带有作用于值的谓词、用于区域映射裁剪的范围谓词，字典编码列还带有直接比较编码的谓词；
+ * 编码谓词使用编译时的字典编码，保序字典插入新值后需要重新编译。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+class ConditionCompiler {
+    private final ToIntFunction<String> indexResolver;     // 列名到列索引的解析
+    private final IntFunction<String> typeResolver;         // 列索引到列数据类型的解析
+    private final Dictionary[] dictionaries;                // 表的各列字典，与表共享同一个数组，未启用字典编码的列为 null
+
+    /**
+     * 创建一个新的 ConditionCompiler 对象。
+     *
+     * @param indexResolver 列名到列索引的解析函数，列不存在时应抛出异常
+     * @param typeResolver  列索引到列数据类型名称的解析函数
+     * @param dictionaries  表的各列字典，编译时读取其中的当前字典
+     */
+    ConditionCompiler(ToIntFunction<String> indexResolver, IntFunction<String> typeResolver, Dictionary[] dictionaries) {
+        this.indexResolver = indexResolver;
+        this.typeResolver = typeResolver;
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * 处理WHERE条件，支持以AND连接的多个比较条件以及BETWEEN、IN
+     *
+     * @param where WHERE条件
+     * @param <T>   值类型
+     * @return 条件列表，无WHERE条件时为空列表
+     */
+    <T> List<Condition<Comparable<T>>> compile(SQLExpr where) {
+        List<Condition<Comparable<T>>> conditions = new ArrayList<>();
+        if (where != null) {
+            collectConditions(where, conditions);
+        }
+        return conditions;
+    }
+
+    // 将WHERE条件拆分为多个条件
+    private <T> void collectConditions(SQLExpr where, List<Condition<Comparable<T>>> conditions) {
+        if (where instanceof SQLBinaryOpExpr && ((SQLBinaryOpExpr) where).getOperator() == SQLBinaryOperator.BooleanAnd) {
+            collectConditions(((SQLBinaryOpExpr) where).getLeft(), conditions);
+            collectConditions(((SQLBinaryOpExpr) where).getRight(), conditions);
+            return;
+        }
+        if (where instanceof SQLBetweenExpr) {
+            SQLBetweenExpr betweenExpr = (SQLBetweenExpr) where;
+            if (betweenExpr.isNot() || !(betweenExpr.getTestExpr() instanceof SQLIdentifierExpr)
+                    || !(betweenExpr.getBeginExpr() instanceof SQLLiteralExpr)
+                    || !(betweenExpr.getEndExpr() instanceof SQLLiteralExpr)) {
+                throw new RuntimeException("unsupported where condition: " + where);
+            }
+            String columnName = ((SQLIdentifierExpr) betweenExpr.getTestExpr()).getName();
+            conditions.add(toCondition(columnName, SQLBinaryOperator.GreaterThanOrEqual, betweenExpr.getBeginExpr()));
+            conditions.add(toCondition(columnName, SQLBinaryOperator.LessThanOrEqual, betweenExpr.getEndExpr()));
+            return;
+        }
+        if (where instanceof SQLInListExpr) {
+            SQLInListExpr inListExpr = (SQLInListExpr) where;
+            if (inListExpr.isNot() || !(inListExpr.getExpr() instanceof SQLIdentifierExpr)
+                    || !inListExpr.getTargetList().stream().allMatch(target -> target instanceof SQLLiteralExpr)) {
+                throw new RuntimeException("unsupported where condition: " + where);
+            }
+            String columnName = ((SQLIdentifierExpr) inListExpr.getExpr()).getName();
+            conditions.add(toInCondition(columnName, inListExpr.getTargetList()));
+            return;
+        }
+        // 其余情况仅支持单个二元运算条件
+        if (!(where instanceof SQLBinaryOpExpr)
+                || !(((SQLBinaryOpExpr) where).getLeft() instanceof SQLIdentifierExpr)
+                || !(((SQLBinaryOpExpr) where).getRight() instanceof SQLLiteralExpr)) {
+            throw new RuntimeException("unsupported where condition: " + where);
+        }
+        SQLBinaryOpExpr binaryOpExpr = (SQLBinaryOpExpr) where;
+        SQLIdentifierExpr left = (SQLIdentifierExpr) binaryOpExpr.getLeft();
+        conditions.add(toCondition(left.getName(), binaryOpExpr.getOperator(), binaryOpExpr.getRight()));
+    }
+
+    // 将“列 运算符 字面量”转换为条件对象
+    private <T> Condition<Comparable<T>> toCondition(String columnName, SQLBinaryOperator operator, SQLExpr literal) {
+        int index = indexResolver.applyAsInt(columnName);
+        Object value = ConvertUtils.convertValue(typeResolver.apply(index), ConvertUtils.getLiteralText(literal));
+        if (value == null) {
+            throw new RuntimeException("unsupported where condition: comparison with NULL");
+        }
+        return new Condition<>(index, getPredicate(operator, ConditionCompiler.<T>cast(value)), getRangePredicate(operator, ConditionCompiler.<T>cast(value)),
+                getCodePredicate(dictionaries[index], operator, value),
+                operator.equals(SQLBinaryOperator.Equality) ? Collections.singleton(value) : null);
+    }
+
+    // 将“列 IN (字面量列表)”转换为条件对象
+    private <T> Condition<Comparable<T>> toInCondition(String columnName, List<SQLExpr> literals) {
+        int index = indexResolver.applyAsInt(columnName);
+        String columnType = typeResolver.apply(index);
+        TreeSet<Object> values = new TreeSet<>();
+        for (SQLExpr literal : literals) {
+            Object value = ConvertUtils.convertValue(columnType, ConvertUtils.getLiteralText(literal));
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        // 字典编码列将候选值转换为编码集合，字典中不存在的值不可能命中
+        IntPredicate codePredicate = null;
+        Dictionary dictionary = dictionaries[index];
+        if (dictionary != null) {
+            BitSet codes = new BitSet(dictionary.size());
+            for (Object value : values) {
+                int code = dictionary.codeOf(value.toString());
+                if (code != Dictionary.NULL_CODE) {
+                    codes.set(code);
+                }
+            }
+            codePredicate = codes::get;
+        }
+        return new Condition<>(index, values::contains, (min, max) -> {
+            Object candidate = values.ceiling(min);
+            return candidate != null && max.compareTo(cast(candidate)) >= 0;
+        }, codePredicate, values);
+    }
+
+    // 获取作用于字典编码的谓词，等值比较适用于所有字典，范围比较仅适用于保序字典
+    private static IntPredicate getCodePredicate(Dictionary dictionary, SQLBinaryOperator operator, Object value) {
+        if (dictionary == null) {
+            return null;
+        }
+        String text = value.toString();
+        if (operator.equals(SQLBinaryOperator.Equality)) {
+            int code = dictionary.codeOf(text);
+            return c -> c == code;
+        } else if (operator.equals(SQLBinaryOperator.NotEqual)) {
+            int code = dictionary.codeOf(text);
+            return c -> c != code;
+        } else if (!dictionary.isOrdered()) {
+            return null;
+        } else if (operator.equals(SQLBinaryOperator.GreaterThan)) {
+            int bound = dictionary.upperBound(text);
+            return c -> c >= bound;
+        } else if (operator.equals(SQLBinaryOperator.GreaterThanOrEqual)) {
+            int bound = dictionary.lowerBound(text);
+            return c -> c >= bound;
+        } else if (operator.equals(SQLBinaryOperator.LessThan)) {
+            int bound = dictionary.lowerBound(text);
+            return c -> c < bound;
+        } else if (operator.equals(SQLBinaryOperator.LessThanOrEqual)) {
+            int bound = dictionary.upperBound(text);
+            return c -> c < bound;
+        }
+        return null;
+    }
+
+    // 获取条件的谓词
+    private static <T> Predicate<Comparable<T>> getPredicate(SQLBinaryOperator operator, T value) {
+        if (operator.equals(SQLBinaryOperator.Equality)) {
+            return comparable -> comparable.compareTo(value) == 0;
+        } else if (operator.equals(SQLBinaryOperator.NotEqual)) {
+            return comparable -> comparable.compareTo(value) != 0;
+        } else if (operator.equals(SQLBinaryOperator.GreaterThan)) {
+            return comparable -> comparable.compareTo(value) > 0;
+        } else if (operator.equals(SQLBinaryOperator.GreaterThanOrEqual)) {
+            return comparable -> comparable.compareTo(value) >= 0;
+        } else if (operator.equals(SQLBinaryOperator.LessThan)) {
+            return comparable -> comparable.compareTo(value) < 0;
+        } else if (operator.equals(SQLBinaryOperator.LessThanOrEqual)) {
+            return comparable -> comparable.compareTo(value) <= 0;
+        } else {
+            throw new RuntimeException("unsupported operator: " + operator);
+        }
+    }
+
+    // 获取判断 [最小值, 最大值] 范围内是否可能满足条件的谓词
+    private static <T> BiPredicate<Comparable<T>, Comparable<T>> getRangePredicate(SQLBinaryOperator operator, T value) {
+        if (operator.equals(SQLBinaryOperator.Equality)) {
+            return (min, max) -> min.compareTo(value) <= 0 && max.compareTo(value) >= 0;
+        } else if (operator.equals(SQLBinaryOperator.NotEqual)) {
+            return (min, max) -> min.compareTo(value) != 0 || max.compareTo(value) != 0;
+        } else if (operator.equals(SQLBinaryOperator.GreaterThan)) {
+            return (min, max) -> max.compareTo(value) > 0;
+        } else if (operator.equals(SQLBinaryOperator.GreaterThanOrEqual)) {
+            return (min, max) -> max.compareTo(value) >= 0;
+        } else if (operator.equals(SQLBinaryOperator.LessThan)) {
+            return (min, max) -> min.compareTo(value) < 0;
+        } else if (operator.equals(SQLBinaryOperator.LessThanOrEqual)) {
+            return (min, max) -> min.compareTo(value) <= 0;
+        } else {
+            throw new RuntimeException("unsupported operator: " + operator);
+        }
+    }
+
+    // 将列值转换为条件中的比较类型，列值的类型由列的数据类型保证
+    @SuppressWarnings("unchecked")
+    static <T> T cast(Object value) {
+        return (T) value;
+    }
+}
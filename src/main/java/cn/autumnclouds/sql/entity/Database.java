@@ -1,11 +1,24 @@
 package cn.autumnclouds.sql.entity;
 
+import cn.autumnclouds.sql.sink.ResultSink;
 import com.alibaba.druid.sql.ast.SQLExpr;
 import com.alibaba.druid.sql.ast.SQLOrderBy;
+import com.alibaba.druid.sql.ast.SQLPartition;
+import com.alibaba.druid.sql.ast.SQLPartitionBy;
 import com.alibaba.druid.sql.ast.statement.*;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 数据库类，表示一个数据库对象。
@@ -17,6 +30,9 @@ public class Database {
     private final String databaseName;        // 数据库名称
     private final Map<String, Table> tables;  // 数据库中的表集合
 
+    private static final String SNAPSHOT_SUFFIX = ".tbl";  // 表快照文件的后缀
+    private static final String MANIFEST = "MANIFEST";      // 列出一次备份中所有快照文件的清单文件名
+
     /**
      * 创建一个新的 Database 对象。
      *
@@ -24,7 +40,7 @@ public class Database {
      */
     public Database(String databaseName) {
         this.databaseName = databaseName;
-        tables = new HashMap<>();
+        tables = new ConcurrentHashMap<>();
     }
 
     /**
@@ -32,9 +48,74 @@ public class Database {
      *
      * @param tableName          表格名称
      * @param columnDefinitions  列定义列表
+     * @param constraints        表级约束列表
+     * @param partitionBy        PARTITION BY 子句，为 null 时不分区
+     * @param comment            表注释，为 null 时没有注释
+     * @param ifNotExists        表格已存在时是否忽略，否则抛出异常
+     */
+    public void creatTable(String tableName, List<SQLColumnDefinition> columnDefinitions, List<SQLTableConstraint> constraints,
+                           SQLPartitionBy partitionBy, SQLExpr comment, boolean ifNotExists) {
+        Table table = new Table(tableName, columnDefinitions, constraints, partitionBy, comment);
+        if (tables.putIfAbsent(tableName, table) != null) {
+            if (!ifNotExists) {
+                throw new RuntimeException("Table '" + tableName + "' already exists");
+            }
+            return;
+        }
+        table.startIngestPublisher();
+    }
+
+    /**
+     * 创建物化视图，视图的结果保存在与视图同名的表格中，随基表的写入增量更新。
+     *
+     * @param viewName  视图名称
+     * @param select    视图定义的查询语句，基表必须属于当前数据库
      */
-    public void creatTable(String tableName, List<SQLColumnDefinition> columnDefinitions) {
-        tables.put(tableName, new Table(tableName, columnDefinitions));
+    public void createMaterializedView(String viewName, SQLSelect select) {
+        if (tables.containsKey(viewName)) {
+            throw new RuntimeException("Table '" + viewName + "' already exists");
+        }
+        MaterializedView view = MaterializedView.create(viewName, select, tables);
+        // 并发创建同名的表或视图时只有一个成功，失败的视图需要从基表上解除
+        if (tables.putIfAbsent(viewName, view.getTable()) != null) {
+            view.detach();
+            throw new RuntimeException("Table '" + viewName + "' already exists");
+        }
+    }
+
+    /**
+     * 删除物化视图。
+     *
+     * @param viewName  视图名称
+     */
+    public void dropMaterializedView(String viewName) {
+        if (getTable(viewName).getMaterializedView() == null) {
+            throw new RuntimeException(viewName + " is not a materialized view");
+        }
+        dropTable(viewName);
+    }
+
+    /**
+     * 向表格添加 RANGE 分区。
+     *
+     * @param tableName    表格名称
+     * @param definitions  分区定义列表
+     */
+    public void addPartitions(String tableName, List<SQLPartition> definitions) {
+        Table table = getTable(tableName);
+        table.addPartitions(definitions);
+    }
+
+    /**
+     * 删除表格的 RANGE 分区及其中的行。
+     *
+     * @param tableName       表格名称
+     * @param partitionNames  分区名称列表
+     * @return                删除的行数
+     */
+    public long dropPartitions(String tableName, List<String> partitionNames) {
+        Table table = getTable(tableName);
+        return table.dropPartitions(partitionNames);
     }
 
     /**
@@ -43,7 +124,29 @@ public class Database {
      * @param tableName  要删除的表格名称
      */
     public void dropTable(String tableName) {
-        tables.remove(tableName);
+        Table table = tables.get(tableName);
+        if (table == null) {
+            return;
+        }
+        if (!table.getDependentViews().isEmpty()) {
+            throw new RuntimeException("cannot drop table " + tableName + ": materialized view "
+                    + table.getDependentViews().get(0).getName() + " depends on it");
+        }
+        if (table.getMaterializedView() != null) {
+            table.getMaterializedView().detach();
+        }
+        if (tables.remove(tableName, table)) {
+            table.stopIngestPublisher();
+        }
+    }
+
+    /**
+     * 删除数据库或被恢复的同名数据库替换时调用，停止所有表的后台发布任务。
+     */
+    public void close() {
+        for (Table table : tables.values()) {
+            table.stopIngestPublisher();
+        }
     }
 
     /**
@@ -52,10 +155,53 @@ public class Database {
      * @param tableName      表格名称
      * @param columnNames    列名称列表
      * @param valuesList     值列表
+     * @param duplicateKeyUpdate  ON DUPLICATE KEY UPDATE 的赋值列表，为空时按普通插入处理
+     * @return               受影响的行数
      */
-    public void insertRow(String tableName, List<String> columnNames, List<SQLInsertStatement.ValuesClause> valuesList) {
+    public int insertRow(String tableName, List<String> columnNames, List<SQLInsertStatement.ValuesClause> valuesList,
+                         List<SQLExpr> duplicateKeyUpdate) {
         Table table = getTable(tableName);
-        table.insertRow(columnNames, valuesList);
+        return table.insertRow(columnNames, valuesList, duplicateKeyUpdate);
+    }
+
+    /**
+     * 向表格中插入已计算出的行，用于 INSERT ... SELECT。
+     *
+     * @param tableName      表格名称
+     * @param columnNames    列名称列表
+     * @param rows           行数据列表
+     * @param duplicateKeyUpdate  ON DUPLICATE KEY UPDATE 的赋值列表，为空时按普通插入处理
+     * @return               受影响的行数
+     */
+    public int insertRows(String tableName, List<String> columnNames, List<List<Object>> rows, List<SQLExpr> duplicateKeyUpdate) {
+        Table table = getTable(tableName);
+        return table.insertRows(columnNames, rows, duplicateKeyUpdate);
+    }
+
+    /**
+     * 以 REPLACE 方式向表格中插入行，先删除键值冲突的已有行。
+     *
+     * @param tableName      表格名称
+     * @param columnNames    列名称列表
+     * @param valuesList     值列表
+     * @return               插入和删除的行数之和
+     */
+    public int replaceRow(String tableName, List<String> columnNames, List<SQLInsertStatement.ValuesClause> valuesList) {
+        Table table = getTable(tableName);
+        return table.replaceRow(columnNames, valuesList);
+    }
+
+    /**
+     * 以 REPLACE 方式向表格中插入已计算出的行，用于 REPLACE ... SELECT。
+     *
+     * @param tableName      表格名称
+     * @param columnNames    列名称列表
+     * @param rows           行数据列表
+     * @return               插入和删除的行数之和
+     */
+    public int replaceRows(String tableName, List<String> columnNames, List<List<Object>> rows) {
+        Table table = getTable(tableName);
+        return table.replaceRows(columnNames, rows);
     }
 
     /**
@@ -63,10 +209,11 @@ public class Database {
      *
      * @param tableName  表格名称
      * @param where      删除条件
+     * @return           删除的行数
      */
-    public void deleteRow(String tableName, SQLExpr where) {
+    public int deleteRow(String tableName, SQLExpr where) {
         Table table = getTable(tableName);
-        table.deleteRow(where);
+        return table.deleteRow(where);
     }
 
     /**
@@ -75,10 +222,11 @@ public class Database {
      * @param tableName       表格名称
      * @param updateSetItems  更新项列表
      * @param where           更新条件
+     * @return                更新的行数
      */
-    public void updateRow(String tableName, List<SQLUpdateSetItem> updateSetItems, SQLExpr where) {
+    public int updateRow(String tableName, List<SQLUpdateSetItem> updateSetItems, SQLExpr where) {
         Table table = getTable(tableName);
-        table.updateRow(updateSetItems, where);
+        return table.updateRow(updateSetItems, where);
     }
 
     /**
@@ -88,10 +236,138 @@ public class Database {
      * @param selectList   查询项列表
      * @param where        查询条件
      * @param orderBy      排序规则
+     * @return             查询结果
+     */
+    public QueryResult selectRow(String tableName, List<SQLSelectItem> selectList, SQLExpr where, SQLOrderBy orderBy) {
+        Table table = getTable(tableName);
+        return table.selectRow(selectList, where, orderBy);
+    }
+
+    /**
+     * 查询表格中的行，并将结果行依次写入接收者。
+     *
+     * @param tableName    表格名称
+     * @param selectList   查询项列表
+     * @param where        查询条件
+     * @param orderBy      排序规则
+     * @param sink         结果接收者
+     * @return             结果行数
+     */
+    public long selectRow(String tableName, List<SQLSelectItem> selectList, SQLExpr where, SQLOrderBy orderBy, ResultSink sink) {
+        return selectRow(tableName, selectList, where, orderBy, null, sink);
+    }
+
+    /**
+     * 按抽样方式查询表格中的行，并将结果行依次写入接收者。
+     *
+     * @param tableName    表格名称
+     * @param selectList   查询项列表
+     * @param where        查询条件
+     * @param orderBy      排序规则
+     * @param sampling     抽样方式，为 null 时不抽样
+     * @param sink         结果接收者
+     * @return             结果行数
      */
-    public void selectRow(String tableName, List<SQLSelectItem> selectList, SQLExpr where, SQLOrderBy orderBy) {
+    public long selectRow(String tableName, List<SQLSelectItem> selectList, SQLExpr where, SQLOrderBy orderBy,
+                          Sampling sampling, ResultSink sink) {
         Table table = getTable(tableName);
-        table.selectRow(selectList, where, orderBy);
+        return table.selectRow(selectList, where, orderBy, sampling, sink);
+    }
+
+    /**
+     * 将数据库中的每张表写入目录下的一个二进制快照文件（表名.tbl），所有表写入后用清单文件原子地替换上一次备份的清单。
+     * 每张表在写入期间持有自己的读锁，不同表之间不保证是同一时刻的快照；物化视图的结果表与其基表在基表的同一个读锁内写入。
+     * 清单替换后删除目录中不在清单里的快照文件，之后删除的表不会在恢复时重新出现。
+     *
+     * @param directory  快照目录
+     */
+    public void backup(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            Set<String> fileNames = new LinkedHashSet<>();
+            for (Table table : tables.values()) {
+                // 物化视图的结果表随基表一起写入
+                if (table.getMaterializedView() != null) {
+                    continue;
+                }
+                List<Table> written = table.writeSnapshots(t -> t == table || tables.get(t.getTableName()) == t
+                        ? directory.resolve(t.getTableName() + SNAPSHOT_SUFFIX) : null);
+                for (Table t : written) {
+                    fileNames.add(t.getTableName() + SNAPSHOT_SUFFIX);
+                }
+            }
+            writeManifest(directory, fileNames);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SNAPSHOT_SUFFIX)) {
+                for (Path file : files) {
+                    if (!fileNames.contains(file.getFileName().toString())) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to backup database " + databaseName + " to " + directory, e);
+        }
+    }
+
+    // 将快照文件名逐行写入临时文件后原子地替换清单文件
+    private static void writeManifest(Path directory, Collection<String> fileNames) throws IOException {
+        Path temp = Files.createTempFile(directory.toAbsolutePath(), "." + MANIFEST, ".tmp");
+        try {
+            Files.write(temp, fileNames, StandardCharsets.UTF_8);
+            TableSnapshot.replace(temp, directory.resolve(MANIFEST));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 从目录中的二进制快照文件恢复数据库，数据块在第一次被访问时才解码。
+     * 只读取清单中列出的快照文件；没有清单的目录（清单出现之前的备份）读取所有快照文件。
+     * 物化视图的结果表沿用快照中的行，在所有表恢复后关联到基表，基表第一次写入时才用基表的数据重新计算结果。
+     *
+     * @param databaseName  数据库名称
+     * @param directory     快照目录
+     * @return              恢复的数据库
+     */
+    public static Database restore(String databaseName, Path directory) {
+        Database database = new Database(databaseName);
+        List<Table> viewTables = new ArrayList<>();
+        try {
+            for (Path file : snapshotFiles(directory)) {
+                Table table = Table.readSnapshot(file);
+                database.tables.put(table.getTableName(), table);
+                if (table.getViewDefinition() != null) {
+                    viewTables.add(table);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to restore database " + databaseName + " from " + directory, e);
+        }
+        for (Table viewTable : viewTables) {
+            MaterializedView.restore(viewTable, database.tables);
+        }
+        for (Table table : database.tables.values()) {
+            table.startIngestPublisher();
+        }
+        return database;
+    }
+
+    // 获取需要恢复的快照文件，有清单时按清单读取
+    private static List<Path> snapshotFiles(Path directory) throws IOException {
+        List<Path> result = new ArrayList<>();
+        Path manifest = directory.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            for (String fileName : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                if (!fileName.isEmpty()) {
+                    result.add(directory.resolve(fileName));
+                }
+            }
+            return result;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SNAPSHOT_SUFFIX)) {
+            files.forEach(result::add);
+        }
+        return result;
     }
 
     /**
@@ -101,7 +377,7 @@ public class Database {
      * @return           表格对象
      * @throws RuntimeException 若表格不存在时抛出异常
      */
-    private Table getTable(String tableName) {
+    Table getTable(String tableName) {
         Table table = tables.get(tableName);
         if (table == null) {
             throw new RuntimeException("table not exist");
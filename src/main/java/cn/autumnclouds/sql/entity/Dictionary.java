@@ -0,0 +1,141 @@
+package cn.autumnclouds.sql.entity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * 字符串列的字典，将不同的字符串值映射为整数编码。
+ * <p>
+ * 保序字典中编码的大小关系与字符串的大小关系一致，范围比较也可以直接在编码上进行；
+ * 当新值插入到已有值之间时，大于等于插入位置的编码都会加一，字典的版本号随之加一并通过回调通知表。
+ * 持有编码的数据块不会立即改写，而是在下次读取编码时发现版本号变化，按行中的值一次性重新编码。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class Dictionary {
+    public static final int NULL_CODE = -1;             // 空值的编码
+
+    private final boolean ordered;                      // 是否保序
+    private final List<String> values;                  // 编码到值的映射
+    private final Map<String, Integer> codes;           // 值到编码的映射
+    private final IntConsumer shiftListener;            // 保序字典中编码整体后移时的回调，参数为插入位置
+    private int version;                                // 编码整体后移的次数，数据块据此判断已有编码是否过期
+
+    /**
+     * 创建一个新的 Dictionary 对象。
+     *
+     * @param ordered       是否保序
+     * @param shiftListener 保序字典中编码整体后移时的回调，参数为插入位置
+     */
+    public Dictionary(boolean ordered, IntConsumer shiftListener) {
+        this.ordered = ordered;
+        this.values = new ArrayList<>();
+        this.codes = new HashMap<>();
+        this.shiftListener = shiftListener;
+    }
+
+    /**
+     * 获取值的编码，值不存在时加入字典。
+     *
+     * @param value 值
+     * @return 编码，空值返回 {@link #NULL_CODE}
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (!ordered || values.isEmpty() || values.get(values.size() - 1).compareTo(value) < 0) {
+            code = values.size();
+            values.add(value);
+            codes.put(value, code);
+            return code;
+        }
+        // 保序字典中插入到已有值之间，之后的编码全部后移
+        int position = lowerBound(value);
+        values.add(position, value);
+        for (int i = position; i < values.size(); i++) {
+            codes.put(values.get(i), i);
+        }
+        version++;
+        shiftListener.accept(position);
+        return position;
+    }
+
+    /**
+     * 获取值的编码，不修改字典。
+     *
+     * @param value 值
+     * @return 编码，值不存在时返回 {@link #NULL_CODE}
+     */
+    public int codeOf(String value) {
+        Integer code = codes.get(value);
+        return code == null ? NULL_CODE : code;
+    }
+
+    /**
+     * 获取编码对应的值。
+     *
+     * @param code 编码
+     * @return 值，编码为 {@link #NULL_CODE} 时返回 null
+     */
+    public String decode(int code) {
+        return code == NULL_CODE ? null : values.get(code);
+    }
+
+    /**
+     * 获取第一个大于等于指定值的编码，仅对保序字典有意义。
+     *
+     * @param value 值
+     * @return 编码，不存在时返回字典大小
+     */
+    public int lowerBound(String value) {
+        int index = Collections.binarySearch(values, value);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * 获取第一个大于指定值的编码，仅对保序字典有意义。
+     *
+     * @param value 值
+     * @return 编码，不存在时返回字典大小
+     */
+    public int upperBound(String value) {
+        int index = Collections.binarySearch(values, value);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * 获取编码到值的映射，下标即编码。
+     *
+     * @return 字典中的值
+     */
+    public List<String> getValues() {
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * 获取字典的版本号，保序字典每次在已有值之间插入新值时加一。
+     *
+     * @return 版本号
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,248 @@
+package cn.autumnclouds.sql.entity;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import cn.autumnclouds.sql.util.ConvertUtils;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 表的摄入缓冲区，用于大量线程并发向同一张表插入数据的场景。
+ * <p>
+ * 插入线程按线程号散列到若干条通道中的一条，通道是无锁队列，插入时不获取表锁，不同线程之间几乎没有竞争。
+ * 某条通道积累的行数达到批量大小时由插入线程将所有通道中的行一次性发布到表中（只在一次写锁内完成），
+ * 后台线程还会按固定间隔发布剩余的行；表上的查询和其他写入在执行前会先发布缓冲区中的行，
+ * 因此任何会话都能读到自己（以及其他会话）已经返回的插入。
+ * <p>
+ * 通过表注释启用：COMMENT 'INGEST [BATCH=行数] [INTERVAL=毫秒]'。
+ * 缓冲的插入在发布前无法检查键值冲突和分区路由，因此只能用于没有主键和唯一键、未分区或按 HASH 分区的表。
+ * 同一通道内的行按插入顺序发布，不同线程插入的行之间不保证发布顺序。
+ * <p>
+ * 每次最多取出一个批量的行发布，发布失败时未发布的行退回缓冲区并在下次发布时最先发布；
+ * 后台发布失败的异常被保存下来，由下一个查询或写入该表的语句抛出。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class IngestBuffer {
+    public static final int DEFAULT_BATCH_SIZE = Table.BLOCK_SIZE;     // 默认批量大小
+    public static final long DEFAULT_INTERVAL_MILLIS = 100;             // 默认发布间隔
+    public static final int BACKPRESSURE_FACTOR = 4;    // 通道积累的行数达到批量大小的该倍数时插入线程等待发布完成
+
+    private static final Pattern HINT_PATTERN = Pattern.compile("\\bINGEST\\b(?:\\s+BATCH\\s*=\\s*(\\d+))?(?:\\s+INTERVAL\\s*=\\s*(\\d+))?");
+    private static final ScheduledExecutorService PUBLISHER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sql-ingest-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int batchSize;            // 批量大小
+    private final long intervalMillis;      // 发布间隔（毫秒）
+    private final Lane[] lanes;             // 通道，数量为 2 的幂
+    private final ConcurrentLinkedDeque<List<Object>> retry;    // 发布失败后退回的行，先于通道中的行发布
+    private final AtomicReference<Throwable> failure;           // 后台发布失败的异常，尚未抛出时不为 null
+    private ScheduledFuture<?> publisher;   // 定期发布的任务，尚未开始或已停止时为 null，由 this 保护
+
+    /**
+     * 创建一个新的 IngestBuffer 对象，通道数为处理器数量的 4 倍向上取 2 的幂。
+     *
+     * @param batchSize      批量大小
+     * @param intervalMillis 发布间隔（毫秒）
+     */
+    IngestBuffer(int batchSize, long intervalMillis) {
+        if (batchSize <= 0 || intervalMillis <= 0) {
+            throw new RuntimeException("ingest batch size and interval must be positive");
+        }
+        this.batchSize = batchSize;
+        this.intervalMillis = intervalMillis;
+        int laneCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 4 - 1)) << 1;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane();
+        }
+        this.retry = new ConcurrentLinkedDeque<>();
+        this.failure = new AtomicReference<>();
+    }
+
+    /**
+     * 根据表注释中的提示创建摄入缓冲区。
+     *
+     * @param comment 表注释，可以为 null
+     * @return 摄入缓冲区，注释中没有 INGEST 提示时返回 null
+     */
+    static IngestBuffer of(SQLExpr comment) {
+        if (comment == null) {
+            return null;
+        }
+        Matcher matcher = HINT_PATTERN.matcher(String.valueOf(ConvertUtils.getLiteralText(comment)).toUpperCase(Locale.ROOT));
+        if (!matcher.find()) {
+            return null;
+        }
+        int batchSize = matcher.group(1) == null ? DEFAULT_BATCH_SIZE : Integer.parseInt(matcher.group(1));
+        long intervalMillis = matcher.group(2) == null ? DEFAULT_INTERVAL_MILLIS : Long.parseLong(matcher.group(2));
+        return new IngestBuffer(batchSize, intervalMillis);
+    }
+
+    /**
+     * 将行追加到当前线程的通道，不获取任何锁。
+     *
+     * @param rows 行数据
+     * @return 追加后通道中待发布的行数
+     */
+    int append(List<List<Object>> rows) {
+        long id = Thread.currentThread().getId();
+        Lane lane = lanes[(int) (id ^ (id >>> 16)) * 0x9E3779B9 >>> 16 & (lanes.length - 1)];
+        lane.rows.addAll(rows);
+        return lane.size.addAndGet(rows.size());
+    }
+
+    /**
+     * 取出至多 limit 行待发布的行，先取退回的行，再依次取各通道中的行，调用方需持有表的写锁。
+     *
+     * @param limit 最多取出的行数
+     * @return 待发布的行
+     */
+    List<List<Object>> drain(int limit) {
+        List<List<Object>> rows = new ArrayList<>(Math.min(limit, batchSize));
+        for (List<Object> row = rows.size() < limit ? retry.poll() : null; row != null; row = rows.size() < limit ? retry.poll() : null) {
+            rows.add(row);
+        }
+        for (Lane lane : lanes) {
+            int drained = 0;
+            for (List<Object> row = rows.size() < limit ? lane.rows.poll() : null; row != null;
+                 row = rows.size() < limit ? lane.rows.poll() : null) {
+                rows.add(row);
+                drained++;
+            }
+            if (drained > 0) {
+                lane.size.addAndGet(-drained);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 退回发布失败的行，保持原有顺序并先于其他行发布，调用方需持有表的写锁。
+     *
+     * @param rows 未发布的行
+     */
+    void requeue(List<List<Object>> rows) {
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            retry.addFirst(rows.get(i));
+        }
+    }
+
+    /**
+     * 获取待发布的行数，包括退回的行；与插入并发时只是近似值。
+     *
+     * @return 待发布的行数
+     */
+    int size() {
+        int size = retry.size();
+        for (Lane lane : lanes) {
+            size += lane.size.get();
+        }
+        return size;
+    }
+
+    /**
+     * 判断是否没有待发布的行。
+     *
+     * @return 没有待发布的行时返回 true
+     */
+    boolean isEmpty() {
+        if (!retry.isEmpty()) {
+            return false;
+        }
+        for (Lane lane : lanes) {
+            if (!lane.rows.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 取出后台发布失败的异常，每个异常只会被取出一次。
+     *
+     * @return 异常，没有失败时返回 null
+     */
+    Throwable takeFailure() {
+        return failure.getAndSet(null);
+    }
+
+    /**
+     * 按发布间隔定期发布表的摄入缓冲区，重复调用时不会重复调度。
+     * <p>
+     * 由数据库在表加入数据库之后调用，表被删除时通过 {@link #cancel()} 停止；
+     * 未被删除而直接丢弃的表被回收后任务也会自动停止。
+     * 发布失败时保存异常而不是抛出，否则定时任务会被取消，之后缓冲的行只能等到下一次查询或写入时才会发布。
+     *
+     * @param table 表
+     */
+    synchronized void schedule(Table table) {
+        if (publisher != null) {
+            return;
+        }
+        WeakReference<Table> reference = new WeakReference<>(table);
+        publisher = PUBLISHER.scheduleWithFixedDelay(() -> {
+            Table current = reference.get();
+            if (current == null) {
+                cancel();
+                return;
+            }
+            try {
+                current.publishBuffered();
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止定期发布，正在进行的发布会继续完成；缓冲区中剩余的行只会在之后访问该表时发布。
+     */
+    synchronized void cancel() {
+        if (publisher != null) {
+            publisher.cancel(false);
+            publisher = null;
+        }
+    }
+
+    /**
+     * 判断是否正在定期发布。
+     *
+     * @return 已调度且未停止时返回 true
+     */
+    synchronized boolean isScheduled() {
+        return publisher != null;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * 插入通道，行数单独计数以便插入线程判断是否需要发布
+     */
+    private static class Lane {
+        private final ConcurrentLinkedQueue<List<Object>> rows = new ConcurrentLinkedQueue<>();    // 待发布的行
+        private final AtomicInteger size = new AtomicInteger();     // 待发布的行数
+    }
+}
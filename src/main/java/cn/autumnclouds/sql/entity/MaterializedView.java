@@ -0,0 +1,552 @@
+package cn.autumnclouds.sql.entity;
+
+import cn.autumnclouds.sql.expression.Expression;
+import cn.autumnclouds.sql.expression.ValueType;
+import cn.autumnclouds.sql.util.ConvertUtils;
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLDataTypeImpl;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLAggregateExpr;
+import com.alibaba.druid.sql.ast.expr.SQLAggregateOption;
+import com.alibaba.druid.sql.ast.expr.SQLAllColumnExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.statement.SQLColumnDefinition;
+import com.alibaba.druid.sql.ast.statement.SQLExprTableSource;
+import com.alibaba.druid.sql.ast.statement.SQLSelect;
+import com.alibaba.druid.sql.ast.statement.SQLSelectGroupByClause;
+import com.alibaba.druid.sql.ast.statement.SQLSelectItem;
+import com.alibaba.druid.sql.ast.statement.SQLSelectQueryBlock;
+import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * 增量维护的物化视图，定义为单表上的分组聚合查询：
+ * SELECT 分组列..., COUNT(*)/COUNT(x)/SUM(x)/MIN(x)/MAX(x)... FROM 基表 [WHERE ...] [GROUP BY ...]。
+ * <p>
+ * 视图的结果保存在数据库中的一张普通表里，查询视图与查询普通表相同，代价只与分组数有关。
+ * 基表的插入、更新和删除在基表写锁内以“删除的行、新增的行”的形式通知视图，视图只更新受影响的分组：
+ * COUNT 和 SUM 直接加减（浮点数的和同样精确累加），MIN 和 MAX 为每个分组保存值的多重集合，删除当前最值后可以得到新的最值。
+ * <p>
+ * 增量更新失败时由基表用现有数据重新计算整个视图，不保留只更新了一部分的分组。
+ * 视图表只能由视图维护，不能直接写入；没有 GROUP BY 时视图始终只有一行。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class MaterializedView {
+    private final String name;                  // 视图名
+    private final String definition;            // 视图定义的 SELECT 语句
+    private final Table base;                   // 基表
+    private final Table table;                  // 保存视图结果的表
+    private final Predicate<List<Object>> filter;   // WHERE 条件
+    private final List<Expression> groupExpressions;    // 分组表达式，在基表的行上求值
+    private final List<Aggregate> aggregates;   // 聚合列
+    private final int[] layout;                 // 视图的每一列对应的分组表达式（非负）或聚合（-1 - 聚合序号）
+    private final Map<List<Object>, Group> groups;  // 分组键到分组状态的映射
+
+    private MaterializedView(String name, SQLSelect select, Table base, Table table) {
+        this.name = name;
+        this.definition = select.toString();
+        this.base = base;
+        SQLSelectQueryBlock queryBlock = select.getFirstQueryBlock();
+        if (queryBlock == null || queryBlock.getOrderBy() != null || queryBlock.getLimit() != null) {
+            throw new RuntimeException("unsupported materialized view definition: " + definition);
+        }
+        this.filter = base.compileFilter(queryBlock.getWhere());
+
+        // GROUP BY 中的表达式按文本与查询项匹配，未出现在查询项中的分组表达式同样参与分组
+        List<String> groupTexts = new ArrayList<>();
+        this.groupExpressions = new ArrayList<>();
+        SQLSelectGroupByClause groupBy = queryBlock.getGroupBy();
+        if (groupBy != null) {
+            if (groupBy.getHaving() != null) {
+                throw new RuntimeException("HAVING is not supported in materialized view " + name);
+            }
+            for (SQLExpr item : groupBy.getItems()) {
+                groupTexts.add(item.toString());
+                groupExpressions.add(base.compileExpression(item));
+            }
+        }
+        this.aggregates = new ArrayList<>();
+        this.layout = new int[queryBlock.getSelectList().size()];
+        List<SQLColumnDefinition> columnDefinitions = new ArrayList<>(layout.length);
+        for (int i = 0; i < layout.length; i++) {
+            SQLSelectItem selectItem = queryBlock.getSelectList().get(i);
+            SQLExpr expr = selectItem.getExpr();
+            String dataType;
+            if (expr instanceof SQLAggregateExpr) {
+                Aggregate aggregate = compileAggregate((SQLAggregateExpr) expr);
+                layout[i] = -1 - aggregates.size();
+                aggregates.add(aggregate);
+                dataType = aggregate.dataType;
+            } else {
+                int group = groupTexts.indexOf(expr.toString());
+                if (group < 0) {
+                    throw new RuntimeException("'" + expr + "' is not in GROUP BY of materialized view " + name);
+                }
+                layout[i] = group;
+                dataType = dataTypeOf(expr, groupExpressions.get(group));
+            }
+            String columnName = selectItem.getAlias() != null ? selectItem.getAlias()
+                    : expr instanceof SQLIdentifierExpr ? ((SQLIdentifierExpr) expr).getName() : null;
+            if (columnName == null) {
+                throw new RuntimeException("'" + expr + "' in materialized view " + name + " needs an alias");
+            }
+            SQLColumnDefinition columnDefinition = new SQLColumnDefinition();
+            columnDefinition.setName(columnName);
+            columnDefinition.setDataType(new SQLDataTypeImpl(dataType));
+            columnDefinitions.add(columnDefinition);
+        }
+        this.table = table != null ? table : new Table(name, columnDefinitions);
+        this.groups = new HashMap<>();
+    }
+
+    /**
+     * 在基表上创建物化视图，在基表写锁内用基表的现有数据计算视图的初始结果
+     *
+     * @param name   视图名
+     * @param select 视图定义的 SELECT 语句
+     * @param tables 视图所在数据库的表，用于查找基表
+     * @return 物化视图
+     */
+    public static MaterializedView create(String name, SQLSelect select, Map<String, Table> tables) {
+        MaterializedView view = new MaterializedView(name, select, baseOf(name, select, tables), null);
+        view.table.attachMaterializedView(view);
+        view.base.addDependentView(view);
+        return view;
+    }
+
+    /**
+     * 将从快照恢复的结果表关联到基表，不扫描基表：结果表沿用快照中的行，基表第一次写入时才在基表写锁内重新计算
+     *
+     * @param table  从快照恢复的结果表
+     * @param tables 视图所在数据库的表，用于查找基表
+     * @return 物化视图
+     */
+    public static MaterializedView restore(Table table, Map<String, Table> tables) {
+        String name = table.getTableName();
+        SQLSelect select = ((SQLSelectStatement) SQLUtils.parseSingleStatement(table.getViewDefinition(), DbType.mysql)).getSelect();
+        MaterializedView view = new MaterializedView(name, select, baseOf(name, select, tables), table);
+        table.attachMaterializedView(view);
+        view.base.addPendingView(view);
+        return view;
+    }
+
+    // 查找视图定义中的基表，基表不能是物化视图的结果表
+    private static Table baseOf(String name, SQLSelect select, Map<String, Table> tables) {
+        SQLSelectQueryBlock queryBlock = select.getFirstQueryBlock();
+        if (queryBlock == null || !(queryBlock.getFrom() instanceof SQLExprTableSource)) {
+            throw new RuntimeException("materialized view " + name + " must select from a single table");
+        }
+        String baseName = ((SQLExprTableSource) queryBlock.getFrom()).getTableName();
+        Table base = tables.get(baseName);
+        if (base == null) {
+            throw new RuntimeException("table not exist");
+        }
+        if (base.getViewDefinition() != null) {
+            throw new RuntimeException("materialized view " + name + " cannot be defined on materialized view " + baseName);
+        }
+        return base;
+    }
+
+    // 编译聚合函数
+    private Aggregate compileAggregate(SQLAggregateExpr aggregateExpr) {
+        String function = aggregateExpr.getMethodName().toUpperCase();
+        if (aggregateExpr.getOption() == SQLAggregateOption.DISTINCT || aggregateExpr.getArguments().size() != 1) {
+            throw new RuntimeException("unsupported aggregate in materialized view " + name + ": " + aggregateExpr);
+        }
+        SQLExpr argument = aggregateExpr.getArguments().get(0);
+        if ("COUNT".equals(function)) {
+            boolean star = argument instanceof SQLAllColumnExpr
+                    || argument instanceof SQLIdentifierExpr && "*".equals(((SQLIdentifierExpr) argument).getName());
+            return new Aggregate(AggregateFunction.COUNT, star ? null : base.compileExpression(argument), "bigint");
+        }
+        Expression expression = base.compileExpression(argument);
+        switch (function) {
+            case "SUM":
+                if (!expression.getType().isNumeric()) {
+                    throw new RuntimeException("SUM in materialized view " + name + " expects a numeric argument: " + aggregateExpr);
+                }
+                return new Aggregate(AggregateFunction.SUM, expression, dataTypeOf(expression.getType()));
+            case "MIN":
+                return new Aggregate(AggregateFunction.MIN, expression, dataTypeOf(argument, expression));
+            case "MAX":
+                return new Aggregate(AggregateFunction.MAX, expression, dataTypeOf(argument, expression));
+            default:
+                throw new RuntimeException("unsupported aggregate in materialized view " + name + ": " + aggregateExpr);
+        }
+    }
+
+    // 获取视图列的数据类型，基表列直接沿用列定义中的类型
+    private String dataTypeOf(SQLExpr expr, Expression expression) {
+        if (expr instanceof SQLIdentifierExpr) {
+            return base.getColumnType(((SQLIdentifierExpr) expr).getName());
+        }
+        return dataTypeOf(expression.getType());
+    }
+
+    private static String dataTypeOf(ValueType type) {
+        switch (type) {
+            case LONG:
+                return "bigint";
+            case DOUBLE:
+                return "double";
+            case DECIMAL:
+                return "decimal";
+            case BOOLEAN:
+                return "boolean";
+            case DATE:
+                return "date";
+            case TIMESTAMP:
+                return "timestamp";
+            default:
+                return "varchar";
+        }
+    }
+
+    /**
+     * 用基表的现有数据计算视图的初始结果，调用方需持有基表的写锁
+     *
+     * @param rows 基表的所有行
+     */
+    void initialize(List<List<Object>> rows) {
+        groups.clear();
+        if (groupExpressions.isEmpty()) {
+            groups.put(Collections.emptyList(), new Group(Collections.emptyList(), aggregates));
+        }
+        apply(Collections.emptyList(), rows);
+    }
+
+    /**
+     * 用基表的现有数据重新计算视图，在结果表的同一个写锁区间内替换已有的行，调用方需持有基表的写锁；
+     * 用于从快照恢复的视图，以及增量更新失败后的恢复
+     *
+     * @param rows 基表的所有行
+     */
+    void rebuild(List<List<Object>> rows) {
+        table.maintain(() -> {
+            table.clearMaintainedRows();
+            initialize(rows);
+        });
+    }
+
+    /**
+     * 将基表的变化应用到视图，调用方需持有基表的写锁；更新以删除旧行、新增新行表示
+     *
+     * @param removed 删除的行（更新前的值）
+     * @param added   新增的行（更新后的值）
+     */
+    void apply(List<List<Object>> removed, List<List<Object>> added) {
+        Set<Group> changed = new LinkedHashSet<>();
+        for (List<Object> row : removed) {
+            if (filter.test(row)) {
+                Group group = groups.get(groupKey(row));
+                group.remove(row, aggregates);
+                changed.add(group);
+            }
+        }
+        for (List<Object> row : added) {
+            if (filter.test(row)) {
+                Group group = groups.computeIfAbsent(groupKey(row), key -> new Group(key, aggregates));
+                group.add(row, aggregates);
+                changed.add(group);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        // 只改写受影响分组对应的行，分组被清空时删除对应的行（没有 GROUP BY 时保留唯一的一行）
+        table.maintain(() -> {
+            for (Group group : changed) {
+                if (group.count == 0 && !groupExpressions.isEmpty()) {
+                    groups.remove(group.key);
+                    if (group.row != null) {
+                        table.removeMaintainedRow(group.block, group.row);
+                    }
+                    continue;
+                }
+                List<Object> values = output(group);
+                if (group.row == null) {
+                    group.row = values;
+                    group.block = table.appendMaintainedRow(values);
+                } else {
+                    table.setMaintainedRow(group.block, group.row, values);
+                }
+            }
+        });
+    }
+
+    // 计算基表中一行数据的分组键，定点数去掉末尾的零使数值相等的值属于同一分组
+    private List<Object> groupKey(List<Object> row) {
+        Object[] key = new Object[groupExpressions.size()];
+        for (int i = 0; i < key.length; i++) {
+            Object value = groupExpressions.get(i).evaluate(row);
+            key[i] = value instanceof BigDecimal ? ((BigDecimal) value).stripTrailingZeros() : value;
+        }
+        return Arrays.asList(key);
+    }
+
+    // 根据分组状态生成视图中的一行
+    private List<Object> output(Group group) {
+        List<Object> row = Arrays.asList(new Object[layout.length]);
+        List<SQLColumnDefinition> columnDefinitions = table.getColumnDefinitions();
+        for (int i = 0; i < layout.length; i++) {
+            Object value = layout[i] >= 0 ? group.key.get(layout[i]) : group.accumulators[-1 - layout[i]].result();
+            row.set(i, ConvertUtils.coerceValue(columnDefinitions.get(i).getDataType().getName(), value));
+        }
+        return row;
+    }
+
+    // 删除视图时解除与基表的关联
+    void detach() {
+        base.removeDependentView(this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDefinition() {
+        return definition;
+    }
+
+    public Table getBase() {
+        return base;
+    }
+
+    public Table getTable() {
+        return table;
+    }
+
+    /**
+     * 支持的聚合函数
+     */
+    private enum AggregateFunction {
+        COUNT, SUM, MIN, MAX
+    }
+
+    /**
+     * 视图中的聚合列
+     */
+    private static class Aggregate {
+        private final AggregateFunction function;   // 聚合函数
+        private final Expression argument;          // 参数表达式，COUNT(*) 为 null
+        private final String dataType;              // 视图列的数据类型
+
+        private Aggregate(AggregateFunction function, Expression argument, String dataType) {
+            this.function = function;
+            this.argument = argument;
+            this.dataType = dataType;
+        }
+
+        private Accumulator newAccumulator() {
+            switch (function) {
+                case COUNT:
+                    return new CountAccumulator();
+                case SUM:
+                    return new SumAccumulator(argument.getType());
+                default:
+                    return new ExtremumAccumulator(function == AggregateFunction.MAX);
+            }
+        }
+    }
+
+    /**
+     * 分组状态：行数、各聚合的累加器以及视图表中对应的行
+     */
+    private static class Group {
+        private final List<Object> key;             // 分组键
+        private final Accumulator[] accumulators;   // 各聚合的累加器
+        private long count;                         // 组内满足条件的行数
+        private Block block;                        // 视图表中对应行所在的数据块
+        private List<Object> row;                   // 视图表中对应的行，尚未写入时为 null
+
+        private Group(List<Object> key, List<Aggregate> aggregates) {
+            this.key = key;
+            this.accumulators = new Accumulator[aggregates.size()];
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i] = aggregates.get(i).newAccumulator();
+            }
+        }
+
+        private void add(List<Object> row, List<Aggregate> aggregates) {
+            count++;
+            for (int i = 0; i < accumulators.length; i++) {
+                Expression argument = aggregates.get(i).argument;
+                accumulators[i].add(argument == null ? Boolean.TRUE : argument.evaluate(row));
+            }
+        }
+
+        private void remove(List<Object> row, List<Aggregate> aggregates) {
+            count--;
+            for (int i = 0; i < accumulators.length; i++) {
+                Expression argument = aggregates.get(i).argument;
+                accumulators[i].remove(argument == null ? Boolean.TRUE : argument.evaluate(row));
+            }
+        }
+    }
+
+    /**
+     * 支持撤回的聚合累加器，空值不参与聚合
+     */
+    private interface Accumulator {
+        void add(Object value);
+
+        void remove(Object value);
+
+        Object result();
+    }
+
+    private static class CountAccumulator implements Accumulator {
+        private long count;     // 非空值的数量
+
+        @Override
+        public void add(Object value) {
+            if (value != null) {
+                count++;
+            }
+        }
+
+        @Override
+        public void remove(Object value) {
+            if (value != null) {
+                count--;
+            }
+        }
+
+        @Override
+        public Object result() {
+            return count;
+        }
+    }
+
+    /**
+     * 求和累加器，整数用 long 累加，定点数用 BigDecimal 精确累加。
+     * <p>
+     * 浮点数同样换算为 BigDecimal 精确累加，只在取结果时舍入为 double：直接用 double 加减时撤回的值与加入时的舍入误差不同，
+     * 反复更新后视图中的和会逐渐偏离重新计算的结果，精确累加的结果与加减的顺序无关。
+     * 无穷大和 NaN 无法换算为 BigDecimal，单独计数。
+     */
+    private static class SumAccumulator implements Accumulator {
+        private final ValueType type;   // 参数类型
+        private long count;             // 非空值的数量，为 0 时结果为空值
+        private long longSum;
+        private BigDecimal decimalSum = BigDecimal.ZERO;
+        private long nanCount;          // NaN 的数量
+        private long positiveInfinities;    // 正无穷大的数量
+        private long negativeInfinities;    // 负无穷大的数量
+
+        private SumAccumulator(ValueType type) {
+            this.type = type;
+        }
+
+        @Override
+        public void add(Object value) {
+            accumulate(value, 1);
+        }
+
+        @Override
+        public void remove(Object value) {
+            accumulate(value, -1);
+        }
+
+        private void accumulate(Object value, int sign) {
+            if (value == null) {
+                return;
+            }
+            count += sign;
+            Number number = (Number) value;
+            if (type == ValueType.LONG) {
+                longSum += sign * number.longValue();
+                return;
+            }
+            BigDecimal decimal;
+            if (type == ValueType.DOUBLE) {
+                double doubleValue = number.doubleValue();
+                if (Double.isNaN(doubleValue)) {
+                    nanCount += sign;
+                    return;
+                }
+                if (Double.isInfinite(doubleValue)) {
+                    if (doubleValue > 0) {
+                        positiveInfinities += sign;
+                    } else {
+                        negativeInfinities += sign;
+                    }
+                    return;
+                }
+                decimal = new BigDecimal(doubleValue);
+            } else {
+                decimal = number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+            }
+            decimalSum = sign > 0 ? decimalSum.add(decimal) : decimalSum.subtract(decimal);
+        }
+
+        @Override
+        public Object result() {
+            if (count == 0) {
+                return null;
+            }
+            if (type == ValueType.LONG) {
+                return longSum;
+            }
+            if (type != ValueType.DOUBLE) {
+                return decimalSum;
+            }
+            if (nanCount > 0 || positiveInfinities > 0 && negativeInfinities > 0) {
+                return Double.NaN;
+            }
+            if (positiveInfinities > 0 || negativeInfinities > 0) {
+                return positiveInfinities > 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+            }
+            return decimalSum.doubleValue();
+        }
+    }
+
+    /**
+     * 最值累加器，保存值的多重集合，删除当前最值时可以直接得到新的最值
+     */
+    private static class ExtremumAccumulator implements Accumulator {
+        private final boolean max;                          // 是否求最大值
+        private final TreeMap<Object, Integer> values;      // 值到出现次数的映射
+
+        private ExtremumAccumulator(boolean max) {
+            this.max = max;
+            this.values = new TreeMap<>();
+        }
+
+        @Override
+        public void add(Object value) {
+            if (value != null) {
+                values.merge(value, 1, Integer::sum);
+            }
+        }
+
+        @Override
+        public void remove(Object value) {
+            if (value != null) {
+                values.computeIfPresent(value, (key, count) -> count == 1 ? null : count - 1);
+            }
+        }
+
+        @Override
+        public Object result() {
+            if (values.isEmpty()) {
+                return null;
+            }
+            return max ? values.lastKey() : values.firstKey();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package cn.autumnclouds.sql.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 表的分区，是独立的存储单元，拥有自己的数据块列表和汇总所有行的区域映射。
+ * <p>
+ * 未分区的表只有一个分区；删除分区时直接丢弃其数据块，不需要逐行删除。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class Partition {
+    private final String name;              // 分区名
+    private final Object upperBound;        // RANGE 分区的上界（不含），MAXVALUE 分区和其他分区为 null
+    private final ArrayList<Block> blocks;  // 按插入顺序排列的数据块
+    private final ZoneMap zoneMap;          // 分区内所有行的区域映射
+
+    /**
+     * 创建一个新的 Partition 对象。
+     *
+     * @param name        分区名
+     * @param upperBound  RANGE 分区的上界（不含），MAXVALUE 分区和其他分区为 null
+     * @param columnCount 列数
+     */
+    Partition(String name, Object upperBound, int columnCount) {
+        this.name = name;
+        this.upperBound = upperBound;
+        this.blocks = new ArrayList<>();
+        this.zoneMap = new ZoneMap(columnCount);
+    }
+
+    /**
+     * 获取分区中的行数。
+     *
+     * @return 行数
+     */
+    public long size() {
+        long size = 0;
+        for (Block block : blocks) {
+            size += block.size();
+        }
+        return size;
+    }
+
+    /**
+     * 预留数据块列表的容量，批量追加前调用，避免追加过程中多次扩容。
+     *
+     * @param blockCount 将要新增的数据块数
+     */
+    void reserve(int blockCount) {
+        blocks.ensureCapacity(blocks.size() + blockCount);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Object getUpperBound() {
+        return upperBound;
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    public ZoneMap getZoneMap() {
+        return zoneMap;
+    }
+}
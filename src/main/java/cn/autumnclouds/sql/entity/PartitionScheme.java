@@ -0,0 +1,290 @@
+package cn.autumnclouds.sql.entity;
+
+import cn.autumnclouds.sql.util.ConvertUtils;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLPartition;
+import com.alibaba.druid.sql.ast.SQLPartitionBy;
+import com.alibaba.druid.sql.ast.SQLPartitionByHash;
+import com.alibaba.druid.sql.ast.SQLPartitionByRange;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * 表的分区方式，负责将行路由到分区以及根据条件裁剪分区。
+ * <p>
+ * RANGE 分区按 VALUES LESS THAN 的上界路由，空值进入第一个分区；
+ * HASH 分区按分区列的值对分区数取模路由，整数直接取模，其余类型使用哈希码，空值进入第一个分区；
+ * 定点数先去掉末尾的零再计算哈希码，使路由和裁剪对精度不同的相等值（1.0 与 1.00）选择同一个分区。
+ * 所有方法都由表在持有锁时调用。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class PartitionScheme {
+    private static final String DEFAULT_PARTITION_NAME = "p0";     // 未分区的表唯一分区的名称
+
+    /**
+     * 分区类型
+     */
+    public enum Type {
+        NONE, RANGE, HASH
+    }
+
+    private final Type type;                    // 分区类型
+    private final int column;                   // 分区列的索引，未分区时为 -1
+    private final int columnCount;              // 表的列数
+    private final Map<String, Partition> partitions;    // 按定义顺序排列的分区
+    private final TreeMap<Comparable<Object>, Partition> ranges;   // RANGE 分区按上界排列，不含 MAXVALUE 分区
+    private final List<Partition> hashPartitions;       // HASH 分区按序号排列
+    private Partition maxValuePartition;        // RANGE 分区中的 MAXVALUE 分区
+
+    /**
+     * 创建一个没有分区的分区方式，分区由调用方添加。
+     *
+     * @param type        分区类型
+     * @param column      分区列的索引，未分区时为 -1
+     * @param columnCount 表的列数
+     */
+    PartitionScheme(Type type, int column, int columnCount) {
+        this.type = type;
+        this.column = column;
+        this.columnCount = columnCount;
+        this.partitions = new LinkedHashMap<>();
+        this.ranges = new TreeMap<>();
+        this.hashPartitions = new ArrayList<>();
+    }
+
+    /**
+     * 根据 CREATE TABLE 中的 PARTITION BY 子句创建分区方式。
+     *
+     * @param partitionBy   PARTITION BY 子句，为 null 时表示不分区
+     * @param columnCount   表的列数
+     * @param indexResolver 列名到列索引的解析函数
+     * @param typeResolver  列索引到数据类型的解析函数
+     * @return 分区方式
+     */
+    public static PartitionScheme of(SQLPartitionBy partitionBy, int columnCount,
+                                     ToIntFunction<String> indexResolver, IntFunction<String> typeResolver) {
+        if (partitionBy == null) {
+            PartitionScheme scheme = new PartitionScheme(Type.NONE, -1, columnCount);
+            scheme.addPartition(DEFAULT_PARTITION_NAME, null);
+            return scheme;
+        }
+        if (partitionBy.getColumns().size() != 1 || !(partitionBy.getColumns().get(0) instanceof SQLIdentifierExpr)) {
+            throw new RuntimeException("partition expression must be a single column");
+        }
+        int column = indexResolver.applyAsInt(((SQLIdentifierExpr) partitionBy.getColumns().get(0)).getName());
+        if (partitionBy instanceof SQLPartitionByRange) {
+            PartitionScheme scheme = new PartitionScheme(Type.RANGE, column, columnCount);
+            if (partitionBy.getPartitions().isEmpty()) {
+                throw new RuntimeException("for RANGE partitions each partition must be defined");
+            }
+            scheme.addRangePartitions(partitionBy.getPartitions(), typeResolver.apply(column));
+            return scheme;
+        }
+        if (partitionBy instanceof SQLPartitionByHash) {
+            PartitionScheme scheme = new PartitionScheme(Type.HASH, column, columnCount);
+            if (!partitionBy.getPartitions().isEmpty()) {
+                for (SQLPartition partition : partitionBy.getPartitions()) {
+                    scheme.addPartition(partition.getName().getSimpleName(), null);
+                }
+            } else {
+                int count = partitionBy.getPartitionsCount() == null ? 1 : Integer.parseInt(partitionBy.getPartitionsCount().toString());
+                if (count <= 0) {
+                    throw new RuntimeException("number of partitions must be positive");
+                }
+                for (int i = 0; i < count; i++) {
+                    scheme.addPartition("p" + i, null);
+                }
+            }
+            return scheme;
+        }
+        throw new RuntimeException("unsupported partition type: " + partitionBy);
+    }
+
+    /**
+     * 添加 RANGE 分区，用于 CREATE TABLE 和 ALTER TABLE ... ADD PARTITION。
+     * <p>
+     * 新分区的上界必须大于已有分区的上界，且已有 MAXVALUE 分区时不能再添加分区。
+     *
+     * @param definitions 分区定义
+     * @param dataType    分区列的数据类型
+     */
+    @SuppressWarnings("unchecked")
+    public void addRangePartitions(List<SQLPartition> definitions, String dataType) {
+        if (type != Type.RANGE) {
+            throw new RuntimeException("ADD PARTITION can only be used on RANGE partitions");
+        }
+        // 先检查所有分区定义，全部合法后再添加
+        Comparable<Object> last = ranges.isEmpty() ? null : ranges.lastKey();
+        Set<String> names = new HashSet<>(partitions.keySet());
+        List<Comparable<Object>> bounds = new ArrayList<>(definitions.size());
+        boolean maxValue = maxValuePartition != null;
+        for (SQLPartition definition : definitions) {
+            String name = definition.getName().getSimpleName();
+            if (!names.add(name)) {
+                throw new RuntimeException("duplicate partition name " + name);
+            }
+            if (definition.getValues() == null || definition.getValues().getItems().size() != 1) {
+                throw new RuntimeException("partition " + name + " must be defined with VALUES LESS THAN (value)");
+            }
+            SQLExpr item = definition.getValues().getItems().get(0);
+            Comparable<Object> bound = null;
+            if (!(item instanceof SQLIdentifierExpr && "MAXVALUE".equalsIgnoreCase(((SQLIdentifierExpr) item).getName()))) {
+                bound = (Comparable<Object>) ConvertUtils.convertValue(dataType, ConvertUtils.getLiteralText(item));
+                if (bound == null) {
+                    throw new RuntimeException("partition " + name + " must have a non-null upper bound");
+                }
+            }
+            if (maxValue || (bound != null && last != null && bound.compareTo(last) <= 0)) {
+                throw new RuntimeException("VALUES LESS THAN value must be strictly increasing for each partition");
+            }
+            maxValue = bound == null;
+            last = bound == null ? last : bound;
+            bounds.add(bound);
+        }
+        for (int i = 0; i < definitions.size(); i++) {
+            addPartition(definitions.get(i).getName().getSimpleName(), bounds.get(i));
+        }
+    }
+
+    /**
+     * 按名称删除分区，只修改分区映射，不访问分区中的行；任何一个分区不存在时不删除任何分区。
+     *
+     * @param names 分区名列表
+     * @return 被删除的分区
+     */
+    public List<Partition> dropPartitions(List<String> names) {
+        if (type != Type.RANGE) {
+            throw new RuntimeException("DROP PARTITION can only be used on RANGE partitions");
+        }
+        Set<String> distinct = new LinkedHashSet<>(names);
+        for (String name : distinct) {
+            if (!partitions.containsKey(name)) {
+                throw new RuntimeException("no such partition named " + name);
+            }
+        }
+        if (distinct.size() == partitions.size()) {
+            throw new RuntimeException("cannot remove all partitions, use DROP TABLE instead");
+        }
+        List<Partition> dropped = new ArrayList<>(distinct.size());
+        for (String name : distinct) {
+            Partition partition = partitions.remove(name);
+            if (partition.getUpperBound() == null) {
+                maxValuePartition = null;
+            } else {
+                ranges.remove(partition.getUpperBound());
+            }
+            dropped.add(partition);
+        }
+        return dropped;
+    }
+
+    // 添加分区，不做检查，用于创建表和从快照恢复
+    @SuppressWarnings("unchecked")
+    Partition addPartition(String name, Object upperBound) {
+        Partition partition = new Partition(name, upperBound, columnCount);
+        partitions.put(name, partition);
+        if (type == Type.HASH) {
+            hashPartitions.add(partition);
+        } else if (type == Type.RANGE) {
+            if (upperBound == null) {
+                maxValuePartition = partition;
+            } else {
+                ranges.put((Comparable<Object>) upperBound, partition);
+            }
+        }
+        return partition;
+    }
+
+    /**
+     * 获取行所属的分区。
+     *
+     * @param row 行数据
+     * @return 分区
+     */
+    @SuppressWarnings("unchecked")
+    public Partition route(List<Object> row) {
+        if (type == Type.NONE) {
+            return partitions.values().iterator().next();
+        }
+        Object value = row.get(column);
+        if (type == Type.HASH) {
+            return hashPartitions.get(hash(value));
+        }
+        if (value == null) {
+            return partitions.values().iterator().next();
+        }
+        Map.Entry<Comparable<Object>, Partition> entry = ranges.higherEntry((Comparable<Object>) value);
+        Partition partition = entry != null ? entry.getValue() : maxValuePartition;
+        if (partition == null) {
+            throw new RuntimeException("table has no partition for value " + value);
+        }
+        return partition;
+    }
+
+    /**
+     * 根据条件裁剪分区：HASH 分区按等值和 IN 条件中的值只保留对应的分区，
+     * RANGE 分区由调用方使用分区的区域映射裁剪。
+     *
+     * @param conditions 条件列表
+     * @param <T>        值类型
+     * @return 可能包含满足条件的行的分区
+     */
+    public <T> Collection<Partition> prune(List<Condition<Comparable<T>>> conditions) {
+        if (type != Type.HASH) {
+            return partitions.values();
+        }
+        BitSet candidates = null;
+        for (Condition<Comparable<T>> condition : conditions) {
+            if (condition.getIndex() != column || condition.getValues() == null) {
+                continue;
+            }
+            BitSet hashes = new BitSet(hashPartitions.size());
+            for (Object value : condition.getValues()) {
+                hashes.set(hash(value));
+            }
+            if (candidates == null) {
+                candidates = hashes;
+            } else {
+                candidates.and(hashes);
+            }
+        }
+        if (candidates == null) {
+            return partitions.values();
+        }
+        List<Partition> result = new ArrayList<>(candidates.cardinality());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            result.add(hashPartitions.get(i));
+        }
+        return result;
+    }
+
+    // 计算值所属的 HASH 分区序号，route 和 prune 都经过这里，保证两者对相等的值选择同一个分区
+    private int hash(Object value) {
+        long hash;
+        if (value == null) {
+            hash = 0;
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            hash = ((Number) value).longValue();
+        } else {
+            hash = ConvertUtils.normalizeDecimal(value).hashCode();
+        }
+        return (int) Math.floorMod(hash, (long) hashPartitions.size());
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public Collection<Partition> getPartitions() {
+        return partitions.values();
+    }
+}
@@ -0,0 +1,38 @@
+package cn.autumnclouds.sql.entity;
+
+import java.util.List;
+
+/**
+ * 查询结果，包含列名和结果行。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class QueryResult {
+    private final List<String> columnNames;     // 结果列名
+    private final List<List<Object>> rows;      // 结果行
+
+    /**
+     * 创建一个新的 QueryResult 对象。
+     *
+     * @param columnNames 结果列名
+     * @param rows        结果行
+     */
+    public QueryResult(List<String> columnNames, List<List<Object>> rows) {
+        this.columnNames = columnNames;
+        this.rows = rows;
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    public List<List<Object>> getRows() {
+        return rows;
+    }
+
+    @Override
+    public String toString() {
+        return rows.toString();
+    }
+}
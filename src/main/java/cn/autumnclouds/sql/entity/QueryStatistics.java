@@ -0,0 +1,99 @@
+package cn.autumnclouds.sql.entity;
+
+/**
+ * 单条语句执行过程中的统计信息，按线程记录。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class QueryStatistics {
+    private static final ThreadLocal<QueryStatistics> CURRENT = ThreadLocal.withInitial(QueryStatistics::new);
+
+    private long scannedPartitions; // 扫描的分区数量
+    private long skippedPartitions; // 通过分区裁剪跳过的分区数量
+    private long scannedBlocks;     // 扫描的数据块数量
+    private long skippedBlocks;     // 通过区域映射跳过的数据块数量
+    private long unsampledBlocks;   // 抽样查询中未被抽中的数据块数量
+    private long scannedRows;       // 扫描的行数
+    private long matchedRows;       // 满足条件的行数
+
+    /**
+     * 开始统计一条新语句，并将其设置为当前线程的统计对象。
+     *
+     * @return 新的统计对象
+     */
+    public static QueryStatistics begin() {
+        QueryStatistics statistics = new QueryStatistics();
+        CURRENT.set(statistics);
+        return statistics;
+    }
+
+    /**
+     * 获取当前线程正在记录的统计对象。
+     *
+     * @return 统计对象
+     */
+    public static QueryStatistics current() {
+        return CURRENT.get();
+    }
+
+    public void addScannedPartition() {
+        scannedPartitions++;
+    }
+
+    public void addSkippedPartition() {
+        skippedPartitions++;
+    }
+
+    public void addScannedBlock(int rows) {
+        scannedBlocks++;
+        scannedRows += rows;
+    }
+
+    public void addSkippedBlock() {
+        skippedBlocks++;
+    }
+
+    public void addUnsampledBlock() {
+        unsampledBlocks++;
+    }
+
+    public void addMatchedRows(long rows) {
+        matchedRows += rows;
+    }
+
+    public long getScannedPartitions() {
+        return scannedPartitions;
+    }
+
+    public long getSkippedPartitions() {
+        return skippedPartitions;
+    }
+
+    public long getScannedBlocks() {
+        return scannedBlocks;
+    }
+
+    public long getSkippedBlocks() {
+        return skippedBlocks;
+    }
+
+    public long getUnsampledBlocks() {
+        return unsampledBlocks;
+    }
+
+    public long getScannedRows() {
+        return scannedRows;
+    }
+
+    public long getMatchedRows() {
+        return matchedRows;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryStatistics{scannedPartitions=" + scannedPartitions + ", skippedPartitions=" + skippedPartitions
+                + ", scannedBlocks=" + scannedBlocks + ", skippedBlocks=" + skippedBlocks + ", unsampledBlocks=" + unsampledBlocks
+                + ", scannedRows=" + scannedRows + ", matchedRows=" + matchedRows + "}";
+    }
+}
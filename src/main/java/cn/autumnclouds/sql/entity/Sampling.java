@@ -0,0 +1,136 @@
+package cn.autumnclouds.sql.entity;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLHint;
+import com.alibaba.druid.sql.ast.statement.SQLTableSampling;
+import cn.autumnclouds.sql.util.ConvertUtils;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 查询的抽样方式，用于近似查询。
+ * <p>
+ * 支持以下写法：
+ * <ul>
+ *     <li>TABLESAMPLE SYSTEM (p) 或 TABLESAMPLE (p PERCENT)：按数据块抽样，每个数据块以 p% 的概率被整块扫描，
+ *     未抽中的数据块不会被读取（从快照恢复的表也不会被解码），速度最快，但同一数据块内的行相关时误差较大</li>
+ *     <li>TABLESAMPLE BERNOULLI (p)：按行抽样，每行以 p% 的概率被选中，需要扫描所有数据块，误差估计更准确</li>
+ *     <li>TABLESAMPLE (n ROWS)：按数据块抽样约 n 行</li>
+ *     <li>查询提示 /&#42;+ SAMPLE(r) &#42;/：按数据块抽样，r 为 0 到 1 之间的抽样率</li>
+ * </ul>
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class Sampling {
+    private static final Pattern HINT_PATTERN = Pattern.compile("\\bSAMPLE\\s*\\(\\s*([0-9.]+)\\s*\\)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * 抽样的单位
+     */
+    public enum Method {
+        SYSTEM, BERNOULLI
+    }
+
+    private final Method method;        // 抽样的单位
+    private final double rate;          // 抽样率，按行数抽样时在确定表的行数后计算
+    private final long rows;            // 抽样的行数，按抽样率抽样时为 0
+
+    private Sampling(Method method, double rate, long rows) {
+        if (rows == 0 && (!(rate > 0) || rate > 1)) {
+            throw new RuntimeException("sample rate must be greater than 0 and at most 100 percent");
+        }
+        this.method = method;
+        this.rate = rate;
+        this.rows = rows;
+    }
+
+    /**
+     * 根据 TABLESAMPLE 子句和查询提示确定抽样方式，TABLESAMPLE 优先。
+     *
+     * @param tableSampling TABLESAMPLE 子句，可以为 null
+     * @param hints         查询提示
+     * @return 抽样方式，不抽样时返回 null
+     */
+    public static Sampling of(SQLTableSampling tableSampling, List<? extends SQLHint> hints) {
+        if (tableSampling != null) {
+            return of(tableSampling);
+        }
+        for (SQLHint hint : hints) {
+            Matcher matcher = HINT_PATTERN.matcher(hint.toString());
+            if (matcher.find()) {
+                return new Sampling(Method.SYSTEM, Double.parseDouble(matcher.group(1)), 0);
+            }
+        }
+        return null;
+    }
+
+    // 解析 TABLESAMPLE 子句，指定 BERNOULLI 或 SYSTEM 时括号中的数值按百分比解释
+    private static Sampling of(SQLTableSampling tableSampling) {
+        Method method = tableSampling.isBernoulli() ? Method.BERNOULLI : Method.SYSTEM;
+        if (tableSampling.getPercent() != null) {
+            return new Sampling(method, number(tableSampling.getPercent()) / 100, 0);
+        }
+        if (tableSampling.getRows() != null) {
+            double value = number(tableSampling.getRows());
+            if (tableSampling.isBernoulli() || tableSampling.isSystem()) {
+                return new Sampling(method, value / 100, 0);
+            }
+            if (value < 1) {
+                throw new RuntimeException("sample row count must be positive");
+            }
+            return new Sampling(method, 0, (long) value);
+        }
+        throw new RuntimeException("unsupported TABLESAMPLE clause: " + tableSampling);
+    }
+
+    private static double number(SQLExpr expr) {
+        try {
+            return Double.parseDouble(ConvertUtils.getLiteralText(expr));
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("invalid sample size: " + expr);
+        }
+    }
+
+    /**
+     * 按表的行数确定抽样率，用于按行数抽样。
+     *
+     * @param tableRows 表的行数
+     * @return 抽样率已确定的抽样方式
+     */
+    Sampling resolve(long tableRows) {
+        if (rows == 0) {
+            return this;
+        }
+        return new Sampling(method, tableRows <= rows ? 1 : (double) rows / tableRows, 0);
+    }
+
+    /**
+     * 判断数据块是否被抽中，按行抽样时所有数据块都需要扫描。
+     *
+     * @return 是否扫描该数据块
+     */
+    boolean sampleBlock() {
+        return method != Method.SYSTEM || rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    /**
+     * 判断行是否被抽中，按数据块抽样时被抽中数据块中的所有行都被选中。
+     *
+     * @return 是否选中该行
+     */
+    boolean sampleRow() {
+        return method != Method.BERNOULLI || rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+}
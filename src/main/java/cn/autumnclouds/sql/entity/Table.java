@@ -1,19 +1,38 @@
 package cn.autumnclouds.sql.entity;
 
 import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLName;
 import com.alibaba.druid.sql.ast.SQLOrderBy;
 import com.alibaba.druid.sql.ast.SQLOrderingSpecification;
+import com.alibaba.druid.sql.ast.SQLPartition;
+import com.alibaba.druid.sql.ast.SQLPartitionBy;
+import com.alibaba.druid.sql.ast.expr.SQLAllColumnExpr;
 import com.alibaba.druid.sql.ast.expr.SQLBinaryOpExpr;
 import com.alibaba.druid.sql.ast.expr.SQLBinaryOperator;
-import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIntegerExpr;
 import com.alibaba.druid.sql.ast.expr.SQLLiteralExpr;
 import com.alibaba.druid.sql.ast.statement.*;
+import com.alibaba.druid.sql.dialect.mysql.ast.MySqlKey;
+import com.alibaba.druid.sql.dialect.mysql.ast.MySqlUnique;
+import cn.autumnclouds.sql.expression.Expression;
+import cn.autumnclouds.sql.expression.ExpressionCompiler;
+import cn.autumnclouds.sql.sink.CollectingResultSink;
+import cn.autumnclouds.sql.sink.ResultSink;
 import cn.autumnclouds.sql.util.ConvertUtils;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * 表示数据库中的表
@@ -21,23 +40,72 @@ import java.util.stream.IntStream;
  * 表的结构包括表名、列定义、数据以及对表的操作方法
  * <p>
  * Table类提供了插入数据、删除数据、更新数据和查询数据等功能
+ * <p>
+ * 查询持有读锁，插入、删除和更新持有写锁，不同线程可以安全地并发访问同一张表
+ * <p>
+ * 表的数据按分区存放，未分区的表只有一个分区；查询先根据条件裁剪分区，再根据区域映射跳过数据块
+ * <p>
+ * 主键和唯一键通过键值到数据块的哈希映射检查，插入、REPLACE 和 ON DUPLICATE KEY UPDATE 每行只需一次按键查找
+ * <p>
+ * 依赖于该表的物化视图在写锁内收到每条语句删除和新增的行；物化视图自身的结果也保存在一张表中，这张表只能由视图维护
+ * <p>
+ * 查询可以通过 TABLESAMPLE 或 SAMPLE 提示只扫描部分数据块或行；只包含聚合函数的查询并行扫描数据块，
+ * 各线程的部分结果（包括 HyperLogLog 和 KLL 草图）扫描结束后合并
+ * <p>
+ * 以 COMMENT 'INGEST' 创建的表使用摄入缓冲区：插入只追加到无锁的线程通道，按批量大小或时间间隔在一次写锁内发布，
+ * 查询和其他写入执行前会先发布缓冲区中的行
  *
+ * @author Oreki
  * @since 2023/5/29
  */
 public class Table {
+    public static final int BLOCK_SIZE = 4096;          // 每个数据块的行数
+    public static final int AUTO_DICTIONARY_THRESHOLD = 256;    // 第一个数据块中不同值不超过该数量的字符串列自动启用字典编码
+    public static final int MAX_DICTIONARY_SIZE = BLOCK_SIZE;   // 字典中的值超过该数量后，之后新建的数据块不再对该列编码
+
     private final String tableName;                     // 表名
     private final List<SQLColumnDefinition> columnDefinitions;  // 列定义列表
 
     private final Map<String, Integer> nameToIndex;     // 列名到列索引的映射
-    private final List<List<Object>> data;              // 数据
+    private PartitionScheme partitionScheme;            // 分区方式
+    private final Dictionary[] dictionaries;            // 各列的字典，未启用字典编码的列为 null
+    private final boolean[] autoDictionary;             // 各列是否允许自动启用字典编码
+    private final ExpressionCompiler expressionCompiler;    // 表达式编译器
+    private final ExpressionCompiler upsertCompiler;    // ON DUPLICATE KEY UPDATE 的表达式编译器，支持 VALUES(列)
+    private final ConditionCompiler conditionCompiler;  // WHERE 条件编译器
+    private final List<UniqueKey> uniqueKeys;           // 主键和唯一键
+    private final Map<Block, Partition> blockOwners;    // 数据块所属的分区，不在其中的数据块已被删除
+    private final List<MaterializedView> dependentViews;    // 定义在该表上的物化视图
+    private final List<MaterializedView> pendingViews;      // 从快照恢复、尚未用该表的数据初始化的物化视图，是 dependentViews 的子集
+    private MaterializedView materializedView;          // 该表保存其结果的物化视图，普通表为 null
+    private String viewDefinition;                      // 物化视图的定义，普通表为 null；从快照恢复时只有定义而没有视图
+    private final ReadWriteLock lock;                   // 表级读写锁
+    private boolean dictionariesDetected;               // 是否已根据第一个写满的数据块检测字典编码列
+    private boolean keysIndexed;                        // 键映射是否包含所有行，从快照恢复的表在第一次写入时建立
+    private IngestBuffer ingestBuffer;                  // 摄入缓冲区，未启用摄入模式时为 null
+    private int codeShifts;                             // 保序字典中编码整体后移的次数，用于判断查询条件中的编码是否过期
 
     /**
-     * 创建一个Table对象
+     * 创建一个未分区的Table对象
      *
      * @param tableName         表名
      * @param columnDefinitions 列定义列表
      */
     public Table(String tableName, List<SQLColumnDefinition> columnDefinitions) {
+        this(tableName, columnDefinitions, Collections.emptyList(), null, null);
+    }
+
+    /**
+     * 创建一个Table对象
+     *
+     * @param tableName         表名
+     * @param columnDefinitions 列定义列表
+     * @param constraints       表级约束列表，其中的 PRIMARY KEY 和 UNIQUE 约束会被强制执行
+     * @param partitionBy       PARTITION BY 子句，为 null 时不分区
+     * @param comment           表注释，包含 INGEST 提示时启用摄入缓冲区，可以为 null
+     */
+    public Table(String tableName, List<SQLColumnDefinition> columnDefinitions, List<SQLTableConstraint> constraints,
+                 SQLPartitionBy partitionBy, SQLExpr comment) {
         this.tableName = tableName;
         this.columnDefinitions = columnDefinitions;
         this.nameToIndex = new HashMap<>(columnDefinitions.size());
@@ -47,35 +115,1085 @@ public class Table {
             nameToIndex.put(columnDefinitions.get(i).getColumnName(), i);
         }
 
-        this.data = new LinkedList<>();
+        this.partitionScheme = PartitionScheme.of(partitionBy, columnDefinitions.size(), this::getIndex, this::getColumnType);
+        this.dictionaries = new Dictionary[columnDefinitions.size()];
+        this.autoDictionary = new boolean[columnDefinitions.size()];
+        initDictionaries();
+        this.expressionCompiler = new ExpressionCompiler(this::getIndex, this::getColumnType);
+        this.upsertCompiler = new ExpressionCompiler(this::getIndex, this::getColumnType, columnDefinitions.size());
+        this.conditionCompiler = new ConditionCompiler(this::getIndex, this::getColumnType, dictionaries);
+        this.uniqueKeys = new ArrayList<>();
+        initUniqueKeys(constraints);
+        this.blockOwners = new IdentityHashMap<>();
+        this.dependentViews = new ArrayList<>();
+        this.pendingViews = new ArrayList<>();
+        this.keysIndexed = true;
+        this.lock = new ReentrantReadWriteLock();
+        enableIngestBuffer(IngestBuffer.of(comment));
     }
 
     /**
-     * 插入一行数据
+     * 启用摄入缓冲区，由数据库在表加入数据库后调用 {@link #startIngestPublisher()} 开始按间隔发布。
+     * <p>
+     * 缓冲的行在发布时才写入数据块，插入语句返回前无法发现键值冲突或无法路由的行，
+     * 因此有主键、唯一键或 RANGE 分区的表不能启用。
+     *
+     * @param ingestBuffer 摄入缓冲区，为 null 时不启用
+     */
+    private void enableIngestBuffer(IngestBuffer ingestBuffer) {
+        if (ingestBuffer == null) {
+            return;
+        }
+        if (!uniqueKeys.isEmpty()) {
+            throw new RuntimeException("INGEST table " + tableName + " cannot have PRIMARY KEY or UNIQUE constraints");
+        }
+        if (partitionScheme.getType() == PartitionScheme.Type.RANGE) {
+            throw new RuntimeException("INGEST table " + tableName + " cannot be partitioned by RANGE");
+        }
+        this.ingestBuffer = ingestBuffer;
+    }
+
+    /**
+     * 开始按间隔发布摄入缓冲区，未启用摄入缓冲区时不做任何事。
+     * 只有加入数据库的表才需要后台发布，因此不在构造时开始，同名的表创建失败时不会留下发布任务
+     */
+    void startIngestPublisher() {
+        if (ingestBuffer != null) {
+            ingestBuffer.schedule(this);
+        }
+    }
+
+    // 停止按间隔发布摄入缓冲区，表被删除时调用
+    void stopIngestPublisher() {
+        if (ingestBuffer != null) {
+            ingestBuffer.cancel();
+        }
+    }
+
+    /**
+     * 根据列约束（PRIMARY KEY、UNIQUE）和表级约束（PRIMARY KEY (...)、UNIQUE KEY name (...)）初始化主键和唯一键。
+     * <p>
+     * 普通索引（KEY name (...)）不限制唯一性，会被忽略。
+     *
+     * @param constraints 表级约束列表
+     */
+    private void initUniqueKeys(List<SQLTableConstraint> constraints) {
+        for (int i = 0; i < columnDefinitions.size(); i++) {
+            SQLColumnDefinition columnDefinition = columnDefinitions.get(i);
+            for (SQLColumnConstraint constraint : columnDefinition.getConstraints()) {
+                if (constraint instanceof SQLColumnPrimaryKey) {
+                    addUniqueKey(UniqueKey.PRIMARY, true, new int[]{i});
+                } else if (constraint instanceof SQLColumnUniqueKey) {
+                    addUniqueKey(columnDefinition.getColumnName(), false, new int[]{i});
+                }
+            }
+        }
+        for (SQLTableConstraint constraint : constraints) {
+            if (!(constraint instanceof SQLUnique)) {
+                continue;
+            }
+            boolean primary = constraint instanceof SQLPrimaryKey;
+            if (constraint instanceof MySqlKey && !primary && !(constraint instanceof MySqlUnique)) {
+                continue;
+            }
+            List<SQLSelectOrderByItem> items = ((SQLUnique) constraint).getColumns();
+            int[] columns = new int[items.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = getIndex(items.get(i).getExpr().toString());
+            }
+            SQLName name = ((SQLUnique) constraint).getName();
+            addUniqueKey(primary ? UniqueKey.PRIMARY : name != null ? name.getSimpleName() : columnDefinitions.get(columns[0]).getColumnName(),
+                    primary, columns);
+        }
+    }
+
+    // 添加主键或唯一键，一张表只能有一个主键，键名不能重复
+    private void addUniqueKey(String name, boolean primary, int[] columns) {
+        for (UniqueKey key : uniqueKeys) {
+            if (primary && key.isPrimary()) {
+                throw new RuntimeException("Multiple primary key defined");
+            }
+            if (key.getName().equals(name)) {
+                throw new RuntimeException("Duplicate key name '" + name + "'");
+            }
+        }
+        uniqueKeys.add(new UniqueKey(name, primary, columns));
+    }
+
+    /**
+     * 插入一行或多行数据
+     * <p>
+     * 投影和类型转换函数每条语句只解析一次，所有行构建完成后一次性追加到数据块
      *
      * @param columnNames 列名列表
      * @param valuesList  值列表
+     * @return 插入的行数
+     */
+    public int insertRow(List<String> columnNames, List<SQLInsertStatement.ValuesClause> valuesList) {
+        return insertRow(columnNames, valuesList, Collections.emptyList());
+    }
+
+    /**
+     * 插入一行或多行数据，支持 ON DUPLICATE KEY UPDATE
+     * <p>
+     * 没有 ON DUPLICATE KEY UPDATE 时任一行与已有行或同一语句中的其他行键值冲突则整条语句失败；
+     * 否则逐行处理，键值冲突的行改为按赋值列表更新已有的行
+     *
+     * @param columnNames        列名列表
+     * @param valuesList         值列表
+     * @param duplicateKeyUpdate ON DUPLICATE KEY UPDATE 的赋值列表，为空时按普通插入处理
+     * @return 受影响的行数，与 MySQL 一致：插入的行计 1，被更新的行计 2，值未改变的行计 0
      */
-    public void insertRow(List<String> columnNames, List<SQLInsertStatement.ValuesClause> valuesList) {
-        valuesList.forEach(valuesClause -> insertRow(columnNames, valuesClause));
+    public int insertRow(List<String> columnNames, List<SQLInsertStatement.ValuesClause> valuesList, List<SQLExpr> duplicateKeyUpdate) {
+        List<Assignment> assignments = compileUpsertAssignments(duplicateKeyUpdate);
+        int[] projection = getProjection(columnNames);
+        List<Function<String, Object>> converters = getConverters(projection);
+        if (ingestBuffer != null) {
+            return ingest(buildRows(projection, converters, valuesList));
+        }
+        lock.writeLock().lock();
+        try {
+            return insert(buildRows(projection, converters, valuesList), assignments);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
-    // 插入一行数据的私有辅助方法
-    private void insertRow(List<String> columnNames, SQLInsertStatement.ValuesClause valuesClause) {
+    /**
+     * 以 REPLACE 方式插入一行或多行数据，先删除与新行键值冲突的所有已有行再插入
+     *
+     * @param columnNames 列名列表
+     * @param valuesList  值列表
+     * @return 受影响的行数，即插入的行数与删除的行数之和
+     */
+    public int replaceRow(List<String> columnNames, List<SQLInsertStatement.ValuesClause> valuesList) {
         int[] projection = getProjection(columnNames);
-        List<SQLExpr> values = valuesClause.getValues();
-        List<Object> row = new ArrayList<>(Collections.nCopies(projection.length, null));
+        List<Function<String, Object>> converters = getConverters(projection);
+        if (ingestBuffer != null) {
+            return ingest(buildRows(projection, converters, valuesList));
+        }
+        lock.writeLock().lock();
+        try {
+            return replace(buildRows(projection, converters, valuesList));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-        // 遍历每个列，并将对应的值进行转换和赋值
+    // 获取投影中各列的类型转换函数
+    private List<Function<String, Object>> getConverters(int[] projection) {
+        List<Function<String, Object>> converters = new ArrayList<>(projection.length);
+        for (int index : projection) {
+            converters.add(ConvertUtils.getConverter(getColumnType(index)));
+        }
+        return converters;
+    }
+
+    /**
+     * 根据 VALUES 子句构建所有行
+     * <p>
+     * 字面量和标识符按文本直接转换；其余表达式在构建行之前按列编译，
+     * 同一列中结构相同的表达式（如每行都是 NOW() 或 id + 1）整条语句只编译一次
+     */
+    private List<List<Object>> buildRows(int[] projection, List<Function<String, Object>> converters,
+                                         List<SQLInsertStatement.ValuesClause> valuesList) {
+        String[] dataTypes = new String[projection.length];
+        List<Map<SQLExpr, Expression>> compiled = new ArrayList<>(projection.length);
         for (int i = 0; i < projection.length; i++) {
-            int index = projection[i];
-            SQLExpr value = values.get(index);
-            String columnName = columnNames.get(index);
-            Object convertedValue = ConvertUtils.convertValue(columnName, value.toString());
-            row.set(i, convertedValue);
+            dataTypes[i] = getColumnType(projection[i]);
+            compiled.add(new HashMap<>());
+        }
+        List<Expression[]> expressions = new ArrayList<>(valuesList.size());
+        for (SQLInsertStatement.ValuesClause valuesClause : valuesList) {
+            List<SQLExpr> values = valuesClause.getValues();
+            if (values.size() != projection.length) {
+                throw new RuntimeException("column count doesn't match value count");
+            }
+            Expression[] rowExpressions = new Expression[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                SQLExpr value = values.get(i);
+                if (!(value instanceof SQLLiteralExpr || value instanceof SQLName)) {
+                    rowExpressions[i] = compiled.get(i).computeIfAbsent(value, expressionCompiler::compile);
+                }
+            }
+            expressions.add(rowExpressions);
+        }
+        List<List<Object>> rows = new ArrayList<>(valuesList.size());
+        for (int r = 0; r < valuesList.size(); r++) {
+            List<SQLExpr> values = valuesList.get(r).getValues();
+            Expression[] rowExpressions = expressions.get(r);
+            List<Object> row = Arrays.asList(new Object[columnDefinitions.size()]);
+            for (int i = 0; i < projection.length; i++) {
+                int index = projection[i];
+                if (rowExpressions[i] == null) {
+                    row.set(index, converters.get(i).apply(ConvertUtils.getLiteralText(values.get(i))));
+                } else {
+                    row.set(index, ConvertUtils.coerceValue(dataTypes[i], rowExpressions[i].evaluate(row)));
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * 插入已计算出的行数据，用于 INSERT ... SELECT
+     * <p>
+     * 值直接按列类型转换，不经过字符串字面量
+     *
+     * @param columnNames 列名列表
+     * @param rows        行数据，每行的值与列名一一对应
+     * @return 插入的行数
+     */
+    public int insertRows(List<String> columnNames, List<List<Object>> rows) {
+        return insertRows(columnNames, rows, Collections.emptyList());
+    }
+
+    /**
+     * 插入已计算出的行数据，支持 ON DUPLICATE KEY UPDATE，用于 INSERT ... SELECT
+     *
+     * @param columnNames        列名列表
+     * @param rows               行数据，每行的值与列名一一对应
+     * @param duplicateKeyUpdate ON DUPLICATE KEY UPDATE 的赋值列表，为空时按普通插入处理
+     * @return 受影响的行数
+     */
+    public int insertRows(List<String> columnNames, List<List<Object>> rows, List<SQLExpr> duplicateKeyUpdate) {
+        List<Assignment> assignments = compileUpsertAssignments(duplicateKeyUpdate);
+        List<List<Object>> converted = convertRows(getProjection(columnNames), rows);
+        if (ingestBuffer != null) {
+            return ingest(converted);
+        }
+        lock.writeLock().lock();
+        try {
+            return insert(converted, assignments);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 以 REPLACE 方式插入已计算出的行数据，用于 REPLACE ... SELECT
+     *
+     * @param columnNames 列名列表
+     * @param rows        行数据，每行的值与列名一一对应
+     * @return 受影响的行数
+     */
+    public int replaceRows(List<String> columnNames, List<List<Object>> rows) {
+        List<List<Object>> converted = convertRows(getProjection(columnNames), rows);
+        if (ingestBuffer != null) {
+            return ingest(converted);
+        }
+        lock.writeLock().lock();
+        try {
+            return replace(converted);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 将已计算出的值按列类型转换为完整的行
+    private List<List<Object>> convertRows(int[] projection, List<List<Object>> rows) {
+        String[] dataTypes = new String[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            dataTypes[i] = getColumnType(projection[i]);
+        }
+        List<List<Object>> converted = new ArrayList<>(rows.size());
+        for (List<Object> values : rows) {
+            if (values.size() != projection.length) {
+                throw new RuntimeException("column count doesn't match value count");
+            }
+            List<Object> row = Arrays.asList(new Object[columnDefinitions.size()]);
+            for (int i = 0; i < projection.length; i++) {
+                row.set(projection[i], ConvertUtils.coerceValue(dataTypes[i], values.get(i)));
+            }
+            converted.add(row);
+        }
+        return converted;
+    }
+
+    /**
+     * 将行追加到摄入缓冲区，表没有主键和唯一键，因此 REPLACE 和 ON DUPLICATE KEY UPDATE 都等同于普通插入。
+     * <p>
+     * 当前线程的通道积累到批量大小时尝试获取写锁发布，写锁被占用时直接返回，由持有者或后台线程发布；
+     * 积累到批量大小的若干倍时等待写锁，避免发布跟不上插入时缓冲区无限增长
+     *
+     * @param rows 行数据
+     * @return 插入的行数
+     */
+    private int ingest(List<List<Object>> rows) {
+        checkWritable();
+        checkIngestFailure();
+        int pending = ingestBuffer.append(rows);
+        if (pending >= ingestBuffer.getBatchSize() * IngestBuffer.BACKPRESSURE_FACTOR) {
+            lock.writeLock().lock();
+        } else if (pending < ingestBuffer.getBatchSize() || !lock.writeLock().tryLock()) {
+            return rows.size();
+        }
+        try {
+            publishIngested();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return rows.size();
+    }
+
+    // 先抛出后台发布失败的异常，再发布摄入缓冲区中的行，调用方需持有写锁
+    private void publishIngested() {
+        if (ingestBuffer == null) {
+            return;
         }
+        checkIngestFailure();
+        publishBatches();
+    }
 
-        data.add(row);
+    // 按批量发布开始时缓冲区中的行，之后并发追加的行留给下一次发布，调用方需持有写锁
+    private void publishBatches() {
+        for (int remaining = ingestBuffer.size(); remaining > 0; ) {
+            List<List<Object>> rows = ingestBuffer.drain(Math.min(remaining, ingestBuffer.getBatchSize()));
+            if (rows.isEmpty()) {
+                return;
+            }
+            remaining -= rows.size();
+            publishBatch(rows);
+        }
+    }
+
+    // 发布一批行并通知物化视图；失败时已写入数据块的行照常通知视图，其余的行退回缓冲区后重新抛出异常
+    private void publishBatch(List<List<Object>> rows) {
+        int published = 0;
+        try {
+            initializePendingViews();
+            for (List<Object> row : rows) {
+                appendRow(partitionScheme.route(row), row);
+                published++;
+            }
+        } catch (RuntimeException | Error e) {
+            ingestBuffer.requeue(rows.subList(published, rows.size()));
+            notifyViews(Collections.emptyList(), rows.subList(0, published));
+            throw e;
+        }
+        notifyViews(Collections.emptyList(), rows);
+    }
+
+    // 抛出后台发布失败的异常，每个异常只抛出一次
+    private void checkIngestFailure() {
+        Throwable failure = ingestBuffer.takeFailure();
+        if (failure != null) {
+            throw new RuntimeException("failed to publish ingested rows to table " + tableName, failure);
+        }
+    }
+
+    /**
+     * 发布摄入缓冲区中的所有行，查询前调用以保证读到已返回的插入；缓冲区为空时不获取写锁。
+     * 后台发布失败时抛出保存的异常
+     */
+    void flushIngested() {
+        if (ingestBuffer == null) {
+            return;
+        }
+        checkIngestFailure();
+        publishBuffered();
+    }
+
+    // 发布摄入缓冲区中的所有行而不检查后台发布失败的异常，由后台线程定期调用
+    void publishBuffered() {
+        if (ingestBuffer == null || ingestBuffer.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            publishBatches();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 插入行数据，没有赋值列表时先检查键值冲突再整批追加，否则逐行插入或更新冲突的行
+    private int insert(List<List<Object>> rows, List<Assignment> assignments) {
+        checkWritable();
+        initializePendingViews();
+        ensureKeyIndex();
+        if (assignments.isEmpty() || uniqueKeys.isEmpty()) {
+            checkUniqueKeys(rows);
+            appendRows(rows);
+            notifyViews(Collections.emptyList(), rows);
+            return rows.size();
+        }
+        // 同一条语句可能多次更新同一行，因此逐行通知物化视图
+        int affected = 0;
+        for (List<Object> row : rows) {
+            Block block = null;
+            Object key = null;
+            for (UniqueKey uniqueKey : uniqueKeys) {
+                key = keyOf(uniqueKey, row);
+                block = key == null ? null : probe(uniqueKey, key);
+                if (block != null) {
+                    affected += upsertRow(block, uniqueKey.find(block, key), row, assignments) ? 2 : 0;
+                    break;
+                }
+            }
+            if (block == null) {
+                appendRow(partitionScheme.route(row), row);
+                notifyViews(Collections.emptyList(), Collections.singletonList(row));
+                affected++;
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * 用待插入行的值更新键值冲突的已有行，赋值依次求值，后面的赋值可以引用前面赋值后的值
+     *
+     * @param block       已有行所在的数据块
+     * @param rowIndex    已有行在块中的位置
+     * @param inserted    待插入的行
+     * @param assignments 赋值列表
+     * @return 行的值是否发生变化
+     */
+    private boolean upsertRow(Block block, int rowIndex, List<Object> inserted, List<Assignment> assignments) {
+        List<Object> row = block.getRows().get(rowIndex);
+        List<Object> joined = new ArrayList<>(row.size() + inserted.size());
+        joined.addAll(row);
+        joined.addAll(inserted);
+        for (Assignment assignment : assignments) {
+            joined.set(assignment.index, ConvertUtils.coerceValue(assignment.dataType, assignment.expression.evaluate(joined)));
+        }
+        List<Object> updated = joined.subList(0, row.size());
+        if (updated.equals(row)) {
+            return false;
+        }
+        // 先检查新的键值和所属分区，失败时不做任何修改
+        for (UniqueKey uniqueKey : uniqueKeys) {
+            Object key = keyOf(uniqueKey, updated);
+            if (key != null && !key.equals(uniqueKey.keyOf(row)) && probe(uniqueKey, key) != null) {
+                throw uniqueKey.duplicate(key);
+            }
+        }
+        Partition target = partitionScheme.route(updated);
+        Partition partition = blockOwners.get(block);
+        List<Object> before = dependentViews.isEmpty() ? null : new ArrayList<>(row);
+        unindexRow(row);
+        for (int i = 0; i < row.size(); i++) {
+            if (!Objects.equals(row.get(i), updated.get(i))) {
+                block.set(rowIndex, i, updated.get(i));
+                partition.getZoneMap().widen(i, row.get(i));
+            }
+        }
+        if (target != partition) {
+            detachRow(partition, block, rowIndex);
+            appendRow(target, row);
+        } else {
+            indexRow(block, row);
+        }
+        if (before != null) {
+            notifyViews(Collections.singletonList(before), Collections.singletonList(row));
+        }
+        return true;
+    }
+
+    // 以 REPLACE 方式逐行插入，先删除与新行任一键值冲突的已有行
+    private int replace(List<List<Object>> rows) {
+        checkWritable();
+        initializePendingViews();
+        ensureKeyIndex();
+        int affected = 0;
+        for (List<Object> row : rows) {
+            // 先检查新行的分区和主键，失败时不删除任何行
+            Partition target = partitionScheme.route(row);
+            Object[] keys = new Object[uniqueKeys.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = keyOf(uniqueKeys.get(i), row);
+            }
+            List<List<Object>> removed = new ArrayList<>();
+            for (int i = 0; i < keys.length; i++) {
+                UniqueKey uniqueKey = uniqueKeys.get(i);
+                Object key = keys[i];
+                Block block = key == null ? null : probe(uniqueKey, key);
+                if (block != null) {
+                    int rowIndex = uniqueKey.find(block, key);
+                    removed.add(block.getRows().get(rowIndex));
+                    unindexRow(block.getRows().get(rowIndex));
+                    detachRow(blockOwners.get(block), block, rowIndex);
+                }
+            }
+            appendRow(target, row);
+            notifyViews(removed, Collections.singletonList(row));
+            affected += removed.size() + 1;
+        }
+        return affected;
+    }
+
+    // 将一条语句删除和新增的行通知依赖于该表的物化视图，更新以删除旧值、新增新值表示
+    private void notifyViews(List<List<Object>> removed, List<List<Object>> added) {
+        if (removed.isEmpty() && added.isEmpty()) {
+            return;
+        }
+        for (MaterializedView view : dependentViews) {
+            try {
+                view.apply(removed, added);
+            } catch (RuntimeException e) {
+                // 增量更新中途失败时部分分组已经改变，用该表的现有数据重新计算视图
+                view.rebuild(currentRows());
+            }
+        }
+    }
+
+    // 收集该表所有数据块中的行，调用方需持有锁
+    private List<List<Object>> currentRows() {
+        List<List<Object>> rows = new ArrayList<>();
+        forEachBlock(block -> rows.addAll(block.getRows()));
+        return rows;
+    }
+
+    // 用该表的现有数据初始化从快照恢复的物化视图，调用方需持有写锁，并且在修改数据之前调用
+    private void initializePendingViews() {
+        if (pendingViews.isEmpty()) {
+            return;
+        }
+        List<List<Object>> rows = currentRows();
+        for (MaterializedView view : pendingViews) {
+            view.rebuild(rows);
+        }
+        pendingViews.clear();
+    }
+
+    // 物化视图的结果表只能由视图维护
+    private void checkWritable() {
+        if (viewDefinition != null) {
+            throw new RuntimeException("materialized view " + tableName + " is read-only");
+        }
+    }
+
+    // 编译 ON DUPLICATE KEY UPDATE 的赋值列表
+    private List<Assignment> compileUpsertAssignments(List<SQLExpr> duplicateKeyUpdate) {
+        List<Assignment> assignments = new ArrayList<>(duplicateKeyUpdate.size());
+        for (SQLExpr item : duplicateKeyUpdate) {
+            if (!(item instanceof SQLBinaryOpExpr) || ((SQLBinaryOpExpr) item).getOperator() != SQLBinaryOperator.Equality) {
+                throw new RuntimeException("unsupported ON DUPLICATE KEY UPDATE item: " + item);
+            }
+            int index = getIndex(((SQLBinaryOpExpr) item).getLeft().toString());
+            assignments.add(new Assignment(index, getColumnType(index), upsertCompiler.compile(((SQLBinaryOpExpr) item).getRight())));
+        }
+        return assignments;
+    }
+
+    // 检查待插入的行与已有行以及彼此之间没有键值冲突
+    private void checkUniqueKeys(List<List<Object>> rows) {
+        for (UniqueKey uniqueKey : uniqueKeys) {
+            Set<Object> seen = new HashSet<>();
+            for (List<Object> row : rows) {
+                Object key = keyOf(uniqueKey, row);
+                if (key != null && (probe(uniqueKey, key) != null || !seen.add(key))) {
+                    throw uniqueKey.duplicate(key);
+                }
+            }
+        }
+    }
+
+    // 获取一行数据的键值，主键的列不能为空值
+    private Object keyOf(UniqueKey uniqueKey, List<Object> row) {
+        Object key = uniqueKey.keyOf(row);
+        if (key == null && uniqueKey.isPrimary()) {
+            for (int column : uniqueKey.getColumns()) {
+                if (row.get(column) == null) {
+                    throw new RuntimeException("Column '" + columnDefinitions.get(column).getColumnName() + "' cannot be null");
+                }
+            }
+        }
+        return key;
+    }
+
+    // 按键值查找行所在的数据块
+    private Block probe(UniqueKey uniqueKey, Object key) {
+        return uniqueKey.getEntries().get(key);
+    }
+
+    // 确保键映射包含所有行，从快照恢复的表第一次写入时才建立映射，此时会加载所有数据块；没有唯一键的表不需要加载
+    private void ensureKeyIndex() {
+        if (keysIndexed) {
+            return;
+        }
+        if (uniqueKeys.isEmpty()) {
+            keysIndexed = true;
+            return;
+        }
+        for (UniqueKey uniqueKey : uniqueKeys) {
+            uniqueKey.getEntries().clear();
+        }
+        forEachBlock(block -> {
+            for (List<Object> row : block.getRows()) {
+                indexRow(block, row);
+            }
+        });
+        keysIndexed = true;
+    }
+
+    // 将行的所有键值指向其所在的数据块
+    private void indexRow(Block block, List<Object> row) {
+        for (UniqueKey uniqueKey : uniqueKeys) {
+            Object key = uniqueKey.keyOf(row);
+            if (key != null) {
+                uniqueKey.getEntries().put(key, block);
+            }
+        }
+    }
+
+    // 从键映射中移除行的所有键值
+    private void unindexRow(List<Object> row) {
+        if (!keysIndexed) {
+            return;
+        }
+        for (UniqueKey uniqueKey : uniqueKeys) {
+            Object key = uniqueKey.keyOf(row);
+            if (key != null) {
+                uniqueKey.getEntries().remove(key);
+            }
+        }
+    }
+
+    // 从键映射中移除指向数据块的所有键值
+    private void unindexBlock(Block block) {
+        for (List<Object> row : block.getRows()) {
+            for (UniqueKey uniqueKey : uniqueKeys) {
+                Object key = uniqueKey.keyOf(row);
+                if (key != null) {
+                    uniqueKey.getEntries().remove(key, block);
+                }
+            }
+        }
+    }
+
+    // 从数据块中移除一行，不维护键映射；块被清空时回收（保留最后一个块用于追加），分区被清空时重置分区的区域映射
+    private void detachRow(Partition partition, Block block, int rowIndex) {
+        block.removeIf(i -> i == rowIndex);
+        List<Block> blocks = partition.getBlocks();
+        if (block.size() == 0 && blocks.get(blocks.size() - 1) != block) {
+            blocks.remove(block);
+            blockOwners.remove(block);
+        }
+        if (partition.size() == 0) {
+            partition.getZoneMap().reset();
+        }
+    }
+
+    // 批量追加行数据，先确定每行所属的分区（存在无法路由的行时整批失败），再预先为各分区分配数据块后依次追加
+    private void appendRows(List<List<Object>> rows) {
+        Map<Partition, List<List<Object>>> routed = new LinkedHashMap<>();
+        for (List<Object> row : rows) {
+            routed.computeIfAbsent(partitionScheme.route(row), partition -> new ArrayList<>()).add(row);
+        }
+        routed.forEach((partition, partitionRows) -> {
+            List<Block> blocks = partition.getBlocks();
+            Block last = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+            int free = last == null ? 0 : last.getCapacity() - last.size();
+            if (partitionRows.size() > free) {
+                partition.reserve((partitionRows.size() - free + BLOCK_SIZE - 1) / BLOCK_SIZE);
+            }
+            for (List<Object> row : partitionRows) {
+                appendRow(partition, row);
+            }
+        });
+    }
+
+    // 将一行数据追加到分区的最后一个数据块，块已满时新建数据块
+    private void appendRow(Partition partition, List<Object> row) {
+        List<Block> blocks = partition.getBlocks();
+        Block last = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+        if (last == null || last.isFull()) {
+            retireLargeDictionaries();
+            last = new Block(BLOCK_SIZE, dictionaries);
+            blocks.add(last);
+            blockOwners.put(last, partition);
+        }
+        last.add(row);
+        partition.getZoneMap().add(row);
+        if (keysIndexed) {
+            indexRow(last, row);
+        }
+        // 第一个数据块写满时根据其中的数据决定哪些字符串列自动启用字典编码
+        if (!dictionariesDetected && last.isFull()) {
+            dictionariesDetected = true;
+            detectDictionaryColumns(last);
+        }
+    }
+
+    // 对所有分区的所有数据块执行操作
+    private void forEachBlock(Consumer<Block> action) {
+        for (Partition partition : partitionScheme.getPartitions()) {
+            partition.getBlocks().forEach(action);
+        }
+    }
+
+    /**
+     * 根据列定义中的注释提示初始化字典编码。
+     * <p>
+     * COMMENT 'DICT' 启用字典编码，COMMENT 'DICT ORDERED' 启用保序字典编码，
+     * COMMENT 'NO DICT' 禁止自动启用；其余字符串列在不同值较少时自动启用字典编码。
+     */
+    private void initDictionaries() {
+        for (int i = 0; i < columnDefinitions.size(); i++) {
+            if (!isStringType(getColumnType(i))) {
+                continue;
+            }
+            SQLExpr comment = columnDefinitions.get(i).getComment();
+            String hint = comment == null ? "" : String.valueOf(ConvertUtils.getLiteralText(comment)).toUpperCase();
+            if (hint.contains("NO DICT")) {
+                continue;
+            }
+            if (hint.contains("DICT")) {
+                enableDictionary(i, hint.contains("ORDERED"));
+            } else {
+                autoDictionary[i] = true;
+            }
+        }
+    }
+
+    // 对不同值数量不超过阈值的字符串列启用字典编码
+    private void detectDictionaryColumns(Block block) {
+        for (int i = 0; i < autoDictionary.length; i++) {
+            if (!autoDictionary[i] || dictionaries[i] != null) {
+                continue;
+            }
+            Set<Object> distinct = new HashSet<>();
+            for (List<Object> row : block.getRows()) {
+                distinct.add(row.get(i));
+                if (distinct.size() > AUTO_DICTIONARY_THRESHOLD) {
+                    break;
+                }
+            }
+            if (distinct.size() <= AUTO_DICTIONARY_THRESHOLD) {
+                enableDictionary(i, false);
+            }
+        }
+    }
+
+    // 为指定列启用字典编码，并为已有数据建立编码
+    private void enableDictionary(int index, boolean ordered) {
+        // 已有数据块的编码在下次读取时才重新编码，这里只记录查询条件中的编码已过期
+        Dictionary dictionary = new Dictionary(ordered, position -> codeShifts++);
+        dictionaries[index] = dictionary;
+        forEachBlock(block -> block.encodeColumn(index, dictionary));
+    }
+
+    /**
+     * 对字典大小超过上限的列停用字典编码。
+     * <p>
+     * 第一个数据块中不同值较少的列之后可能出现大量不同值，字典编码不再节省空间，
+     * 保序字典每插入一个新值还会使所有数据块中的编码过期。停用后新建的数据块按原值保存该列，
+     * 已有数据块保留原有编码和字典，该列的过滤条件不再使用编码比较，快照也按原值保存该列。
+     */
+    private void retireLargeDictionaries() {
+        for (int i = 0; i < dictionaries.length; i++) {
+            if (dictionaries[i] != null && dictionaries[i].size() > MAX_DICTIONARY_SIZE) {
+                dictionaries[i] = null;
+                autoDictionary[i] = false;
+            }
+        }
+    }
+
+    /**
+     * 将表写入二进制快照文件，写入期间持有读锁
+     *
+     * @param file 快照文件
+     * @throws IOException 写入失败时抛出异常
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        flushIngested();
+        lock.readLock().lock();
+        try {
+            TableSnapshot.write(this, file);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 将表及定义在该表上的物化视图的结果表写入快照文件，写入期间持有该表的读锁。
+     * <p>
+     * 物化视图只在该表的写锁内维护，因此视图的快照与该表的快照来自同一时刻，
+     * 恢复后视图沿用快照中的行直到该表第一次写入也不会与该表不一致
+     *
+     * @param files 表到快照文件的映射，返回 null 的物化视图不写入
+     * @return 已写入的表，第一个是该表
+     * @throws IOException 写入失败时抛出异常
+     */
+    List<Table> writeSnapshots(Function<Table, Path> files) throws IOException {
+        flushIngested();
+        List<Table> written = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            TableSnapshot.write(this, files.apply(this));
+            written.add(this);
+            for (MaterializedView view : dependentViews) {
+                Path file = files.apply(view.getTable());
+                if (file != null) {
+                    view.getTable().writeSnapshot(file);
+                    written.add(view.getTable());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return written;
+    }
+
+    /**
+     * 从二进制快照文件恢复表，文件通过内存映射读取，数据块在第一次被访问时才解码
+     *
+     * @param file 快照文件
+     * @return 恢复的表
+     * @throws IOException 读取失败或文件损坏时抛出异常
+     */
+    public static Table readSnapshot(Path file) throws IOException {
+        return TableSnapshot.read(file);
+    }
+
+    // 从快照恢复时重新创建列字典，返回的字典由调用方按编码顺序填充
+    Dictionary restoreDictionary(int index, boolean ordered) {
+        autoDictionary[index] = false;
+        enableDictionary(index, ordered);
+        return dictionaries[index];
+    }
+
+    // 从快照恢复时移除列字典（快照中该列未编码）
+    void dropDictionary(int index) {
+        autoDictionary[index] = false;
+        dictionaries[index] = null;
+    }
+
+    // 从快照恢复时设置分区方式，分区由快照按原顺序添加
+    void restorePartitionScheme(PartitionScheme partitionScheme) {
+        this.partitionScheme = partitionScheme;
+    }
+
+    // 从快照恢复时向分区追加数据块，分区的区域映射由数据块的区域映射汇总得到，键映射推迟到第一次写入时建立
+    void restoreBlock(Partition partition, Block block) {
+        partition.getBlocks().add(block);
+        partition.getZoneMap().merge(block.getZoneMap());
+        blockOwners.put(block, partition);
+        keysIndexed = false;
+    }
+
+    // 从快照恢复时启用摄入缓冲区
+    void restoreIngestBuffer(int batchSize, long intervalMillis) {
+        enableIngestBuffer(new IngestBuffer(batchSize, intervalMillis));
+    }
+
+    IngestBuffer getIngestBuffer() {
+        return ingestBuffer;
+    }
+
+    // 从快照恢复时设置主键和唯一键
+    void restoreUniqueKeys(List<UniqueKey> keys) {
+        uniqueKeys.clear();
+        uniqueKeys.addAll(keys);
+        keysIndexed = false;
+    }
+
+    PartitionScheme getPartitionScheme() {
+        return partitionScheme;
+    }
+
+    List<UniqueKey> getUniqueKeys() {
+        return uniqueKeys;
+    }
+
+    // 在基表写锁内用已有的行初始化物化视图，之后的写入都会通知该视图
+    void addDependentView(MaterializedView view) {
+        lock.writeLock().lock();
+        try {
+            publishIngested();
+            view.initialize(currentRows());
+            dependentViews.add(view);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 关联从快照恢复的物化视图，视图的结果表沿用快照中的行，直到该表第一次写入时才用该表的数据重新计算
+    void addPendingView(MaterializedView view) {
+        lock.writeLock().lock();
+        try {
+            dependentViews.add(view);
+            pendingViews.add(view);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void removeDependentView(MaterializedView view) {
+        lock.writeLock().lock();
+        try {
+            dependentViews.remove(view);
+            pendingViews.remove(view);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    List<MaterializedView> getDependentViews() {
+        return dependentViews;
+    }
+
+    // 将该表设为物化视图的结果表
+    void attachMaterializedView(MaterializedView view) {
+        this.materializedView = view;
+        this.viewDefinition = view.getDefinition();
+    }
+
+    // 从快照恢复物化视图的结果表时记录视图定义，由数据库在所有表恢复后将视图关联到基表
+    void restoreViewDefinition(String viewDefinition) {
+        this.viewDefinition = viewDefinition;
+    }
+
+    MaterializedView getMaterializedView() {
+        return materializedView;
+    }
+
+    String getViewDefinition() {
+        return viewDefinition;
+    }
+
+    // 在结果表的写锁内维护物化视图
+    void maintain(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 向物化视图的结果表追加一行，返回该行所在的数据块
+    Block appendMaintainedRow(List<Object> row) {
+        Partition partition = partitionScheme.route(row);
+        appendRow(partition, row);
+        List<Block> blocks = partition.getBlocks();
+        return blocks.get(blocks.size() - 1);
+    }
+
+    // 将物化视图结果表中的一行改为新值
+    void setMaintainedRow(Block block, List<Object> row, List<Object> values) {
+        int rowIndex = indexOf(block, row);
+        Partition partition = blockOwners.get(block);
+        for (int i = 0; i < values.size(); i++) {
+            if (!Objects.equals(row.get(i), values.get(i))) {
+                block.set(rowIndex, i, values.get(i));
+                partition.getZoneMap().widen(i, row.get(i));
+            }
+        }
+    }
+
+    // 删除物化视图结果表中的所有行
+    void clearMaintainedRows() {
+        for (Partition partition : partitionScheme.getPartitions()) {
+            partition.getBlocks().forEach(blockOwners::remove);
+            partition.getBlocks().clear();
+            partition.getZoneMap().reset();
+        }
+    }
+
+    // 从物化视图的结果表中删除一行
+    void removeMaintainedRow(Block block, List<Object> row) {
+        detachRow(blockOwners.get(block), block, indexOf(block, row));
+    }
+
+    // 查找行对象在数据块中的位置
+    private static int indexOf(Block block, List<Object> row) {
+        List<List<Object>> rows = block.getRows();
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i) == row) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("row not found in block");
+    }
+
+    // 编译在该表的行上求值的表达式
+    Expression compileExpression(SQLExpr expr) {
+        return expressionCompiler.compile(expr);
+    }
+
+    // 将 WHERE 条件编译为作用于行的谓词，空值不满足任何比较条件
+    <T> Predicate<List<Object>> compileFilter(SQLExpr where) {
+        List<Condition<Comparable<T>>> conditions = conditionCompiler.compile(where);
+        return row -> {
+            for (Condition<Comparable<T>> condition : conditions) {
+                Comparable<T> value = ConditionCompiler.cast(row.get(condition.getIndex()));
+                if (value == null || !condition.getPredicate().test(value)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    Dictionary[] getDictionaries() {
+        return dictionaries;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<SQLColumnDefinition> getColumnDefinitions() {
+        return columnDefinitions;
+    }
+
+    // 判断是否为字符串类型
+    private static boolean isStringType(String dataType) {
+        String type = dataType.toLowerCase();
+        return "varchar".equals(type) || "char".equals(type) || "nvarchar".equals(type)
+                || "text".equals(type) || "string".equals(type);
+    }
+
+    /**
+     * 添加 RANGE 分区，新分区的上界必须大于已有分区的上界
+     *
+     * @param definitions 分区定义列表
+     */
+    public void addPartitions(List<SQLPartition> definitions) {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            partitionScheme.addRangePartitions(definitions, getColumnType(partitionScheme.getColumn()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除 RANGE 分区及其中的所有行
+     * <p>
+     * 被删除的行在同一个写锁区间内从键映射中移除；表上定义了物化视图时，被删除的行还需要逐行从视图中撤回
+     *
+     * @param partitionNames 分区名列表
+     * @return 删除的行数
+     */
+    public long dropPartitions(List<String> partitionNames) {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            initializePendingViews();
+            long dropped = 0;
+            List<List<Object>> removed = new ArrayList<>();
+            for (Partition partition : partitionScheme.dropPartitions(partitionNames)) {
+                dropped += partition.size();
+                for (Block block : partition.getBlocks()) {
+                    blockOwners.remove(block);
+                    if (keysIndexed && !uniqueKeys.isEmpty()) {
+                        unindexBlock(block);
+                    }
+                    if (!dependentViews.isEmpty()) {
+                        removed.addAll(block.getRows());
+                    }
+                }
+            }
+            notifyViews(removed, Collections.emptyList());
+            return dropped;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -83,12 +1201,48 @@ public class Table {
      *
      * @param where WHERE条件
      * @param <T>   值类型
+     * @return 删除的行数
      */
-    public <T> void deleteRow(SQLExpr where) {
-        Condition<Comparable<T>> condition = handleWhere(where);
-
-        // 使用条件的谓词进行删除
-        data.removeIf(row -> condition.getPredicate().test((Comparable<T>) row.get(condition.getIndex())));
+    public <T> int deleteRow(SQLExpr where) {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            initializePendingViews();
+            publishIngested();
+            List<Condition<Comparable<T>>> conditions = conditionCompiler.compile(where);
+            // 仅在可能命中的分区和数据块中使用条件的谓词进行删除
+            int deleted = 0;
+            List<List<Object>> removed = new ArrayList<>();
+            for (Partition partition : BlockScanner.prunePartitions(partitionScheme, conditions)) {
+                for (Block block : BlockScanner.pruneBlocks(partition, conditions)) {
+                    deleted += block.removeIf(rowIndex -> {
+                        if (!BlockScanner.matches(block, rowIndex, conditions)) {
+                            return false;
+                        }
+                        unindexRow(block.getRows().get(rowIndex));
+                        if (!dependentViews.isEmpty()) {
+                            removed.add(block.getRows().get(rowIndex));
+                        }
+                        return true;
+                    });
+                }
+                // 回收被清空的数据块（保留最后一个块用于追加），分区被清空时重置分区的区域映射
+                List<Block> blocks = partition.getBlocks();
+                for (int i = blocks.size() - 2; i >= 0; i--) {
+                    if (blocks.get(i).size() == 0) {
+                        blockOwners.remove(blocks.remove(i));
+                    }
+                }
+                if (partition.size() == 0) {
+                    partition.getZoneMap().reset();
+                }
+            }
+            notifyViews(removed, Collections.emptyList());
+            QueryStatistics.current().addMatchedRows(deleted);
+            return deleted;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -97,25 +1251,149 @@ public class Table {
      * @param updateSetItems 更新项列表
      * @param where          WHERE条件
      * @param <T>            值类型
+     * @return 更新的行数
      */
-    public <T> void updateRow(List<SQLUpdateSetItem> updateSetItems, SQLExpr where) {
-        Condition<Comparable<T>> condition = handleWhere(where);
+    public <T> int updateRow(List<SQLUpdateSetItem> updateSetItems, SQLExpr where) {
+        // 每条语句只编译一次更新表达式
+        List<Assignment> assignments = updateSetItems.stream().map(this::compileAssignment).collect(Collectors.toList());
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            initializePendingViews();
+            publishIngested();
+            List<Condition<Comparable<T>>> conditions = conditionCompiler.compile(where);
+            // 使用条件的谓词找出需要更新的行后再统一更新，避免更新后的值影响同一条语句的匹配
+            Map<Block, int[]> matchedRows = new LinkedHashMap<>();
+            Map<Block, Partition> owners = new HashMap<>();
+            for (Partition partition : BlockScanner.prunePartitions(partitionScheme, conditions)) {
+                for (Block block : BlockScanner.pruneBlocks(partition, conditions)) {
+                    int[] matched = IntStream.range(0, block.size()).filter(rowIndex -> BlockScanner.matches(block, rowIndex, conditions)).toArray();
+                    if (matched.length > 0) {
+                        matchedRows.put(block, matched);
+                        owners.put(block, partition);
+                    }
+                }
+            }
+            // 更新分区列时行可能移动到其他分区，更新键的列时新键值可能冲突；先检查所有行的新值，失败时不做任何修改
+            boolean relocating = partitionScheme.getType() != PartitionScheme.Type.NONE
+                    && assignments.stream().anyMatch(assignment -> assignment.index == partitionScheme.getColumn());
+            List<UniqueKey> changedKeys = uniqueKeys.stream()
+                    .filter(uniqueKey -> assignments.stream().anyMatch(assignment -> uniqueKey.contains(assignment.index)))
+                    .collect(Collectors.toList());
+            if (relocating || !changedKeys.isEmpty()) {
+                ensureKeyIndex();
+                List<List<Object>> originals = new ArrayList<>();
+                List<List<Object>> copies = new ArrayList<>();
+                matchedRows.forEach((block, matched) -> {
+                    for (int rowIndex : matched) {
+                        List<Object> copy = new ArrayList<>(block.getRows().get(rowIndex));
+                        for (Assignment assignment : assignments) {
+                            copy.set(assignment.index, ConvertUtils.coerceValue(assignment.dataType, assignment.expression.evaluate(copy)));
+                        }
+                        if (relocating) {
+                            partitionScheme.route(copy);
+                        }
+                        originals.add(block.getRows().get(rowIndex));
+                        copies.add(copy);
+                    }
+                });
+                checkUpdatedKeys(changedKeys, originals, copies);
+            }
+            // 先移除所有被更新行的旧键值再逐行写入新键值，行之间交换键值时不会互相覆盖
+            if (!changedKeys.isEmpty()) {
+                matchedRows.forEach((block, matched) -> {
+                    for (int rowIndex : matched) {
+                        unindexRow(block.getRows().get(rowIndex));
+                    }
+                });
+            }
+            // 物化视图需要被更新行的旧值
+            List<List<Object>> before = new ArrayList<>();
+            List<List<Object>> after = new ArrayList<>();
+            if (!dependentViews.isEmpty()) {
+                matchedRows.forEach((block, matched) -> {
+                    for (int rowIndex : matched) {
+                        before.add(new ArrayList<>(block.getRows().get(rowIndex)));
+                        after.add(block.getRows().get(rowIndex));
+                    }
+                });
+            }
+            int updated = 0;
+            List<List<Object>> moved = new ArrayList<>();
+            for (Map.Entry<Block, int[]> entry : matchedRows.entrySet()) {
+                Block block = entry.getKey();
+                Partition partition = owners.get(block);
+                BitSet leaving = new BitSet(block.size());
+                for (int rowIndex : entry.getValue()) {
+                    updateRow(partition, block, rowIndex, assignments);
+                    if (!changedKeys.isEmpty()) {
+                        indexRow(block, block.getRows().get(rowIndex));
+                    }
+                    if (relocating && partitionScheme.route(block.getRows().get(rowIndex)) != partition) {
+                        leaving.set(rowIndex);
+                        moved.add(block.getRows().get(rowIndex));
+                    }
+                }
+                if (!leaving.isEmpty()) {
+                    block.removeIf(leaving::get);
+                }
+                updated += entry.getValue().length;
+            }
+            // 所有行更新完成后再将移出的行追加到新分区
+            for (List<Object> row : moved) {
+                appendRow(partitionScheme.route(row), row);
+            }
+            notifyViews(before, after);
+            QueryStatistics.current().addMatchedRows(updated);
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-        // 使用条件的谓词进行更新
-        data.stream().filter(row -> condition.getPredicate().test((Comparable<T>) row.get(condition.getIndex())))
-                .forEach(row -> updateRow(row, updateSetItems));
+    /**
+     * 检查更新后的键值与未被更新的行以及彼此之间没有冲突
+     * <p>
+     * 被更新行的旧键值会被释放，因此新键值可以等于其他被更新行的旧键值
+     *
+     * @param changedKeys 被更新的列所属的键
+     * @param originals   被更新的行
+     * @param copies      被更新的行更新后的副本，与 originals 一一对应
+     */
+    private void checkUpdatedKeys(List<UniqueKey> changedKeys, List<List<Object>> originals, List<List<Object>> copies) {
+        for (UniqueKey uniqueKey : changedKeys) {
+            Set<Object> released = new HashSet<>();
+            for (List<Object> row : originals) {
+                Object key = uniqueKey.keyOf(row);
+                if (key != null) {
+                    released.add(key);
+                }
+            }
+            Set<Object> seen = new HashSet<>();
+            for (List<Object> copy : copies) {
+                Object key = keyOf(uniqueKey, copy);
+                if (key != null && (!seen.add(key) || probe(uniqueKey, key) != null && !released.contains(key))) {
+                    throw uniqueKey.duplicate(key);
+                }
+            }
+        }
     }
 
-    // 更新行的私有辅助方法
-    private void updateRow(List<Object> row, List<SQLUpdateSetItem> updateSetItems) {
-        updateSetItems.forEach(updateSetItem -> updateItem(row, updateSetItem));
+    // 更新行的私有辅助方法，由数据块维护编码和区域映射，同时放宽分区的区域映射
+    private void updateRow(Partition partition, Block block, int rowIndex, List<Assignment> assignments) {
+        List<Object> row = block.getRows().get(rowIndex);
+        for (Assignment assignment : assignments) {
+            Object value = ConvertUtils.coerceValue(assignment.dataType, assignment.expression.evaluate(row));
+            block.set(rowIndex, assignment.index, value);
+            partition.getZoneMap().widen(assignment.index, row.get(assignment.index));
+        }
     }
 
-    // 更新项的私有辅助方法
-    private void updateItem(List<Object> row, SQLUpdateSetItem updateSetItem) {
+    // 编译更新项的私有辅助方法
+    private Assignment compileAssignment(SQLUpdateSetItem updateSetItem) {
         String columnName = updateSetItem.getColumn().toString();
-        Object value = ConvertUtils.convertValue(getColumnType(columnName), updateSetItem.getValue().toString());
-        row.set(getIndex(columnName), value);
+        int index = getIndex(columnName);
+        return new Assignment(index, getColumnType(index), expressionCompiler.compile(updateSetItem.getValue()));
     }
 
     /**
@@ -125,101 +1403,278 @@ public class Table {
      * @param where      WHERE条件
      * @param orderBy    ORDER BY条件
      * @param <T>        值类型
+     * @return 查询结果
      */
-    public <T> void selectRow(List<SQLSelectItem> selectList, SQLExpr where, SQLOrderBy orderBy) {
-        List<String> columnNames = selectList.stream().map(SQLSelectItem::toString).collect(Collectors.toList());
-        int[] projection = getProjection(columnNames);
-        Condition<Comparable<T>> condition = handleWhere(where);
-
-        // 过滤、投影、排序并打印结果
-        List<List<Object>> result = data.stream().filter(row -> condition.getPredicate().test((Comparable<T>) row.get(condition.getIndex())))
-                .map(row -> project(row, projection)).sorted((row1, row2) -> sortHelper(row1, row2, orderBy)).collect(Collectors.toList());
-        System.out.println(result);
-    }
-
-    // 排序辅助方法
-    private int sortHelper(List<Object> row1, List<Object> row2, SQLOrderBy orderBy) {
-        // 无排序条件，保持原有顺序
-        if (orderBy == null) {
-            return 0;
-        }
-        List<SQLSelectOrderByItem> sqlSelectOrderByItems = orderBy.getItems();
-
-        // 遍历排序条件并比较
-        for (SQLSelectOrderByItem sqlSelectOrderByItem : sqlSelectOrderByItems) {
-            String columnName = sqlSelectOrderByItem.getExpr().toString();
-            SQLOrderingSpecification type = sqlSelectOrderByItem.getType();
-            int index = getIndex(columnName);
-            int compare;
-            if (type.equals(SQLOrderingSpecification.ASC)) {
-                compare = ((Comparable<Object>) row1.get(index)).compareTo(row2.get(index));
+    public <T> QueryResult selectRow(List<SQLSelectItem> selectList, SQLExpr where, SQLOrderBy orderBy) {
+        CollectingResultSink sink = new CollectingResultSink();
+        selectRow(selectList, where, orderBy, sink);
+        return sink.getResult();
+    }
+
+    /**
+     * 查询符合条件的行，并将结果行依次写入接收者
+     * <p>
+     * 没有 ORDER BY 时结果行按数据块边扫描边写入，不会在内存中物化整个结果集。每个数据块在读锁内过滤和投影，
+     * 接收者在锁外被调用，因此查询期间其他语句对尚未扫描的数据块的修改可能可见
+     *
+     * @param selectList SELECT列表
+     * @param where      WHERE条件
+     * @param orderBy    ORDER BY条件
+     * @param sink       结果接收者
+     * @param <T>        值类型
+     * @return 结果行数
+     */
+    public <T> long selectRow(List<SQLSelectItem> selectList, SQLExpr where, SQLOrderBy orderBy, ResultSink sink) {
+        return selectRow(selectList, where, orderBy, null, sink);
+    }
+
+    /**
+     * 按抽样方式查询符合条件的行，并将结果行依次写入接收者
+     * <p>
+     * 查询项都是聚合函数时结果只有一行，见 {@link Aggregation}
+     *
+     * @param selectList SELECT列表
+     * @param where      WHERE条件
+     * @param orderBy    ORDER BY条件
+     * @param sampling   抽样方式，为 null 时不抽样
+     * @param sink       结果接收者
+     * @param <T>        值类型
+     * @return 结果行数
+     */
+    public <T> long selectRow(List<SQLSelectItem> selectList, SQLExpr where, SQLOrderBy orderBy, Sampling sampling, ResultSink sink) {
+        if (Aggregation.isAggregate(selectList)) {
+            return aggregate(Aggregation.compile(selectList, this::compileExpression, sampling != null), where, sampling, sink);
+        }
+        List<String> columnNames = new ArrayList<>(selectList.size());
+        List<Expression> projection = compileSelectList(selectList, columnNames);
+        Comparator<List<Object>> comparator = orderBy == null ? null : compileOrderBy(orderBy, projection, columnNames);
+        flushIngested();
+        if (materializedView != null) {
+            materializedView.getBase().flushIngested();
+        }
+        List<Condition<Comparable<T>>> conditions;
+        int shifts;
+        Sampling resolved;
+        List<Block> blocks = new ArrayList<>();
+        List<List<Object>> sorted = null;
+        lock.readLock().lock();
+        try {
+            conditions = conditionCompiler.compile(where);
+            shifts = codeShifts;
+            resolved = sampling == null ? null : sampling.resolve(size());
+            for (Partition partition : BlockScanner.prunePartitions(partitionScheme, conditions)) {
+                blocks.addAll(BlockScanner.pruneBlocks(partition, conditions, resolved));
+            }
+            // 排序需要所有匹配的行，在读锁内复制后在锁外排序（排序在投影之前，使ORDER BY可以引用未被查询的列）
+            if (comparator != null) {
+                sorted = new ArrayList<>();
+                for (Block block : blocks) {
+                    BlockScanner.checkInterrupted();
+                    for (int rowIndex = 0; rowIndex < block.size(); rowIndex++) {
+                        if ((resolved == null || resolved.sampleRow()) && BlockScanner.matches(block, rowIndex, conditions)) {
+                            sorted.add(new ArrayList<>(block.getRows().get(rowIndex)));
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // 结果行在表锁之外写入接收者，处理缓慢的接收者不会阻塞表上的写入
+        try {
+            long count = 0;
+            sink.begin(columnNames);
+            if (sorted != null) {
+                sorted.sort(comparator);
+                for (List<Object> row : sorted) {
+                    sink.accept(project(row, projection));
+                }
+                count = sorted.size();
             } else {
-                compare = ((Comparable<Object>) row2.get(index)).compareTo(row1.get(index));
+                for (Block block : blocks) {
+                    BlockScanner.checkInterrupted();
+                    // 每个数据块在读锁内过滤并投影，结果行不再引用块中的数据
+                    List<List<Object>> projected = new ArrayList<>();
+                    lock.readLock().lock();
+                    try {
+                        // 数据块可能已随分区被删除
+                        if (!blockOwners.containsKey(block)) {
+                            continue;
+                        }
+                        // 保序字典插入新值后已有编码整体后移，作用于编码的条件需要重新编译
+                        if (codeShifts != shifts) {
+                            conditions = conditionCompiler.compile(where);
+                            shifts = codeShifts;
+                        }
+                        for (int rowIndex = 0; rowIndex < block.size(); rowIndex++) {
+                            if ((resolved == null || resolved.sampleRow()) && BlockScanner.matches(block, rowIndex, conditions)) {
+                                projected.add(project(block.getRows().get(rowIndex), projection));
+                            }
+                        }
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                    for (List<Object> row : projected) {
+                        sink.accept(row);
+                    }
+                    count += projected.size();
+                }
             }
-            if (compare != 0) {
-                return compare;
+            sink.end();
+            QueryStatistics.current().addMatchedRows(count);
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 执行聚合查询，数据块在公共线程池中并行扫描，每个线程累加一组部分结果后合并；
+     * 扫描线程无法感知语句线程的中断，因此通过语句线程的中断状态判断是否取消
+     *
+     * @param aggregation 聚合查询
+     * @param where       WHERE条件
+     * @param sampling    抽样方式，为 null 时不抽样
+     * @param sink        结果接收者
+     * @param <T>         值类型
+     * @return 结果行数，总是 1
+     */
+    private <T> long aggregate(Aggregation aggregation, SQLExpr where, Sampling sampling, ResultSink sink) {
+        flushIngested();
+        if (materializedView != null) {
+            materializedView.getBase().flushIngested();
+        }
+        List<Object> result;
+        lock.readLock().lock();
+        try {
+            List<Condition<Comparable<T>>> conditions = conditionCompiler.compile(where);
+            Sampling resolved = sampling == null ? null : sampling.resolve(size());
+            List<Block> blocks = new ArrayList<>();
+            for (Partition partition : BlockScanner.prunePartitions(partitionScheme, conditions)) {
+                blocks.addAll(BlockScanner.pruneBlocks(partition, conditions, resolved));
             }
+            Thread caller = Thread.currentThread();
+            Aggregation.State state = blocks.parallelStream().collect(aggregation::newState, (partial, block) -> {
+                if (caller.isInterrupted()) {
+                    throw new CancellationException("statement cancelled");
+                }
+                List<List<Object>> rows = block.getRows();
+                for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+                    if ((resolved == null || resolved.sampleRow()) && BlockScanner.matches(block, rowIndex, conditions)) {
+                        partial.accept(rows.get(rowIndex));
+                    }
+                }
+                partial.endBlock();
+            }, Aggregation.State::merge);
+            BlockScanner.checkInterrupted();
+            result = aggregation.result(state, resolved);
+            QueryStatistics.current().addMatchedRows(state.getRows());
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            sink.begin(aggregation.getColumnNames());
+            sink.accept(result);
+            sink.end();
+            return 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return 0;
     }
 
-    // 投影辅助方法
-    private List<Object> project(List<Object> row, int[] projection) {
-        return Arrays.stream(projection).mapToObj(row::get).collect(Collectors.toList());
+    // 表的总行数
+    private long size() {
+        long size = 0;
+        for (Partition partition : partitionScheme.getPartitions()) {
+            size += partition.size();
+        }
+        return size;
+    }
+
+    // 编译查询项列表，* 展开为所有列，同时收集结果列名
+    private List<Expression> compileSelectList(List<SQLSelectItem> selectList, List<String> columnNames) {
+        List<Expression> projection = new ArrayList<>(selectList.size());
+        for (SQLSelectItem selectItem : selectList) {
+            if (selectItem.getExpr() instanceof SQLAllColumnExpr) {
+                for (int i = 0; i < columnDefinitions.size(); i++) {
+                    projection.add(expressionCompiler.compileColumn(i));
+                    columnNames.add(columnDefinitions.get(i).getColumnName());
+                }
+            } else {
+                projection.add(expressionCompiler.compile(selectItem.getExpr()));
+                columnNames.add(selectItem.getAlias() != null ? selectItem.getAlias() : selectItem.getExpr().toString());
+            }
+        }
+        return projection;
     }
 
     /**
-     * 处理WHERE条件
+     * 编译 ORDER BY 子句为作用于表中原始行的比较器（排序在投影之前，使 ORDER BY 可以引用未被查询的列）
+     * <p>
+     * 排序项先按查询项的别名、表达式文本或位置（ORDER BY 1）匹配查询项，使用查询项编译后的表达式；
+     * 匹配不到时再按表的列编译。未指定方向时按升序排列，空值在升序时排在最前
      *
-     * @param where WHERE条件
-     * @param <T>   值类型
-     * @return 条件对象
-     */
-    private <T> Condition<Comparable<T>> handleWhere(SQLExpr where) {
-        // 无WHERE条件
-        if (where == null) {
-            return new Condition<>(0, t -> true);
-        }
-        // 仅支持单个二元运算条件
-        if (!(where instanceof SQLBinaryOpExpr)
-                || !(((SQLBinaryOpExpr) where).getLeft() instanceof SQLIdentifierExpr)
-                || !(((SQLBinaryOpExpr) where).getRight() instanceof SQLLiteralExpr)) {
-            throw new RuntimeException("unsupported where condition: " + where);
-        }
-        SQLBinaryOpExpr binaryOpExpr = (SQLBinaryOpExpr) where;
-        SQLIdentifierExpr left = (SQLIdentifierExpr) binaryOpExpr.getLeft();
-        SQLLiteralExpr right = (SQLLiteralExpr) binaryOpExpr.getRight();
-        String columnName = left.getName();
-        SQLBinaryOperator operator = binaryOpExpr.getOperator();
-        Object value = ConvertUtils.convertValue(getColumnType(columnName), right.toString());
-        return new Condition<>(getIndex(columnName), getPredicate(operator, (T) value));
-    }
-
-    // 获取条件的谓词
-    private static <T> Predicate<Comparable<T>> getPredicate(SQLBinaryOperator operator, T value) {
-        if (operator.equals(SQLBinaryOperator.Equality)) {
-            return comparable -> comparable.compareTo(value) == 0;
-        } else if (operator.equals(SQLBinaryOperator.NotEqual)) {
-            return comparable -> comparable.compareTo(value) != 0;
-        } else if (operator.equals(SQLBinaryOperator.GreaterThan)) {
-            return comparable -> comparable.compareTo(value) > 0;
-        } else if (operator.equals(SQLBinaryOperator.GreaterThanOrEqual)) {
-            return comparable -> comparable.compareTo(value) >= 0;
-        } else if (operator.equals(SQLBinaryOperator.LessThan)) {
-            return comparable -> comparable.compareTo(value) < 0;
-        } else if (operator.equals(SQLBinaryOperator.LessThanOrEqual)) {
-            return comparable -> comparable.compareTo(value) <= 0;
-        } else {
-            throw new RuntimeException("unsupported operator: " + operator);
+     * @param orderBy     ORDER BY条件
+     * @param projection  编译后的查询项
+     * @param columnNames 查询项的结果列名
+     * @return 比较器
+     */
+    private Comparator<List<Object>> compileOrderBy(SQLOrderBy orderBy, List<Expression> projection, List<String> columnNames) {
+        Comparator<List<Object>> comparator = null;
+        for (SQLSelectOrderByItem item : orderBy.getItems()) {
+            SQLExpr expr = item.getExpr();
+            Expression key;
+            int position = columnNames.indexOf(expr instanceof SQLName ? ((SQLName) expr).getSimpleName() : expr.toString());
+            if (position >= 0) {
+                key = projection.get(position);
+            } else if (expr instanceof SQLIntegerExpr) {
+                int ordinal = ((SQLIntegerExpr) expr).getNumber().intValue();
+                if (ordinal < 1 || ordinal > projection.size()) {
+                    throw new RuntimeException("unknown column '" + ordinal + "' in order clause");
+                }
+                key = projection.get(ordinal - 1);
+            } else {
+                key = expressionCompiler.compile(expr);
+            }
+            Comparator<List<Object>> itemComparator = (row1, row2) -> compareValues(key.evaluate(row1), key.evaluate(row2));
+            if (item.getType() == SQLOrderingSpecification.DESC) {
+                itemComparator = itemComparator.reversed();
+            }
+            comparator = comparator == null ? itemComparator : comparator.thenComparing(itemComparator);
+        }
+        return comparator;
+    }
+
+    // 比较两个同类型的值，空值小于任何值
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object value1, Object value2) {
+        if (value1 == null || value2 == null) {
+            return value1 == null ? (value2 == null ? 0 : -1) : 1;
         }
+        return ((Comparable<Object>) value1).compareTo(value2);
+    }
+
+    // 投影辅助方法
+    private List<Object> project(List<Object> row, List<Expression> projection) {
+        List<Object> result = new ArrayList<>(projection.size());
+        for (Expression expression : projection) {
+            result.add(expression.evaluate(row));
+        }
+        return result;
     }
 
     // 获取列的数据类型
-    private String getColumnType(String columnName) {
+    String getColumnType(String columnName) {
         Integer index = nameToIndex.get(columnName);
         if (index == null) {
             throw new RuntimeException("no such column named " + columnName + " in table " + tableName);
         }
+        return getColumnType(index);
+    }
+
+    // 根据列索引获取列的数据类型
+    private String getColumnType(int index) {
         return columnDefinitions.get(index).getDataType().getName();
     }
 
@@ -249,4 +1704,18 @@ public class Table {
         return project;
     }
 
+    /**
+     * UPDATE 语句中编译后的赋值项
+     */
+    private static class Assignment {
+        private final int index;                // 被更新列的索引
+        private final String dataType;          // 被更新列的数据类型
+        private final Expression expression;    // 编译后的值表达式
+
+        private Assignment(int index, String dataType, Expression expression) {
+            this.index = index;
+            this.dataType = dataType;
+            this.expression = expression;
+        }
+    }
 }
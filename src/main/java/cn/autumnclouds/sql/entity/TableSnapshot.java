@@ -0,0 +1,415 @@
+package cn.autumnclouds.sql.entity;
+
+import cn.autumnclouds.sql.util.ValueCodec;
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.statement.SQLColumnDefinition;
+import com.alibaba.druid.sql.ast.statement.SQLCreateTableStatement;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 表的二进制列式快照。
+ * <p>
+ * 文件结构：文件头（魔数、版本）、按数据块和列依次排列的列块、文件尾描述信息、尾部定位信息。
+ * 文件尾描述信息包含表名、列定义、字典、分区、主键和唯一键、物化视图定义、摄入缓冲区配置、每个数据块的行数、列块位置、校验和以及区域映射，
+ * 因此文件是自描述的。恢复时通过内存映射读取文件，只解析文件尾描述信息，
+ * 数据块在第一次被访问时才解码并校验对应的列块。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+class TableSnapshot {
+    private static final int MAGIC = 0x53514C54;            // 魔数 "SQLT"
+    private static final int VERSION = 5;                   // 文件格式版本，版本 2 增加了分区信息，版本 3 增加了主键和唯一键，版本 4 增加了物化视图定义，版本 5 增加了摄入缓冲区配置
+    private static final int MIN_VERSION = 1;               // 可以读取的最低版本
+    private static final int HEADER_LENGTH = 8;             // 文件头长度
+    private static final int TRAILER_LENGTH = 16;           // 尾部定位信息长度：文件尾偏移、长度、魔数
+    private static final long MAX_SEGMENT_LENGTH = 1L << 30;    // 单次内存映射的最大长度
+
+    private TableSnapshot() {
+    }
+
+    /**
+     * 将表写入快照文件，调用方需持有表的读锁。
+     * <p>
+     * 快照先完整写入同一目录下的临时文件并刷到磁盘，再原子地替换目标文件：
+     * 写入中途失败时原有的快照保持不变；从目标文件恢复的表仍通过内存映射读取原文件的数据，
+     * 替换后原文件的内容在映射释放前依然有效，因此可以备份到恢复时使用的目录。
+     *
+     * @param table 表
+     * @param file  快照文件
+     * @throws IOException 写入失败时抛出异常
+     */
+    static void write(Table table, Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        // 临时文件不使用快照文件的后缀，恢复数据库时不会被当作快照读取
+        Path temp = Files.createTempFile(directory, "." + file.getFileName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                writeTable(table, out);
+                out.flush();
+                channel.force(true);
+            }
+            replace(temp, file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // 用已写完的临时文件原子地替换目标文件，文件系统不支持原子移动时退化为普通替换
+    static void replace(Path temp, Path file) throws IOException {
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // 按文件格式写入表的所有数据和文件尾描述信息
+    private static void writeTable(Table table, DataOutputStream out) throws IOException {
+        List<SQLColumnDefinition> columnDefinitions = table.getColumnDefinitions();
+        int columnCount = columnDefinitions.size();
+        Dictionary[] dictionaries = table.getDictionaries();
+        PartitionScheme partitionScheme = table.getPartitionScheme();
+        List<Block> blocks = new ArrayList<>();
+        for (Partition partition : partitionScheme.getPartitions()) {
+            blocks.addAll(partition.getBlocks());
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        long position = HEADER_LENGTH;
+
+        // 写入列块，同时生成文件尾描述信息
+        ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+        DataOutputStream footer = new DataOutputStream(footerBytes);
+        ValueCodec.writeString(footer, table.getTableName());
+        footer.writeInt(columnCount);
+        for (SQLColumnDefinition columnDefinition : columnDefinitions) {
+            ValueCodec.writeString(footer, columnDefinition.toString());
+        }
+        footer.writeInt(Table.BLOCK_SIZE);
+        for (Dictionary dictionary : dictionaries) {
+            if (dictionary == null) {
+                footer.writeByte(0);
+                continue;
+            }
+            footer.writeByte(dictionary.isOrdered() ? 2 : 1);
+            footer.writeInt(dictionary.size());
+            for (String value : dictionary.getValues()) {
+                ValueCodec.writeString(footer, value);
+            }
+        }
+        // 分区信息：分区类型、分区列、各分区的名称、上界和数据块数量，数据块按分区顺序排列
+        footer.writeByte(partitionScheme.getType().ordinal());
+        footer.writeInt(partitionScheme.getColumn());
+        footer.writeInt(partitionScheme.getPartitions().size());
+        for (Partition partition : partitionScheme.getPartitions()) {
+            ValueCodec.writeString(footer, partition.getName());
+            ValueCodec.writeValue(footer, partition.getUpperBound());
+            footer.writeInt(partition.getBlocks().size());
+        }
+        // 主键和唯一键：键名、是否为主键、列索引，键映射在恢复后第一次写入时重新建立
+        footer.writeInt(table.getUniqueKeys().size());
+        for (UniqueKey uniqueKey : table.getUniqueKeys()) {
+            ValueCodec.writeString(footer, uniqueKey.getName());
+            footer.writeByte(uniqueKey.isPrimary() ? 1 : 0);
+            footer.writeInt(uniqueKey.getColumns().length);
+            for (int column : uniqueKey.getColumns()) {
+                footer.writeInt(column);
+            }
+        }
+        // 物化视图定义，普通表为空字符串
+        ValueCodec.writeString(footer, table.getViewDefinition() == null ? "" : table.getViewDefinition());
+        // 摄入缓冲区的批量大小和发布间隔，未启用时批量大小为 0
+        IngestBuffer ingestBuffer = table.getIngestBuffer();
+        footer.writeInt(ingestBuffer == null ? 0 : ingestBuffer.getBatchSize());
+        footer.writeLong(ingestBuffer == null ? 0 : ingestBuffer.getIntervalMillis());
+        footer.writeInt(blocks.size());
+        for (Block block : blocks) {
+            List<List<Object>> rows = block.getRows();
+            footer.writeInt(rows.size());
+            for (int column = 0; column < columnCount; column++) {
+                byte[] chunk = encodeChunk(block, column, dictionaries[column] != null);
+                out.write(chunk);
+                footer.writeLong(position);
+                footer.writeInt(chunk.length);
+                footer.writeInt(checksum(chunk, 0, chunk.length));
+                position += chunk.length;
+            }
+            ZoneMap zoneMap = block.getZoneMap();
+            for (int column = 0; column < columnCount; column++) {
+                footer.writeBoolean(zoneMap.isUnbounded(column));
+                footer.writeInt(zoneMap.getNullCount(column));
+                ValueCodec.writeValue(footer, zoneMap.getMin(column));
+                ValueCodec.writeValue(footer, zoneMap.getMax(column));
+            }
+        }
+        footer.flush();
+        byte[] footerArray = footerBytes.toByteArray();
+        out.write(footerArray);
+        out.writeInt(checksum(footerArray, 0, footerArray.length));
+        out.writeLong(position);
+        out.writeInt(footerArray.length);
+        out.writeInt(MAGIC);
+    }
+
+    /**
+     * 从快照文件恢复表，数据块延迟解码。
+     *
+     * @param file 快照文件
+     * @return 表
+     * @throws IOException 读取失败或文件损坏时抛出异常
+     */
+    static Table read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_LENGTH + TRAILER_LENGTH) {
+                throw new IOException("snapshot " + file + " is truncated");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH);
+            int version = header.getInt() == MAGIC ? header.getInt() : -1;
+            if (version < MIN_VERSION || version > VERSION) {
+                throw new IOException("snapshot " + file + " has an unsupported format");
+            }
+            ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, fileSize - TRAILER_LENGTH, TRAILER_LENGTH);
+            long footerOffset = trailer.getLong();
+            int footerLength = trailer.getInt();
+            if (trailer.getInt() != MAGIC || footerOffset + footerLength + 4 + TRAILER_LENGTH != fileSize) {
+                throw new IOException("snapshot " + file + " is corrupted");
+            }
+            ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, footerOffset, footerLength + 4L);
+            byte[] footerArray = new byte[footerLength];
+            footer.get(footerArray);
+            if (checksum(footerArray, 0, footerLength) != footer.getInt()) {
+                throw new IOException("snapshot " + file + " has a corrupted footer");
+            }
+            return readTable(channel, ByteBuffer.wrap(footerArray), version, file);
+        }
+    }
+
+    // 解析文件尾描述信息并创建延迟加载的数据块
+    private static Table readTable(FileChannel channel, ByteBuffer footer, int version, Path file) throws IOException {
+        String tableName = ValueCodec.readString(footer);
+        int columnCount = footer.getInt();
+        List<String> definitions = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            definitions.add(ValueCodec.readString(footer));
+        }
+        SQLCreateTableStatement createTableStatement = (SQLCreateTableStatement) SQLUtils.parseSingleStatement(
+                "CREATE TABLE t (" + String.join(", ", definitions) + ")", DbType.mysql);
+        Table table = new Table(tableName, createTableStatement.getColumnDefinitions());
+        int blockCapacity = footer.getInt();
+        for (int column = 0; column < columnCount; column++) {
+            byte kind = footer.get();
+            if (kind == 0) {
+                table.dropDictionary(column);
+                continue;
+            }
+            int size = footer.getInt();
+            List<String> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(ValueCodec.readString(footer));
+            }
+            Dictionary dictionary = table.restoreDictionary(column, kind == 2);
+            values.forEach(dictionary::encode);
+        }
+
+        // 版本 1 的快照没有分区信息，所有数据块属于未分区表的唯一分区
+        List<Partition> blockPartitions = new ArrayList<>();
+        if (version >= 2) {
+            PartitionScheme.Type type = PartitionScheme.Type.values()[footer.get()];
+            PartitionScheme partitionScheme = new PartitionScheme(type, footer.getInt(), columnCount);
+            int partitionCount = footer.getInt();
+            for (int i = 0; i < partitionCount; i++) {
+                Partition partition = partitionScheme.addPartition(ValueCodec.readString(footer), ValueCodec.readValue(footer));
+                for (int blocks = footer.getInt(); blocks > 0; blocks--) {
+                    blockPartitions.add(partition);
+                }
+            }
+            table.restorePartitionScheme(partitionScheme);
+        }
+        // 版本 3 之前的快照只保留了列定义中的键约束，已在创建表时解析
+        if (version >= 3) {
+            List<UniqueKey> uniqueKeys = new ArrayList<>();
+            for (int keyCount = footer.getInt(); keyCount > 0; keyCount--) {
+                String name = ValueCodec.readString(footer);
+                boolean primary = footer.get() == 1;
+                int[] columns = new int[footer.getInt()];
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = footer.getInt();
+                }
+                uniqueKeys.add(new UniqueKey(name, primary, columns));
+            }
+            table.restoreUniqueKeys(uniqueKeys);
+        }
+        if (version >= 4) {
+            String viewDefinition = ValueCodec.readString(footer);
+            if (!viewDefinition.isEmpty()) {
+                table.restoreViewDefinition(viewDefinition);
+            }
+        }
+        if (version >= 5) {
+            int batchSize = footer.getInt();
+            long intervalMillis = footer.getLong();
+            if (batchSize > 0) {
+                table.restoreIngestBuffer(batchSize, intervalMillis);
+            }
+        }
+
+        int blockCount = footer.getInt();
+        Partition defaultPartition = table.getPartitionScheme().getPartitions().iterator().next();
+        while (blockPartitions.size() < blockCount) {
+            blockPartitions.add(defaultPartition);
+        }
+        List<BlockEntry> entries = new ArrayList<>(blockCount);
+        for (int b = 0; b < blockCount; b++) {
+            BlockEntry entry = new BlockEntry(footer.getInt(), columnCount);
+            for (int column = 0; column < columnCount; column++) {
+                entry.offsets[column] = footer.getLong();
+                entry.lengths[column] = footer.getInt();
+                entry.checksums[column] = footer.getInt();
+            }
+            entry.zoneMap = new ZoneMap(columnCount);
+            for (int column = 0; column < columnCount; column++) {
+                boolean unbounded = footer.get() != 0;
+                int nullCount = footer.getInt();
+                entry.zoneMap.restore(column, ValueCodec.readValue(footer), ValueCodec.readValue(footer), nullCount, unbounded);
+            }
+            entries.add(entry);
+        }
+
+        // 表之后可能停用某列的字典，数据块加载时使用恢复时的字典；
+        // 保序字典之后插入新值会使编码后移，快照中的编码按恢复时字典中的值解码
+        Dictionary[] dictionaries = table.getDictionaries().clone();
+        List<List<String>> dictionaryValues = new ArrayList<>(columnCount);
+        for (Dictionary dictionary : dictionaries) {
+            dictionaryValues.add(dictionary == null ? null : new ArrayList<>(dictionary.getValues()));
+        }
+        // 将相邻的数据块合并映射，单次映射不超过 MAX_SEGMENT_LENGTH
+        int b = 0;
+        while (b < entries.size()) {
+            long segmentStart = entries.get(b).start();
+            int end = b;
+            while (end < entries.size() && entries.get(end).end() - segmentStart <= MAX_SEGMENT_LENGTH) {
+                end++;
+            }
+            if (end == b) {
+                throw new IOException("block " + b + " of snapshot " + file + " is too large to map");
+            }
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, entries.get(end - 1).end() - segmentStart);
+            for (int i = b; i < end; i++) {
+                BlockEntry entry = entries.get(i);
+                String location = "block " + i + " of table " + tableName;
+                table.restoreBlock(blockPartitions.get(i), new Block(blockCapacity, dictionaries, entry.zoneMap, entry.rowCount,
+                        (rows, codes) -> decodeBlock(segment, segmentStart, entry, dictionaryValues, rows, codes, location)));
+            }
+            b = end;
+        }
+        return table;
+    }
+
+    // 编码一个列块，字典编码列保存编码，其余列保存带类型标记的值
+    private static byte[] encodeChunk(Block block, int column, boolean dictionaryEncoded) throws IOException {
+        List<List<Object>> rows = block.getRows();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows.size() * 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < rows.size(); i++) {
+            if (dictionaryEncoded) {
+                out.writeInt(block.getCode(i, column));
+            } else {
+                ValueCodec.writeValue(out, rows.get(i).get(column));
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    // 解码一个数据块的所有列块，并校验每个列块的校验和
+    private static void decodeBlock(ByteBuffer segment, long segmentStart, BlockEntry entry, List<List<String>> dictionaryValues,
+                                    List<List<Object>> rows, int[][] codes, String location) {
+        int columnCount = entry.offsets.length;
+        Object[][] columns = new Object[columnCount][];
+        for (int column = 0; column < columnCount; column++) {
+            ByteBuffer chunk = segment.duplicate();
+            // 通过 Buffer 调用，保持与 Java 8 运行时的二进制兼容
+            ((Buffer) chunk).position((int) (entry.offsets[column] - segmentStart));
+            ((Buffer) chunk).limit(chunk.position() + entry.lengths[column]);
+            if (checksum(chunk.slice()) != entry.checksums[column]) {
+                throw new UncheckedIOException(new IOException("checksum mismatch in column " + column + " of " + location));
+            }
+            Object[] values = new Object[entry.rowCount];
+            if (codes[column] != null) {
+                for (int i = 0; i < entry.rowCount; i++) {
+                    codes[column][i] = chunk.getInt();
+                }
+            } else {
+                for (int i = 0; i < entry.rowCount; i++) {
+                    values[i] = ValueCodec.readValue(chunk);
+                }
+            }
+            columns[column] = values;
+        }
+        for (int i = 0; i < entry.rowCount; i++) {
+            List<Object> row = new ArrayList<>(columnCount);
+            for (int column = 0; column < columnCount; column++) {
+                row.add(codes[column] == null ? columns[column][i]
+                        : codes[column][i] == Dictionary.NULL_CODE ? null : dictionaryValues.get(column).get(codes[column][i]));
+            }
+            rows.add(row);
+        }
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, offset, length);
+        return (int) crc32.getValue();
+    }
+
+    private static int checksum(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return checksum(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 文件尾中一个数据块的描述信息
+     */
+    private static class BlockEntry {
+        private final int rowCount;         // 行数
+        private final long[] offsets;       // 各列块在文件中的偏移
+        private final int[] lengths;        // 各列块的长度
+        private final int[] checksums;      // 各列块的校验和
+        private ZoneMap zoneMap;            // 区域映射
+
+        private BlockEntry(int rowCount, int columnCount) {
+            this.rowCount = rowCount;
+            this.offsets = new long[columnCount];
+            this.lengths = new int[columnCount];
+            this.checksums = new int[columnCount];
+        }
+
+        private long start() {
+            return offsets.length == 0 ? 0 : offsets[0];
+        }
+
+        private long end() {
+            return offsets.length == 0 ? 0 : offsets[offsets.length - 1] + lengths[lengths.length - 1];
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package cn.autumnclouds.sql.entity;
+
+import cn.autumnclouds.sql.util.ConvertUtils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * 表的主键或唯一键，维护键值到所在数据块的哈希映射。
+ * <p>
+ * 单列键的键值是列值本身，多列键的键值是各列值组成的列表；任一列为空值的行不参与唯一性检查。
+ * 定点数的相等与精度有关（1.0 与 1.00 不相等），因此键值中的定点数去掉末尾的零后再参与比较。
+ * 映射只记录数据块而不记录行的位置，因为删除会移动块内的行；找到数据块后在块内按键值查找行，
+ * 代价不超过一个数据块的行数，与表的大小无关。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class UniqueKey {
+    public static final String PRIMARY = "PRIMARY";     // 主键的名称
+
+    private final String name;              // 键名
+    private final boolean primary;          // 是否为主键
+    private final int[] columns;            // 键包含的列索引
+    private final Map<Object, Block> entries;   // 键值到所在数据块的映射
+
+    /**
+     * 创建一个新的 UniqueKey 对象。
+     *
+     * @param name    键名
+     * @param primary 是否为主键
+     * @param columns 键包含的列索引
+     */
+    UniqueKey(String name, boolean primary, int[] columns) {
+        this.name = name;
+        this.primary = primary;
+        this.columns = columns;
+        this.entries = new HashMap<>();
+    }
+
+    /**
+     * 获取一行数据的键值。
+     *
+     * @param row 行数据
+     * @return 键值，任一列为空值时返回 null
+     */
+    public Object keyOf(List<Object> row) {
+        if (columns.length == 1) {
+            return ConvertUtils.normalizeDecimal(row.get(columns[0]));
+        }
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = ConvertUtils.normalizeDecimal(row.get(columns[i]));
+            if (values[i] == null) {
+                return null;
+            }
+        }
+        return Arrays.asList(values);
+    }
+
+    /**
+     * 在数据块中查找键值等于给定键值的行。
+     *
+     * @param block 数据块
+     * @param key   键值
+     * @return 行在块中的位置，不存在时返回 -1
+     */
+    public int find(Block block, Object key) {
+        List<List<Object>> rows = block.getRows();
+        for (int i = 0; i < rows.size(); i++) {
+            if (key.equals(keyOf(rows.get(i)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 判断更新是否修改了键包含的列。
+     *
+     * @param column 被更新的列索引
+     * @return 是否属于该键
+     */
+    public boolean contains(int column) {
+        for (int c : columns) {
+            if (c == column) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 生成与 MySQL 一致的键值冲突错误信息。
+     *
+     * @param key 冲突的键值
+     * @return 异常
+     */
+    public RuntimeException duplicate(Object key) {
+        StringJoiner entry = new StringJoiner("-");
+        for (Object value : key instanceof List ? (List<?>) key : Arrays.asList(key)) {
+            entry.add(value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : String.valueOf(value));
+        }
+        return new RuntimeException("Duplicate entry '" + entry + "' for key '" + name + "'");
+    }
+
+    Map<Object, Block> getEntries() {
+        return entries;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isPrimary() {
+        return primary;
+    }
+
+    public int[] getColumns() {
+        return columns;
+    }
+}
@@ -0,0 +1,158 @@
+package cn.autumnclouds.sql.entity;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 数据块的区域映射（Zone Map），记录每一列的最小值、最大值和空值数量。
+ * <p>
+ * 区域映射只会被放宽而不会被收紧：插入和更新时扩大范围，删除时保持不变，
+ * 因此它始终是块内实际数据的上界，可用于安全地跳过不可能满足条件的数据块。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class ZoneMap {
+    private final Comparable<?>[] min;          // 每列的最小值
+    private final Comparable<?>[] max;          // 每列的最大值
+    private final int[] nullCount;              // 每列的空值数量（上界）
+    private final boolean[] unbounded;          // 列中存在无法比较的值时不再维护范围
+
+    /**
+     * 创建一个新的 ZoneMap 对象。
+     *
+     * @param columnCount 列数
+     */
+    public ZoneMap(int columnCount) {
+        this.min = new Comparable<?>[columnCount];
+        this.max = new Comparable<?>[columnCount];
+        this.nullCount = new int[columnCount];
+        this.unbounded = new boolean[columnCount];
+    }
+
+    /**
+     * 使用一行数据放宽区域映射。
+     *
+     * @param row 行数据
+     */
+    public void add(List<Object> row) {
+        for (int i = 0; i < min.length; i++) {
+            widen(i, row.get(i));
+        }
+    }
+
+    /**
+     * 使用一个值放宽指定列的范围。
+     *
+     * @param index 列索引
+     * @param value 值
+     */
+    @SuppressWarnings("unchecked")
+    public void widen(int index, Object value) {
+        if (value == null) {
+            nullCount[index]++;
+            return;
+        }
+        if (unbounded[index]) {
+            return;
+        }
+        if (!(value instanceof Comparable)) {
+            unbounded[index] = true;
+            return;
+        }
+        Comparable<Object> comparable = (Comparable<Object>) value;
+        try {
+            if (min[index] == null || comparable.compareTo(min[index]) < 0) {
+                min[index] = comparable;
+            }
+            if (max[index] == null || comparable.compareTo(max[index]) > 0) {
+                max[index] = comparable;
+            }
+        } catch (ClassCastException e) {
+            unbounded[index] = true;
+        }
+    }
+
+    /**
+     * 将另一个区域映射合并到当前区域映射，用于由数据块的区域映射汇总出分区的区域映射。
+     *
+     * @param other 另一个区域映射
+     */
+    public void merge(ZoneMap other) {
+        for (int i = 0; i < min.length; i++) {
+            nullCount[i] += other.nullCount[i];
+            if (other.unbounded[i]) {
+                unbounded[i] = true;
+            } else if (other.min[i] != null) {
+                widen(i, other.min[i]);
+                widen(i, other.max[i]);
+            }
+        }
+    }
+
+    /**
+     * 判断块中是否可能存在满足条件的行。
+     *
+     * @param condition 条件
+     * @param <T>       值类型
+     * @return 可能存在满足条件的行时返回 true
+     */
+    @SuppressWarnings("unchecked")
+    public <T> boolean mayMatch(Condition<Comparable<T>> condition) {
+        int index = condition.getIndex();
+        if (unbounded[index]) {
+            return true;
+        }
+        // 列中只有空值（或块为空），比较条件不会命中空值
+        if (min[index] == null) {
+            return false;
+        }
+        try {
+            return condition.getRangePredicate().test((Comparable<T>) (Object) min[index], (Comparable<T>) (Object) max[index]);
+        } catch (ClassCastException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 重置区域映射，在块被清空时调用。
+     */
+    public void reset() {
+        Arrays.fill(min, null);
+        Arrays.fill(max, null);
+        Arrays.fill(nullCount, 0);
+        Arrays.fill(unbounded, false);
+    }
+
+    /**
+     * 直接设置指定列的统计信息，用于从快照恢复。
+     *
+     * @param index     列索引
+     * @param min       最小值
+     * @param max       最大值
+     * @param nullCount 空值数量
+     * @param unbounded 是否不再维护范围
+     */
+    void restore(int index, Object min, Object max, int nullCount, boolean unbounded) {
+        this.min[index] = (Comparable<?>) min;
+        this.max[index] = (Comparable<?>) max;
+        this.nullCount[index] = nullCount;
+        this.unbounded[index] = unbounded;
+    }
+
+    public boolean isUnbounded(int index) {
+        return unbounded[index];
+    }
+
+    public Object getMin(int index) {
+        return min[index];
+    }
+
+    public Object getMax(int index) {
+        return max[index];
+    }
+
+    public int getNullCount(int index) {
+        return nullCount[index];
+    }
+}
@@ -0,0 +1,21 @@
+package cn.autumnclouds.sql.expression;
+
+import java.util.List;
+
+/**
+ * 编译后的表达式求值器，针对一行数据计算表达式的值。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+@FunctionalInterface
+public interface Evaluator {
+
+    /**
+     * 针对一行数据计算表达式的值。
+     *
+     * @param row 行数据
+     * @return 表达式的值，可能为 null
+     */
+    Object evaluate(List<Object> row);
+}
@@ -0,0 +1,61 @@
+package cn.autumnclouds.sql.expression;
+
+import java.util.List;
+
+/**
+ * 编译后的表达式，包含结果类型和特化的求值器。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class Expression {
+    private final ValueType type;           // 结果类型
+    private final Evaluator evaluator;      // 求值器
+    private final boolean constant;         // 是否为常量表达式
+
+    /**
+     * 创建一个新的 Expression 对象。
+     *
+     * @param type      结果类型
+     * @param evaluator 求值器
+     * @param constant  是否为常量表达式
+     */
+    public Expression(ValueType type, Evaluator evaluator, boolean constant) {
+        this.type = type;
+        this.evaluator = evaluator;
+        this.constant = constant;
+    }
+
+    /**
+     * 创建一个常量表达式。
+     *
+     * @param type  结果类型
+     * @param value 常量值
+     * @return 常量表达式
+     */
+    public static Expression constant(ValueType type, Object value) {
+        return new Expression(type, row -> value, true);
+    }
+
+    /**
+     * 针对一行数据计算表达式的值。
+     *
+     * @param row 行数据
+     * @return 表达式的值
+     */
+    public Object evaluate(List<Object> row) {
+        return evaluator.evaluate(row);
+    }
+
+    public ValueType getType() {
+        return type;
+    }
+
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    public boolean isConstant() {
+        return constant;
+    }
+}
@@ -0,0 +1,486 @@
+package cn.autumnclouds.sql.expression;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BinaryOperator;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongBinaryOperator;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * 表达式编译器，将 Druid 的表达式语法树编译为按类型特化的求值器。
+ * <p>
+ * 每条语句只编译一次，求值时不再解析语法树，也不再经过字符串转换。
+ * 支持算术运算（+ - * / %）、取负、字面量、列引用以及 ABS、LOWER、UPPER、CONCAT、COALESCE、NOW 等函数。
+ * 用于 ON DUPLICATE KEY UPDATE 时还支持 VALUES(列)，引用拼接在已有行之后的待插入行。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class ExpressionCompiler {
+    private final ToIntFunction<String> indexResolver;     // 列名到列索引的解析
+    private final IntFunction<String> typeResolver;         // 列索引到列数据类型的解析
+    private final int valuesOffset;                         // VALUES(列) 读取的待插入行在求值行中的起始位置，-1 表示不支持
+
+    /**
+     * 创建一个新的 ExpressionCompiler 对象。
+     *
+     * @param indexResolver 列名到列索引的解析函数，列不存在时应抛出异常
+     * @param typeResolver  列索引到列数据类型名称的解析函数
+     */
+    public ExpressionCompiler(ToIntFunction<String> indexResolver, IntFunction<String> typeResolver) {
+        this(indexResolver, typeResolver, -1);
+    }
+
+    /**
+     * 创建一个支持 VALUES(列) 的 ExpressionCompiler 对象，求值行由已有行和待插入行依次拼接而成。
+     *
+     * @param indexResolver 列名到列索引的解析函数，列不存在时应抛出异常
+     * @param typeResolver  列索引到列数据类型名称的解析函数
+     * @param valuesOffset  待插入行在求值行中的起始位置，即已有行的列数
+     */
+    public ExpressionCompiler(ToIntFunction<String> indexResolver, IntFunction<String> typeResolver, int valuesOffset) {
+        this.indexResolver = indexResolver;
+        this.typeResolver = typeResolver;
+        this.valuesOffset = valuesOffset;
+    }
+
+    /**
+     * 编译表达式。
+     *
+     * @param expr 表达式语法树
+     * @return 编译后的表达式
+     */
+    public Expression compile(SQLExpr expr) {
+        if (expr instanceof SQLIdentifierExpr) {
+            return compileColumn(indexResolver.applyAsInt(((SQLIdentifierExpr) expr).getName()));
+        } else if (expr instanceof SQLPropertyExpr) {
+            return compileColumn(indexResolver.applyAsInt(((SQLPropertyExpr) expr).getName()));
+        } else if (expr instanceof SQLIntegerExpr) {
+            return Expression.constant(ValueType.LONG, ((SQLIntegerExpr) expr).getNumber().longValue());
+        } else if (expr instanceof SQLNumberExpr) {
+            return Expression.constant(ValueType.DECIMAL, new BigDecimal(expr.toString()));
+        } else if (expr instanceof SQLCharExpr) {
+            return Expression.constant(ValueType.STRING, ((SQLCharExpr) expr).getText());
+        } else if (expr instanceof SQLBooleanExpr) {
+            return Expression.constant(ValueType.BOOLEAN, ((SQLBooleanExpr) expr).getBooleanValue());
+        } else if (expr instanceof SQLNullExpr) {
+            return Expression.constant(ValueType.NULL, null);
+        } else if (expr instanceof SQLUnaryExpr) {
+            return compileUnary((SQLUnaryExpr) expr);
+        } else if (expr instanceof SQLBinaryOpExpr) {
+            SQLBinaryOpExpr binaryOpExpr = (SQLBinaryOpExpr) expr;
+            return compileArithmetic(binaryOpExpr.getOperator(), compile(binaryOpExpr.getLeft()), compile(binaryOpExpr.getRight()));
+        } else if (expr instanceof SQLMethodInvokeExpr) {
+            return compileFunction((SQLMethodInvokeExpr) expr);
+        }
+        throw new RuntimeException("unsupported expression: " + expr);
+    }
+
+    /**
+     * 编译列引用。
+     *
+     * @param index 列索引
+     * @return 读取该列的表达式
+     */
+    public Expression compileColumn(int index) {
+        return new Expression(ValueType.ofDataType(typeResolver.apply(index)), row -> row.get(index), false);
+    }
+
+    // 编译一元运算
+    private Expression compileUnary(SQLUnaryExpr unaryExpr) {
+        Expression operand = compile(unaryExpr.getExpr());
+        switch (unaryExpr.getOperator()) {
+            case Plus:
+                return operand;
+            case Negative:
+                return compileArithmetic(SQLBinaryOperator.Subtract, Expression.constant(ValueType.LONG, 0L), operand);
+            default:
+                throw new RuntimeException("unsupported operator: " + unaryExpr.getOperator());
+        }
+    }
+
+    // 编译二元算术运算，根据操作数类型选择特化的求值器
+    private Expression compileArithmetic(SQLBinaryOperator operator, Expression left, Expression right) {
+        if (left.getType() == ValueType.NULL || right.getType() == ValueType.NULL) {
+            return Expression.constant(ValueType.NULL, null);
+        }
+        ValueType type = arithmeticType(operator, left.getType(), right.getType());
+        Evaluator evaluator;
+        if (type == ValueType.LONG) {
+            evaluator = longArithmetic(operator, left, right);
+        } else if (type == ValueType.DOUBLE) {
+            evaluator = doubleArithmetic(operator, left, right);
+        } else {
+            evaluator = decimalArithmetic(operator, left, right);
+        }
+        return fold(new Expression(type, evaluator, left.isConstant() && right.isConstant()));
+    }
+
+    // 推导算术运算的结果类型
+    private static ValueType arithmeticType(SQLBinaryOperator operator, ValueType left, ValueType right) {
+        if (left == ValueType.DECIMAL || right == ValueType.DECIMAL) {
+            return ValueType.DECIMAL;
+        }
+        if (left == ValueType.LONG && right == ValueType.LONG && operator != SQLBinaryOperator.Divide) {
+            return ValueType.LONG;
+        }
+        return ValueType.DOUBLE;
+    }
+
+    private static Evaluator longArithmetic(SQLBinaryOperator operator, Expression left, Expression right) {
+        LongBinaryOperator op;
+        switch (operator) {
+            case Add:
+                op = Math::addExact;
+                break;
+            case Subtract:
+                op = Math::subtractExact;
+                break;
+            case Multiply:
+                op = Math::multiplyExact;
+                break;
+            case Modulus:
+            case Mod:
+                // 除数为 0 时结果为 NULL
+                Evaluator l = left.getEvaluator();
+                Evaluator r = right.getEvaluator();
+                return row -> {
+                    Object lv = l.evaluate(row);
+                    Object rv = r.evaluate(row);
+                    if (lv == null || rv == null || ((Number) rv).longValue() == 0) {
+                        return null;
+                    }
+                    return ((Number) lv).longValue() % ((Number) rv).longValue();
+                };
+            default:
+                throw new RuntimeException("unsupported operator: " + operator);
+        }
+        Evaluator l = left.getEvaluator();
+        Evaluator r = right.getEvaluator();
+        return row -> {
+            Object lv = l.evaluate(row);
+            Object rv = r.evaluate(row);
+            if (lv == null || rv == null) {
+                return null;
+            }
+            return op.applyAsLong(((Number) lv).longValue(), ((Number) rv).longValue());
+        };
+    }
+
+    private static Evaluator doubleArithmetic(SQLBinaryOperator operator, Expression left, Expression right) {
+        DoubleBinaryOperator op;
+        switch (operator) {
+            case Add:
+                op = Double::sum;
+                break;
+            case Subtract:
+                op = (a, b) -> a - b;
+                break;
+            case Multiply:
+                op = (a, b) -> a * b;
+                break;
+            case Divide:
+                op = (a, b) -> a / b;
+                break;
+            case Modulus:
+            case Mod:
+                op = (a, b) -> a % b;
+                break;
+            default:
+                throw new RuntimeException("unsupported operator: " + operator);
+        }
+        boolean checkZero = operator != SQLBinaryOperator.Add && operator != SQLBinaryOperator.Subtract
+                && operator != SQLBinaryOperator.Multiply;
+        Evaluator l = left.getEvaluator();
+        Evaluator r = right.getEvaluator();
+        ToDoubleFunction<Object> lc = doubleConverter(left.getType());
+        ToDoubleFunction<Object> rc = doubleConverter(right.getType());
+        return row -> {
+            Object lv = l.evaluate(row);
+            Object rv = r.evaluate(row);
+            if (lv == null || rv == null) {
+                return null;
+            }
+            double divisor = rc.applyAsDouble(rv);
+            // 除数为 0 时结果为 NULL
+            if (checkZero && divisor == 0) {
+                return null;
+            }
+            return op.applyAsDouble(lc.applyAsDouble(lv), divisor);
+        };
+    }
+
+    private static Evaluator decimalArithmetic(SQLBinaryOperator operator, Expression left, Expression right) {
+        BinaryOperator<BigDecimal> op;
+        switch (operator) {
+            case Add:
+                op = BigDecimal::add;
+                break;
+            case Subtract:
+                op = BigDecimal::subtract;
+                break;
+            case Multiply:
+                op = BigDecimal::multiply;
+                break;
+            case Divide:
+                op = (a, b) -> a.divide(b, Math.max(a.scale(), 0) + 4, RoundingMode.HALF_UP);
+                break;
+            case Modulus:
+            case Mod:
+                op = BigDecimal::remainder;
+                break;
+            default:
+                throw new RuntimeException("unsupported operator: " + operator);
+        }
+        boolean checkZero = operator == SQLBinaryOperator.Divide || operator == SQLBinaryOperator.Modulus
+                || operator == SQLBinaryOperator.Mod;
+        Evaluator l = left.getEvaluator();
+        Evaluator r = right.getEvaluator();
+        Function<Object, BigDecimal> lc = decimalConverter(left.getType());
+        Function<Object, BigDecimal> rc = decimalConverter(right.getType());
+        return row -> {
+            Object lv = l.evaluate(row);
+            Object rv = r.evaluate(row);
+            if (lv == null || rv == null) {
+                return null;
+            }
+            BigDecimal divisor = rc.apply(rv);
+            // 除数为 0 时结果为 NULL
+            if (checkZero && divisor.signum() == 0) {
+                return null;
+            }
+            return op.apply(lc.apply(lv), divisor);
+        };
+    }
+
+    // 编译函数调用
+    private Expression compileFunction(SQLMethodInvokeExpr methodInvokeExpr) {
+        String name = methodInvokeExpr.getMethodName().toUpperCase();
+        if ("VALUES".equals(name) && valuesOffset >= 0) {
+            return compileValues(methodInvokeExpr.getArguments());
+        }
+        List<Expression> arguments = new ArrayList<>(methodInvokeExpr.getArguments().size());
+        for (SQLExpr argument : methodInvokeExpr.getArguments()) {
+            arguments.add(compile(argument));
+        }
+        switch (name) {
+            case "ABS":
+                checkArgumentCount(name, arguments, 1);
+                return compileAbs(arguments.get(0));
+            case "LOWER":
+            case "LCASE":
+                checkArgumentCount(name, arguments, 1);
+                return compileStringFunction(arguments.get(0), String::toLowerCase);
+            case "UPPER":
+            case "UCASE":
+                checkArgumentCount(name, arguments, 1);
+                return compileStringFunction(arguments.get(0), String::toUpperCase);
+            case "CONCAT":
+                if (arguments.isEmpty()) {
+                    throw new RuntimeException("function " + name + " expects at least 1 argument");
+                }
+                return compileConcat(arguments);
+            case "COALESCE":
+            case "IFNULL":
+                if (arguments.isEmpty()) {
+                    throw new RuntimeException("function " + name + " expects at least 1 argument");
+                }
+                return compileCoalesce(arguments);
+            case "NOW":
+            case "CURRENT_TIMESTAMP":
+                checkArgumentCount(name, arguments, 0);
+                // 与 MySQL 一致，同一条语句中 NOW() 的值保持不变
+                return Expression.constant(ValueType.TIMESTAMP, new Timestamp(System.currentTimeMillis()));
+            default:
+                throw new RuntimeException("unsupported function: " + methodInvokeExpr.getMethodName());
+        }
+    }
+
+    // 编译 VALUES(列)，读取待插入行中对应列的值
+    private Expression compileValues(List<SQLExpr> arguments) {
+        if (arguments.size() != 1 || !(arguments.get(0) instanceof SQLIdentifierExpr)) {
+            throw new RuntimeException("function VALUES expects a column name");
+        }
+        int index = indexResolver.applyAsInt(((SQLIdentifierExpr) arguments.get(0)).getName());
+        int position = valuesOffset + index;
+        return new Expression(ValueType.ofDataType(typeResolver.apply(index)), row -> row.get(position), false);
+    }
+
+    private static void checkArgumentCount(String name, List<Expression> arguments, int count) {
+        if (arguments.size() != count) {
+            throw new RuntimeException("function " + name + " expects " + count + " argument(s) but got " + arguments.size());
+        }
+    }
+
+    private Expression compileAbs(Expression argument) {
+        Evaluator evaluator = argument.getEvaluator();
+        ValueType type = argument.getType();
+        if (type == ValueType.NULL) {
+            return argument;
+        }
+        if (type == ValueType.LONG) {
+            return fold(new Expression(type, row -> {
+                Object value = evaluator.evaluate(row);
+                return value == null ? null : Math.abs(((Number) value).longValue());
+            }, argument.isConstant()));
+        } else if (type == ValueType.DECIMAL) {
+            Function<Object, BigDecimal> converter = decimalConverter(type);
+            return fold(new Expression(type, row -> {
+                Object value = evaluator.evaluate(row);
+                return value == null ? null : converter.apply(value).abs();
+            }, argument.isConstant()));
+        }
+        ToDoubleFunction<Object> converter = doubleConverter(type);
+        return fold(new Expression(ValueType.DOUBLE, row -> {
+            Object value = evaluator.evaluate(row);
+            return value == null ? null : Math.abs(converter.applyAsDouble(value));
+        }, argument.isConstant()));
+    }
+
+    private Expression compileStringFunction(Expression argument, Function<String, String> function) {
+        Evaluator evaluator = argument.getEvaluator();
+        return fold(new Expression(ValueType.STRING, row -> {
+            Object value = evaluator.evaluate(row);
+            return value == null ? null : function.apply(value.toString());
+        }, argument.isConstant()));
+    }
+
+    private Expression compileConcat(List<Expression> arguments) {
+        Evaluator[] evaluators = arguments.stream().map(Expression::getEvaluator).toArray(Evaluator[]::new);
+        boolean constant = arguments.stream().allMatch(Expression::isConstant);
+        return fold(new Expression(ValueType.STRING, row -> {
+            StringBuilder builder = new StringBuilder();
+            for (Evaluator evaluator : evaluators) {
+                Object value = evaluator.evaluate(row);
+                // 任一参数为 NULL 时结果为 NULL
+                if (value == null) {
+                    return null;
+                }
+                builder.append(value);
+            }
+            return builder.toString();
+        }, constant));
+    }
+
+    private Expression compileCoalesce(List<Expression> arguments) {
+        ValueType type = commonType(arguments);
+        Evaluator[] evaluators = new Evaluator[arguments.size()];
+        for (int i = 0; i < evaluators.length; i++) {
+            evaluators[i] = castTo(arguments.get(i), type);
+        }
+        boolean constant = arguments.stream().allMatch(Expression::isConstant);
+        return fold(new Expression(type, row -> {
+            for (Evaluator evaluator : evaluators) {
+                Object value = evaluator.evaluate(row);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return null;
+        }, constant));
+    }
+
+    // 推导多个表达式的公共类型
+    private static ValueType commonType(List<Expression> expressions) {
+        ValueType common = ValueType.NULL;
+        for (Expression expression : expressions) {
+            ValueType type = expression.getType();
+            if (type == ValueType.NULL || type == common) {
+                continue;
+            }
+            if (common == ValueType.NULL) {
+                common = type;
+            } else if (common.isNumeric() && type.isNumeric()) {
+                common = common == ValueType.DECIMAL || type == ValueType.DECIMAL ? ValueType.DECIMAL : ValueType.DOUBLE;
+            } else {
+                common = ValueType.STRING;
+            }
+        }
+        return common;
+    }
+
+    // 将表达式的值转换为指定类型
+    private static Evaluator castTo(Expression expression, ValueType type) {
+        Evaluator evaluator = expression.getEvaluator();
+        if (expression.getType() == type || expression.getType() == ValueType.NULL || type == ValueType.NULL) {
+            return evaluator;
+        }
+        if (type == ValueType.DOUBLE) {
+            ToDoubleFunction<Object> converter = doubleConverter(expression.getType());
+            return row -> {
+                Object value = evaluator.evaluate(row);
+                return value == null ? null : converter.applyAsDouble(value);
+            };
+        } else if (type == ValueType.DECIMAL) {
+            Function<Object, BigDecimal> converter = decimalConverter(expression.getType());
+            return row -> {
+                Object value = evaluator.evaluate(row);
+                return value == null ? null : converter.apply(value);
+            };
+        } else if (type == ValueType.LONG) {
+            ToLongFunction<Object> converter = value -> ((Number) value).longValue();
+            return row -> {
+                Object value = evaluator.evaluate(row);
+                return value == null ? null : converter.applyAsLong(value);
+            };
+        }
+        return row -> {
+            Object value = evaluator.evaluate(row);
+            return value == null ? null : value.toString();
+        };
+    }
+
+    // 获取转换为 double 的函数，数值类型直接取值，其余类型按字符串解析
+    private static ToDoubleFunction<Object> doubleConverter(ValueType type) {
+        if (type.isNumeric()) {
+            return value -> ((Number) value).doubleValue();
+        }
+        return value -> {
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+            try {
+                return Double.parseDouble(value.toString().trim());
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("'" + value + "' is not a number", e);
+            }
+        };
+    }
+
+    // 获取转换为 BigDecimal 的函数
+    private static Function<Object, BigDecimal> decimalConverter(ValueType type) {
+        if (type == ValueType.DECIMAL) {
+            return value -> (BigDecimal) value;
+        } else if (type == ValueType.LONG) {
+            return value -> BigDecimal.valueOf(((Number) value).longValue());
+        } else if (type == ValueType.DOUBLE) {
+            return value -> BigDecimal.valueOf(((Number) value).doubleValue());
+        }
+        return value -> {
+            try {
+                return new BigDecimal(value.toString().trim());
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("'" + value + "' is not a number", e);
+            }
+        };
+    }
+
+    // 常量折叠：常量表达式在编译期直接求值
+    private static Expression fold(Expression expression) {
+        if (!expression.isConstant()) {
+            return expression;
+        }
+        return Expression.constant(expression.getType(), expression.evaluate(null));
+    }
+}
@@ -0,0 +1,61 @@
+package cn.autumnclouds.sql.expression;
+
+/**
+ * 表达式求值结果的类型，编译期据此选择特化的求值器。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public enum ValueType {
+    LONG,       // 整数类（tinyint/smallint/int/bigint/timestamp）
+    DOUBLE,     // 浮点类（float/double）
+    DECIMAL,    // 定点数（decimal）
+    STRING,     // 字符串类
+    BOOLEAN,    // 布尔值
+    DATE,       // 日期
+    TIMESTAMP,  // 时间戳对象（如 NOW() 的结果）
+    NULL;       // NULL 字面量
+
+    /**
+     * 根据列的数据类型名称获取对应的值类型。
+     *
+     * @param dataType 列的数据类型名称
+     * @return 值类型
+     */
+    public static ValueType ofDataType(String dataType) {
+        if (dataType == null) {
+            return STRING;
+        }
+        switch (dataType.toLowerCase()) {
+            case "tinyint":
+            case "short":
+            case "smallint":
+            case "int":
+            case "integer":
+            case "long":
+            case "bigint":
+            case "timestamp":
+                return LONG;
+            case "float":
+            case "double":
+                return DOUBLE;
+            case "decimal":
+                return DECIMAL;
+            case "boolean":
+                return BOOLEAN;
+            case "date":
+                return DATE;
+            default:
+                return STRING;
+        }
+    }
+
+    /**
+     * 判断是否为数值类型。
+     *
+     * @return 数值类型时返回 true
+     */
+    public boolean isNumeric() {
+        return this == LONG || this == DOUBLE || this == DECIMAL;
+    }
+}
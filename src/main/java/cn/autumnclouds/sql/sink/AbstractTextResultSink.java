@@ -0,0 +1,29 @@
+package cn.autumnclouds.sql.sink;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 文本编码器的基类，通过带缓冲的 UTF-8 Writer 写入输出流，结果集结束时刷新。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public abstract class AbstractTextResultSink implements ResultSink {
+    protected static final int BUFFER_SIZE = 1 << 16;  // 缓冲区大小
+
+    protected final Writer writer;  // 带缓冲的输出
+
+    protected AbstractTextResultSink(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    public void end() throws IOException {
+        writer.flush();
+    }
+}
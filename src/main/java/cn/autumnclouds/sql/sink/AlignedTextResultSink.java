@@ -0,0 +1,108 @@
+package cn.autumnclouds.sql.sink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 对齐文本编码器，以表格形式输出结果，适合在终端中阅读。
+ * <p>
+ * 列宽由列名和前 {@value #WIDTH_SAMPLE_ROWS} 行决定，之后的行不再缓存而是直接输出，
+ * 超出列宽的值会撑开所在的单元格，因此大结果集不会被全部缓存在内存中。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class AlignedTextResultSink extends AbstractTextResultSink {
+    public static final int WIDTH_SAMPLE_ROWS = 1000;   // 用于计算列宽的行数
+
+    private List<String> columnNames;       // 结果列名
+    private List<String[]> sample;          // 列宽确定之前缓存的行
+    private int[] widths;                   // 列宽，确定之前为 null
+    private long rowCount;                  // 已接收的行数
+
+    public AlignedTextResultSink(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void begin(List<String> columnNames) {
+        this.columnNames = columnNames;
+        this.sample = new ArrayList<>();
+        this.widths = null;
+        this.rowCount = 0;
+    }
+
+    @Override
+    public void accept(List<Object> row) throws IOException {
+        String[] cells = new String[row.size()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = String.valueOf(row.get(i));
+        }
+        rowCount++;
+        if (widths != null) {
+            writeRow(cells);
+            return;
+        }
+        sample.add(cells);
+        if (sample.size() >= WIDTH_SAMPLE_ROWS) {
+            flushSample();
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        if (widths == null) {
+            flushSample();
+        }
+        writeSeparator();
+        writer.write(rowCount + (rowCount == 1 ? " row" : " rows") + " in set\n");
+        super.end();
+    }
+
+    // 根据缓存的行确定列宽，输出表头和缓存的行
+    private void flushSample() throws IOException {
+        widths = new int[columnNames.size()];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = columnNames.get(i).length();
+        }
+        for (String[] cells : sample) {
+            for (int i = 0; i < widths.length; i++) {
+                widths[i] = Math.max(widths[i], cells[i].length());
+            }
+        }
+        writeSeparator();
+        writeRow(columnNames.toArray(new String[0]));
+        writeSeparator();
+        for (String[] cells : sample) {
+            writeRow(cells);
+        }
+        sample = null;
+    }
+
+    private void writeSeparator() throws IOException {
+        writer.write('+');
+        for (int width : widths) {
+            char[] line = new char[width + 2];
+            Arrays.fill(line, '-');
+            writer.write(line);
+            writer.write('+');
+        }
+        writer.write('\n');
+    }
+
+    private void writeRow(String[] cells) throws IOException {
+        writer.write('|');
+        for (int i = 0; i < cells.length; i++) {
+            writer.write(' ');
+            writer.write(cells[i]);
+            for (int padding = widths[i] - cells[i].length(); padding > 0; padding--) {
+                writer.write(' ');
+            }
+            writer.write(" |");
+        }
+        writer.write('\n');
+    }
+}
@@ -0,0 +1,59 @@
+package cn.autumnclouds.sql.sink;
+
+import cn.autumnclouds.sql.util.ValueCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * 紧凑的二进制编码器，所有整数均为大端序。
+ * <p>
+ * 每个结果集的结构：魔数 "SQLR"（int）、版本（byte）、列数（int）、长度前缀的 UTF-8 列名；
+ * 之后每行以字节 1 开头，随后是按 {@link ValueCodec} 编码的各列值；结果集以字节 0 和行数（long）结束。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class BinaryResultSink implements ResultSink {
+    public static final int MAGIC = 0x53514C52;     // 魔数 "SQLR"
+    public static final byte VERSION = 1;           // 格式版本
+    public static final byte ROW_MARKER = 1;        // 行标记
+    public static final byte END_MARKER = 0;        // 结果集结束标记
+
+    private final DataOutputStream out;     // 带缓冲的输出
+    private long rowCount;                  // 当前结果集已写入的行数
+
+    public BinaryResultSink(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, AbstractTextResultSink.BUFFER_SIZE));
+    }
+
+    @Override
+    public void begin(List<String> columnNames) throws IOException {
+        rowCount = 0;
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(columnNames.size());
+        for (String columnName : columnNames) {
+            ValueCodec.writeString(out, columnName);
+        }
+    }
+
+    @Override
+    public void accept(List<Object> row) throws IOException {
+        out.writeByte(ROW_MARKER);
+        for (Object value : row) {
+            ValueCodec.writeValue(out, value);
+        }
+        rowCount++;
+    }
+
+    @Override
+    public void end() throws IOException {
+        out.writeByte(END_MARKER);
+        out.writeLong(rowCount);
+        out.flush();
+    }
+}
@@ -0,0 +1,41 @@
+package cn.autumnclouds.sql.sink;
+
+import cn.autumnclouds.sql.entity.QueryResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 将结果行收集到内存中的接收者，用于异步执行和 INSERT ... SELECT 等需要完整结果的场景。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class CollectingResultSink implements ResultSink {
+    private List<String> columnNames;       // 结果列名
+    private List<List<Object>> rows;        // 结果行
+
+    @Override
+    public void begin(List<String> columnNames) {
+        this.columnNames = columnNames;
+        this.rows = new ArrayList<>();
+    }
+
+    @Override
+    public void accept(List<Object> row) {
+        rows.add(row);
+    }
+
+    @Override
+    public void end() {
+    }
+
+    /**
+     * 获取最近一个结果集。
+     *
+     * @return 查询结果
+     */
+    public QueryResult getResult() {
+        return new QueryResult(columnNames, rows);
+    }
+}
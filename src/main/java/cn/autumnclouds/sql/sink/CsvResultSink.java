@@ -0,0 +1,64 @@
+package cn.autumnclouds.sql.sink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * CSV 编码器（RFC 4180），第一行为列名，行以 CRLF 结尾。
+ * <p>
+ * 包含逗号、引号或换行的字段用双引号括起，空值输出为空字段，空字符串输出为 ""，两者可以区分。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class CsvResultSink extends AbstractTextResultSink {
+
+    public CsvResultSink(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void begin(List<String> columnNames) throws IOException {
+        writeRecord(columnNames);
+    }
+
+    @Override
+    public void accept(List<Object> row) throws IOException {
+        writeRecord(row);
+    }
+
+    private void writeRecord(List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = values.get(i);
+            if (value != null) {
+                writeField(value.toString());
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeField(String text) throws IOException {
+        boolean quoted = text.isEmpty();
+        for (int i = 0; i < text.length() && !quoted; i++) {
+            char c = text.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quoted) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,93 @@
+package cn.autumnclouds.sql.sink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * JSON Lines 编码器，每行结果输出为一个以列名为键的 JSON 对象。
+ * <p>
+ * 整数、定点数和有限的浮点数输出为数字，布尔值输出为 true/false，空值输出为 null，其余值输出为字符串。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class JsonLinesResultSink extends AbstractTextResultSink {
+    private String[] keys;  // 已转义的列名，包含引号和冒号
+
+    public JsonLinesResultSink(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void begin(List<String> columnNames) throws IOException {
+        keys = new String[columnNames.size()];
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            key.setLength(0);
+            appendString(key, columnNames.get(i));
+            keys[i] = key.append(':').toString();
+        }
+    }
+
+    @Override
+    public void accept(List<Object> row) throws IOException {
+        writer.write('{');
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(keys[i]);
+            writeValue(row.get(i));
+        }
+        writer.write("}\n");
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte || value instanceof Boolean) {
+            writer.write(value.toString());
+        } else if (value instanceof BigDecimal) {
+            writer.write(((BigDecimal) value).toPlainString());
+        } else if ((value instanceof Double || value instanceof Float) && Double.isFinite(((Number) value).doubleValue())) {
+            writer.write(value.toString());
+        } else {
+            appendString(writer, value.toString());
+        }
+    }
+
+    // 追加带引号并转义的 JSON 字符串
+    private static void appendString(Appendable builder, String text) throws IOException {
+        builder.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        builder.append('"');
+    }
+}
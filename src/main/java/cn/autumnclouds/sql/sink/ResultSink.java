@@ -0,0 +1,76 @@
+package cn.autumnclouds.sql.sink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * 查询结果的接收者，查询按 begin、accept（每行一次）、end 的顺序将结果行写入接收者。
+ * <p>
+ * 一个接收者可以依次接收多个结果集；内置的编码器带有缓冲，在每个结果集结束时刷新，
+ * 不会关闭底层的输出流。接收者不是线程安全的。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public interface ResultSink {
+
+    /**
+     * 开始一个结果集。
+     *
+     * @param columnNames 结果列名
+     * @throws IOException 写入失败时抛出异常
+     */
+    void begin(List<String> columnNames) throws IOException;
+
+    /**
+     * 接收一行结果。
+     *
+     * @param row 结果行
+     * @throws IOException 写入失败时抛出异常
+     */
+    void accept(List<Object> row) throws IOException;
+
+    /**
+     * 结束当前结果集并刷新缓冲。
+     *
+     * @throws IOException 写入失败时抛出异常
+     */
+    void end() throws IOException;
+
+    /**
+     * 根据格式名称创建写入输出流的编码器。
+     *
+     * @param format 格式名称：text（对齐文本）、csv、jsonl（JSON Lines）或 binary
+     * @param out    输出流
+     * @return 编码器
+     */
+    static ResultSink of(String format, OutputStream out) {
+        switch (format.toLowerCase()) {
+            case "text":
+                return new AlignedTextResultSink(out);
+            case "csv":
+                return new CsvResultSink(out);
+            case "jsonl":
+            case "json":
+                return new JsonLinesResultSink(out);
+            case "binary":
+                return new BinaryResultSink(out);
+            default:
+                throw new IllegalArgumentException("unknown result format " + format);
+        }
+    }
+
+    /**
+     * 根据格式名称创建写入通道的编码器。
+     *
+     * @param format  格式名称：text（对齐文本）、csv、jsonl（JSON Lines）或 binary
+     * @param channel 通道
+     * @return 编码器
+     */
+    static ResultSink of(String format, WritableByteChannel channel) {
+        return of(format, Channels.newOutputStream(channel));
+    }
+}
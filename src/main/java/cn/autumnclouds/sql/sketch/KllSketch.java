@@ -0,0 +1,186 @@
+package cn.autumnclouds.sql.sketch;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 估计分位数的 KLL 草图，用于 APPROX_PERCENTILE。
+ * <p>
+ * 草图由若干层压缩器组成，第 h 层的每个值代表 2^h 个原始值。某层超过容量时将其排序后随机保留奇数位或偶数位上的值，
+ * 晋升到上一层，容量自顶层向下按 2/3 递减，因此总大小约为 3k，与值的数量无关。
+ * 两个草图逐层拼接后再压缩即可合并。值的数量不超过容量时草图不做压缩，分位数是精确的。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class KllSketch {
+    public static final int DEFAULT_K = 200;        // 默认的顶层容量，秩误差约 1.3%
+    private static final double CAPACITY_DECAY = 2.0 / 3;  // 相邻两层容量之比
+    private static final int MIN_CAPACITY = 8;      // 每层的最小容量
+
+    private final int k;                            // 顶层容量
+    private double[][] levels;                      // 各层压缩器中的值
+    private int[] sizes;                            // 各层压缩器中值的数量
+    private int height;                             // 层数
+    private int baseCapacity;                       // 最底层的容量，底层写满时才需要压缩
+    private long count;                             // 添加的值的数量
+    private boolean compacted;                      // 是否发生过压缩，未压缩时结果是精确的
+
+    /**
+     * 创建一个默认容量的 KllSketch 对象。
+     */
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * 创建一个新的 KllSketch 对象。
+     *
+     * @param k 顶层容量，越大越精确
+     */
+    public KllSketch(int k) {
+        if (k < MIN_CAPACITY) {
+            throw new IllegalArgumentException("KLL sketch k must be at least " + MIN_CAPACITY);
+        }
+        this.k = k;
+        this.levels = new double[4][];
+        this.sizes = new int[4];
+        addLevel();
+    }
+
+    /**
+     * 添加一个值。
+     *
+     * @param value 值
+     */
+    public void add(double value) {
+        append(0, value);
+        count++;
+        if (sizes[0] >= baseCapacity) {
+            compress();
+        }
+    }
+
+    /**
+     * 合并另一个草图，合并后的秩误差与对两部分数据一起建立的草图相当。
+     *
+     * @param other 草图
+     */
+    public void merge(KllSketch other) {
+        while (height < other.height) {
+            addLevel();
+        }
+        for (int h = 0; h < other.height; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        count += other.count;
+        compacted |= other.compacted;
+        compress();
+    }
+
+    /**
+     * 估计分位数，返回草图中累计权重首次达到 fraction * count 的值。
+     *
+     * @param fraction 分位点，取值范围为 0 到 1
+     * @return 分位数，没有任何值时返回 NaN
+     */
+    public double quantile(double fraction) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        int retained = 0;
+        for (int h = 0; h < height; h++) {
+            retained += sizes[h];
+        }
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        Integer[] order = new Integer[retained];
+        int n = 0;
+        for (int h = 0; h < height; h++) {
+            for (int i = 0; i < sizes[h]; i++, n++) {
+                values[n] = levels[h][i];
+                weights[n] = 1L << h;
+                order[n] = n;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        long total = 0;
+        for (long weight : weights) {
+            total += weight;
+        }
+        double target = Math.max(1, Math.ceil(fraction * total));
+        long cumulative = 0;
+        for (int index : order) {
+            cumulative += weights[index];
+            if (cumulative >= target) {
+                return values[index];
+            }
+        }
+        return values[order[order.length - 1]];
+    }
+
+    /**
+     * 获取分位数的归一化秩误差（约 99% 置信度），未压缩时为 0。
+     *
+     * @return 秩误差
+     */
+    public double rankError() {
+        return compacted ? 2.296 / Math.pow(k, 0.9723) : 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    // 向某层追加一个值，必要时扩容
+    private void append(int level, double value) {
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    // 从最低层开始压缩超过容量的层，直到所有层都不超过容量
+    private void compress() {
+        for (int h = 0; h < height; h++) {
+            int size = sizes[h];
+            if (size < capacity(h)) {
+                continue;
+            }
+            if (h + 1 == height) {
+                addLevel();
+            }
+            double[] values = levels[h];
+            // 值的数量为奇数时最后一个值留在本层
+            int pairs = size / 2;
+            double kept = values[size - 1];
+            Arrays.sort(values, 0, pairs * 2);
+            int offset = ThreadLocalRandom.current().nextBoolean() ? 1 : 0;
+            for (int i = 0; i < pairs; i++) {
+                append(h + 1, values[2 * i + offset]);
+            }
+            values[0] = kept;
+            sizes[h] = size % 2;
+            compacted = true;
+        }
+        baseCapacity = capacity(0);
+    }
+
+    // 第 h 层的容量，顶层为 k，向下逐层按 2/3 递减
+    private int capacity(int level) {
+        int depth = height - 1 - level;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    // 在顶部增加一层，下面各层的容量随之减小
+    private void addLevel() {
+        if (height == levels.length) {
+            levels = Arrays.copyOf(levels, height * 2);
+            sizes = Arrays.copyOf(sizes, height * 2);
+        }
+        levels[height++] = new double[MIN_CAPACITY];
+        baseCapacity = capacity(0);
+    }
+}
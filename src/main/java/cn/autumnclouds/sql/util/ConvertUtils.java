@@ -1,8 +1,13 @@
 package cn.autumnclouds.sql.util;
 
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLCharExpr;
+import com.alibaba.druid.sql.ast.expr.SQLNullExpr;
 import com.alibaba.druid.util.StringUtils;
 
 import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.function.Function;
 
 /**
  * @author Oreki
@@ -13,34 +18,160 @@ public class ConvertUtils {
         if (strValue == null || dataType == null) {
             return null;
         }
-        dataType = dataType.toLowerCase();
-        if (StringUtils.isEmpty(strValue) && (!"string".equals(dataType) && !"varchar".equals(dataType))) {
+        return getConverter(dataType).apply(strValue);
+    }
+
+    /**
+     * 获取将字符串转换为指定数据类型的函数，批量转换时只需解析一次数据类型。
+     *
+     * @param dataType 数据类型
+     * @return 转换函数，输入为 null 时返回 null，非字符串类型的空字符串转换为 null
+     */
+    public static Function<String, Object> getConverter(String dataType) {
+        String type = dataType.toLowerCase();
+        Function<String, Object> converter;
+        // use data type enum instead of string comparison
+        if ("date".equals(type)) {
+            converter = DateUtils::stringToDate;
+        } else if ("tinyint".equals(type)) {
+            converter = Byte::valueOf;
+        } else if ("short".equals(type) || "smallint".equals(type)) {
+            converter = Short::valueOf;
+        } else if ("int".equals(type) || "integer".equals(type)) {
+            converter = Integer::valueOf;
+        } else if ("long".equals(type) || "bigint".equals(type)) {
+            converter = Long::valueOf;
+        } else if ("double".equals(type)) {
+            converter = Double::valueOf;
+        } else if ("decimal".equals(type)) {
+            converter = BigDecimal::new;
+        } else if ("timestamp".equals(type)) {
+            converter = DateUtils::stringToMillis;
+        } else if ("float".equals(type)) {
+            converter = Float::valueOf;
+        } else if ("boolean".equals(type)) {
+            converter = Boolean::valueOf;
+        } else {
+            converter = strValue -> strValue;
+        }
+        boolean emptyAsNull = !"string".equals(type) && !"varchar".equals(type);
+        return strValue -> {
+            if (strValue == null || (emptyAsNull && StringUtils.isEmpty(strValue))) {
+                return null;
+            }
+            return converter.apply(strValue);
+        };
+    }
+
+    /**
+     * 将已计算出的值转换为列的数据类型，数值之间直接转换，不经过字符串。
+     *
+     * @param dataType 列的数据类型
+     * @param value    值
+     * @return 转换后的值
+     */
+    public static Object coerceValue(String dataType, Object value) {
+        if (value == null || dataType == null) {
             return null;
         }
+        if (value instanceof String) {
+            return convertValue(dataType, (String) value);
+        }
+        dataType = dataType.toLowerCase();
+        if (value instanceof Number) {
+            Number number = (Number) value;
+            if ("tinyint".equals(dataType)) {
+                return (byte) checkRange(number, Byte.MIN_VALUE, Byte.MAX_VALUE, "tinyint");
+            } else if ("short".equals(dataType) || "smallint".equals(dataType)) {
+                return (short) checkRange(number, Short.MIN_VALUE, Short.MAX_VALUE, "smallint");
+            } else if ("int".equals(dataType) || "integer".equals(dataType)) {
+                return (int) checkRange(number, Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+            } else if ("long".equals(dataType) || "bigint".equals(dataType) || "timestamp".equals(dataType)) {
+                return checkRange(number, Long.MIN_VALUE, Long.MAX_VALUE, "long");
+            } else if ("double".equals(dataType)) {
+                return number.doubleValue();
+            } else if ("float".equals(dataType)) {
+                return number.floatValue();
+            } else if ("decimal".equals(dataType)) {
+                return number instanceof BigDecimal ? number : new BigDecimal(number.toString());
+            } else if ("boolean".equals(dataType)) {
+                return number.doubleValue() != 0;
+            } else if ("date".equals(dataType)) {
+                return new Date(number.longValue());
+            }
+        } else if (value instanceof java.util.Date) {
+            long millis = ((java.util.Date) value).getTime();
+            if ("timestamp".equals(dataType) || "long".equals(dataType) || "bigint".equals(dataType)) {
+                return millis;
+            } else if ("date".equals(dataType)) {
+                return value instanceof Date ? value : new Date(millis);
+            }
+        } else if (value instanceof Boolean && !"boolean".equals(dataType)) {
+            return coerceValue(dataType, (Boolean) value ? 1 : 0);
+        }
+        return convertValue(dataType, value.toString());
+    }
 
-        // use data type enum instead of string comparison
-        if ("date".equals(dataType)) {
-            return DateUtils.stringToDate(strValue);
-        } else if ("tinyint".equals(dataType)) {
-            return Byte.valueOf(strValue);
-        } else if ("short".equals(dataType) || "smallint".equals(dataType)) {
-            return Short.valueOf(strValue);
-        } else if ("integer".equals(dataType)) {
-            return Integer.valueOf(strValue);
-        } else if ("long".equals(dataType) || "bigint".equals(dataType)) {
-            return Long.valueOf(strValue);
-        } else if ("double".equals(dataType)) {
-            return Double.valueOf(strValue);
-        } else if ("decimal".equals(dataType)) {
-            return new BigDecimal(strValue);
-        } else if ("timestamp".equals(dataType)) {
-            return DateUtils.stringToMillis(strValue);
-        } else if ("float".equals(dataType)) {
-            return Float.valueOf(strValue);
-        } else if ("boolean".equals(dataType)) {
-            return Boolean.valueOf(strValue);
+    /**
+     * 检查数值转换为整数类型时是否溢出，小数部分被截断，与表达式求值时的整数溢出一样抛出 ArithmeticException。
+     *
+     * @param number   数值
+     * @param min      目标类型的最小值
+     * @param max      目标类型的最大值
+     * @param typeName 目标类型名，用于错误信息
+     * @return 截断后的整数值
+     */
+    private static long checkRange(Number number, long min, long max, String typeName) {
+        long value;
+        if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            value = number.longValue();
+        } else if (number instanceof BigDecimal) {
+            try {
+                value = ((BigDecimal) number).toBigInteger().longValueExact();
+            } catch (ArithmeticException e) {
+                throw new ArithmeticException(typeName + " overflow");
+            }
         } else {
-            return strValue;
+            double d = number.doubleValue();
+            // Long.MAX_VALUE 转换为 double 后为 2^63，恰好超出范围
+            if (Double.isNaN(d) || d < -0x1p63 || d >= 0x1p63) {
+                throw new ArithmeticException(typeName + " overflow");
+            }
+            value = (long) d;
+        }
+        if (value < min || value > max) {
+            throw new ArithmeticException(typeName + " overflow");
+        }
+        return value;
+    }
+
+    /**
+     * 去掉定点数末尾的零，使数值相等而精度不同的定点数（如 1.0 与 1.00）得到相同的值和哈希码，
+     * 用于键值比较和哈希分区；其他类型的值原样返回。
+     *
+     * @param value 值
+     * @return 规范化后的值
+     */
+    public static Object normalizeDecimal(Object value) {
+        if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+        }
+        return value;
+    }
+
+    /**
+     * 获取字面量表达式的文本，字符串字面量去除引号，NULL 字面量返回 null。
+     *
+     * @param expr 字面量表达式
+     * @return 字面量文本
+     */
+    public static String getLiteralText(SQLExpr expr) {
+        if (expr instanceof SQLCharExpr) {
+            return ((SQLCharExpr) expr).getText();
+        } else if (expr instanceof SQLNullExpr) {
+            return null;
         }
+        return expr.toString();
     }
 }
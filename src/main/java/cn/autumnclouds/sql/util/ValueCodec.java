@@ -0,0 +1,143 @@
+package cn.autumnclouds.sql.util;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+
+/**
+ * 值的二进制编码，每个值以一个字节的类型标记开头，用于表快照和二进制查询结果。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class ValueCodec {
+    // 值的类型标记
+    public static final byte TAG_NULL = 0;
+    public static final byte TAG_INTEGER = 1;
+    public static final byte TAG_LONG = 2;
+    public static final byte TAG_DOUBLE = 3;
+    public static final byte TAG_FLOAT = 4;
+    public static final byte TAG_SHORT = 5;
+    public static final byte TAG_BYTE = 6;
+    public static final byte TAG_BOOLEAN = 7;
+    public static final byte TAG_STRING = 8;
+    public static final byte TAG_DECIMAL = 9;
+    public static final byte TAG_DATE = 10;
+    public static final byte TAG_TIMESTAMP = 11;
+
+    private ValueCodec() {
+    }
+
+    /**
+     * 写入长度前缀的 UTF-8 字符串。
+     *
+     * @param out   输出
+     * @param value 字符串
+     * @throws IOException 写入失败时抛出异常
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 读取长度前缀的 UTF-8 字符串。
+     *
+     * @param in 输入
+     * @return 字符串
+     */
+    public static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 写入带类型标记的值，无法识别的类型按字符串写入。
+     *
+     * @param out   输出
+     * @param value 值
+     * @throws IOException 写入失败时抛出异常
+     */
+    public static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(TAG_SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(TAG_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(TAG_DECIMAL);
+            writeString(out, value.toString());
+        } else if (value instanceof Date) {
+            out.writeByte(TAG_DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TAG_TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+        } else {
+            out.writeByte(TAG_STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    /**
+     * 读取带类型标记的值。
+     *
+     * @param in 输入
+     * @return 值
+     */
+    public static Object readValue(ByteBuffer in) {
+        byte tag = in.get();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_INTEGER:
+                return in.getInt();
+            case TAG_LONG:
+                return in.getLong();
+            case TAG_DOUBLE:
+                return in.getDouble();
+            case TAG_FLOAT:
+                return in.getFloat();
+            case TAG_SHORT:
+                return in.getShort();
+            case TAG_BYTE:
+                return in.get();
+            case TAG_BOOLEAN:
+                return in.get() != 0;
+            case TAG_STRING:
+                return readString(in);
+            case TAG_DECIMAL:
+                return new BigDecimal(readString(in));
+            case TAG_DATE:
+                return new Date(in.getLong());
+            case TAG_TIMESTAMP:
+                return new Timestamp(in.getLong());
+            default:
+                throw new IllegalStateException("unknown value tag " + tag);
+        }
+    }
+}
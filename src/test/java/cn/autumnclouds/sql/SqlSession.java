@@ -0,0 +1,119 @@
+package cn.autumnclouds.sql;
+
+import cn.autumnclouds.sql.core.DatabaseContainer;
+import cn.autumnclouds.sql.core.ExecutionResult;
+import cn.autumnclouds.sql.core.SQLExecutor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 测试用的会话，在独立的数据库中执行SQL语句，并提供简单的断言方法。
+ * <p>
+ * 数据库容器是全局单例，每个测试使用不同的数据库名，结束时删除数据库。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class SqlSession implements AutoCloseable {
+    private final SQLExecutor executor = new SQLExecutor(DatabaseContainer.getInstance());
+    private final String databaseName;
+
+    /**
+     * 创建会话并切换到一个新建的空数据库
+     *
+     * @param databaseName 数据库名
+     */
+    public SqlSession(String databaseName) {
+        this.databaseName = databaseName;
+        execute("DROP DATABASE IF EXISTS " + databaseName);
+        execute("CREATE DATABASE " + databaseName);
+        execute("USE " + databaseName);
+    }
+
+    public SQLExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * 执行一条SQL语句，语句失败时抛出原始异常
+     *
+     * @param sql SQL语句
+     * @return 执行结果
+     */
+    public ExecutionResult execute(String sql) {
+        try {
+            return executor.executeAsync(sql).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * 执行查询并返回结果行
+     *
+     * @param sql 查询语句
+     * @return 结果行
+     */
+    public List<List<Object>> query(String sql) {
+        return execute(sql).getQueryResult().getRows();
+    }
+
+    /**
+     * 执行更新语句并返回影响的行数
+     *
+     * @param sql 更新语句
+     * @return 影响的行数
+     */
+    public int update(String sql) {
+        return execute(sql).getUpdateCount();
+    }
+
+    /**
+     * 执行一条预期失败的语句
+     *
+     * @param sql SQL语句
+     * @return 语句抛出的异常
+     */
+    public RuntimeException expectFailure(String sql) {
+        try {
+            execute(sql);
+        } catch (RuntimeException e) {
+            return e;
+        }
+        throw new AssertionError("expected failure: " + sql);
+    }
+
+    @Override
+    public void close() {
+        execute("DROP DATABASE IF EXISTS " + databaseName);
+    }
+
+    public static List<Object> row(Object... values) {
+        return Arrays.asList(values);
+    }
+
+    public static void assertEquals(Object expected, Object actual) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError("expected <" + expected + "> but was <" + actual + ">");
+        }
+    }
+
+    public static void assertTrue(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
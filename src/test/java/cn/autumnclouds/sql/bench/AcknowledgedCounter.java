@@ -0,0 +1,77 @@
+package cn.autumnclouds.sql.bench;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 插入键的计数器，与 YCSB 的 AcknowledgedCounterGenerator 对应。
+ * <p>
+ * 插入操作先预留一个键，插入完成（无论成功与否）后再确认该键。读、更新、删除和扫描只在已确认的连续键范围内选择键，
+ * 避免选中尚未插入的行：否则 latest 分布会集中访问正在插入的键，统计出大量空读。
+ * 已预留但尚未确认的键保存在固定大小的滑动窗口中。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class AcknowledgedCounter {
+    private static final int WINDOW_SIZE = 1 << 20;     // 滑动窗口大小，即同时未确认的键的最大数量
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+    private final AtomicLong next;                      // 下一个预留的键
+    private final boolean[] window = new boolean[WINDOW_SIZE];  // 已确认但尚未计入连续范围的键
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long acknowledged;                 // [0, acknowledged) 中的键都已确认
+
+    /**
+     * 创建一个新的 AcknowledgedCounter 对象。
+     *
+     * @param start 初始的键数量，[0, start) 中的键视为已确认
+     */
+    public AcknowledgedCounter(long start) {
+        this.next = new AtomicLong(start);
+        this.acknowledged = start;
+    }
+
+    /**
+     * 预留下一个键。
+     *
+     * @return 键
+     * @throws IllegalStateException 未确认的键超过窗口大小时抛出异常
+     */
+    public long next() {
+        long key = next.getAndIncrement();
+        if (key - acknowledged >= WINDOW_SIZE) {
+            throw new IllegalStateException("too many unacknowledged keys");
+        }
+        return key;
+    }
+
+    /**
+     * 确认一个已预留的键，并推进连续确认的范围。
+     *
+     * @param key 键
+     */
+    public void acknowledge(long key) {
+        lock.lock();
+        try {
+            window[(int) (key & WINDOW_MASK)] = true;
+            long limit = acknowledged;
+            while (window[(int) (limit & WINDOW_MASK)]) {
+                window[(int) (limit & WINDOW_MASK)] = false;
+                limit++;
+            }
+            acknowledged = limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取已确认的连续键数量，[0, 返回值) 中的键都已插入完成。
+     *
+     * @return 已确认的键数量
+     */
+    public long getAcknowledged() {
+        return acknowledged;
+    }
+}
@@ -0,0 +1,84 @@
+package cn.autumnclouds.sql.bench;
+
+import java.util.Random;
+
+/**
+ * 负载中选择操作键的分布，与 YCSB 的 requestdistribution 对应。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+@FunctionalInterface
+public interface KeyChooser {
+
+    /**
+     * 从 [0, itemCount) 中选择一个键。
+     *
+     * @param random    当前线程的随机数生成器
+     * @param itemCount 当前的键数量，随插入操作增长
+     * @return 选中的键
+     */
+    long nextKey(Random random, long itemCount);
+
+    /**
+     * 根据名称创建键分布。
+     *
+     * @param name        分布名称：uniform、zipfian 或 latest
+     * @param recordCount 初始的键数量
+     * @return 键分布
+     */
+    static KeyChooser of(String name, long recordCount) {
+        switch (name.toLowerCase()) {
+            case "uniform":
+                return uniform();
+            case "zipfian":
+                return zipfian(recordCount);
+            case "latest":
+                return latest(recordCount);
+            default:
+                throw new IllegalArgumentException("unknown key distribution " + name);
+        }
+    }
+
+    /**
+     * 均匀分布。
+     *
+     * @return 键分布
+     */
+    static KeyChooser uniform() {
+        return (random, itemCount) -> (long) (random.nextDouble() * itemCount);
+    }
+
+    /**
+     * Zipfian 分布，热点键经过哈希打散到整个键空间。
+     *
+     * @param recordCount 初始的键数量
+     * @return 键分布
+     */
+    static KeyChooser zipfian(long recordCount) {
+        ZipfianGenerator generator = new ZipfianGenerator(recordCount);
+        return (random, itemCount) -> Math.floorMod(fnvHash(generator.next(random, itemCount)), itemCount);
+    }
+
+    /**
+     * 最近插入的键最热的分布。
+     *
+     * @param recordCount 初始的键数量
+     * @return 键分布
+     */
+    static KeyChooser latest(long recordCount) {
+        ZipfianGenerator generator = new ZipfianGenerator(recordCount);
+        return (random, itemCount) -> itemCount - 1 - generator.next(random, itemCount);
+    }
+
+    // 64 位 FNV-1a 哈希
+    static long fnvHash(long value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < 8; i++) {
+            hash ^= value & 0xFF;
+            hash *= 0x100000001B3L;
+            value >>>= 8;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,111 @@
+package cn.autumnclouds.sql.bench;
+
+/**
+ * 对数线性分桶的延迟直方图，与 HdrHistogram 的分桶方式相同。
+ * <p>
+ * 小于 128 的值每个值一个桶，更大的值按 2 的幂分段，每段再均分为 64 个子桶，
+ * 因此记录的值的相对误差不超过 1/64；直方图可以合并，每个线程各自记录后再汇总。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;                       // 子桶位数
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;   // 第一段的桶数
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;  // 之后每段的桶数
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (64 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];   // 各桶的计数
+    private long totalCount;    // 记录的值的数量
+    private long sum;           // 记录的值的总和
+    private long min = Long.MAX_VALUE;  // 最小值
+    private long max;           // 最大值
+
+    /**
+     * 记录一个值。
+     *
+     * @param value 值，必须大于等于 0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative value " + value);
+        }
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * 将另一个直方图的记录合并到当前直方图。
+     *
+     * @param other 另一个直方图
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * 获取指定百分位的值，返回该值所在桶的上界（不超过记录的最大值）。
+     *
+     * @param percentile 百分位，范围为 0 到 100
+     * @return 百分位的值，没有记录时返回 0
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    // 计算值所在的桶
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // 右移后的值落在 [64, 128) 区间
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift) - SUB_BUCKET_HALF_COUNT;
+    }
+
+    // 计算桶中可以记录的最大值
+    private static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+}
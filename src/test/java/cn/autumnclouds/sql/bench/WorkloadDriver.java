@@ -0,0 +1,374 @@
+package cn.autumnclouds.sql.bench;
+
+import cn.autumnclouds.sql.core.DatabaseContainer;
+import cn.autumnclouds.sql.core.SQLExecutionService;
+import cn.autumnclouds.sql.core.SQLExecutor;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 类似 YCSB 的多线程负载生成器，针对 SQLExecutor 执行读、插入、更新、删除和范围扫描的混合负载，
+ * 按操作类型统计吞吐量和延迟百分位，并以 CSV 或 JSON 格式输出，便于比较不同版本。
+ * <p>
+ * 参数以 --name=value 的形式给出，例如：
+ * <pre>
+ * --threads=8 --records=100000 --operations=1000000 --distribution=zipfian
+ * --read=0.5 --update=0.3 --insert=0.1 --delete=0.05 --scan=0.05 --format=json --output=result.json
+ * </pre>
+ * --ingest=true 时以摄入模式创建负载表（COMMENT 'INGEST'），用于比较插入密集负载下两种写入方式的吞吐量。
+ * 每个工作线程使用独立的 SQLExecutor 会话，通过 executeAsync 提交语句并等待结果，
+ * 记录的延迟是客户端从提交到拿到结果的时间。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class WorkloadDriver {
+    private static final String DATABASE_NAME = "workload";   // 负载使用的数据库
+    private static final String TABLE_NAME = "usertable";     // 负载使用的表
+    private static final int LOAD_BATCH_SIZE = 1000;          // 加载阶段每条 INSERT 语句的行数
+    private static final double[] PERCENTILES = {50, 90, 95, 99, 99.9, 99.99};  // 报告的延迟百分位
+
+    private final Map<String, String> options;  // 命令行参数
+    private final int threads;                  // 工作线程数
+    private final long records;                 // 初始行数
+    private final long operations;              // 操作总数，按时间运行时忽略
+    private final long durationSeconds;         // 运行时间（秒），大于 0 时按时间运行
+    private final int maxScanLength;            // 范围扫描的最大长度
+    private final int fieldLength;              // 字符串字段的长度
+    private final String distribution;          // 键分布名称
+    private final boolean ingest;               // 是否以摄入模式创建负载表
+    private final double[] proportions;         // 各操作类型的比例，按 Operation 的顺序
+    private final KeyChooser keyChooser;        // 键分布
+    private final AcknowledgedCounter insertKeys;   // 插入的键，其他操作只选择已确认插入完成的键
+
+    /**
+     * 负载中的操作类型
+     */
+    public enum Operation {
+        READ, INSERT, UPDATE, DELETE, SCAN
+    }
+
+    /**
+     * 创建一个新的 WorkloadDriver 对象。
+     *
+     * @param options 参数名到参数值的映射
+     */
+    public WorkloadDriver(Map<String, String> options) {
+        this.options = options;
+        this.threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        this.records = Long.parseLong(options.getOrDefault("records", "10000"));
+        this.operations = Long.parseLong(options.getOrDefault("operations", "100000"));
+        this.durationSeconds = Long.parseLong(options.getOrDefault("duration", "0"));
+        this.maxScanLength = Integer.parseInt(options.getOrDefault("maxscanlength", "100"));
+        this.fieldLength = Integer.parseInt(options.getOrDefault("fieldlength", "16"));
+        this.distribution = options.getOrDefault("distribution", "zipfian");
+        this.ingest = Boolean.parseBoolean(options.getOrDefault("ingest", "false"));
+        this.proportions = new double[Operation.values().length];
+        proportions[Operation.READ.ordinal()] = Double.parseDouble(options.getOrDefault("read", "0.5"));
+        proportions[Operation.INSERT.ordinal()] = Double.parseDouble(options.getOrDefault("insert", "0"));
+        proportions[Operation.UPDATE.ordinal()] = Double.parseDouble(options.getOrDefault("update", "0.5"));
+        proportions[Operation.DELETE.ordinal()] = Double.parseDouble(options.getOrDefault("delete", "0"));
+        proportions[Operation.SCAN.ordinal()] = Double.parseDouble(options.getOrDefault("scan", "0"));
+        if (Arrays.stream(proportions).sum() <= 0) {
+            throw new IllegalArgumentException("operation proportions must not all be zero");
+        }
+        if (threads <= 0 || records <= 0) {
+            throw new IllegalArgumentException("threads and records must be positive");
+        }
+        this.keyChooser = KeyChooser.of(distribution, records);
+        this.insertKeys = new AcknowledgedCounter(records);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("expected --name=value but got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator).toLowerCase(), arg.substring(separator + 1));
+        }
+        new WorkloadDriver(options).run();
+    }
+
+    /**
+     * 加载初始数据、运行负载并输出报告。
+     *
+     * @throws Exception 加载数据失败或写入报告失败时抛出异常
+     */
+    public void run() throws Exception {
+        SQLExecutionService executionService = SQLExecutionService.fixedThreadPool(threads, threads * 2, SQLExecutionService.AdmissionPolicy.BLOCK);
+        try {
+            load(executionService);
+            Report report = runWorkload(executionService);
+            String format = options.getOrDefault("format", "csv");
+            String output = "json".equalsIgnoreCase(format) ? report.toJson() : report.toCsv();
+            String file = options.get("output");
+            if (file == null) {
+                System.out.print(output);
+            } else {
+                Files.write(Paths.get(file), output.getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            new SQLExecutor(DatabaseContainer.getInstance()).executeSql("DROP DATABASE " + DATABASE_NAME);
+            executionService.shutdown();
+        }
+    }
+
+    // 创建表并插入初始数据
+    private void load(SQLExecutionService executionService) throws Exception {
+        SQLExecutor executor = new SQLExecutor(DatabaseContainer.getInstance(), executionService);
+        executor.executeAsync("CREATE DATABASE IF NOT EXISTS " + DATABASE_NAME).get();
+        executor.executeAsync("USE " + DATABASE_NAME).get();
+        executor.executeAsync("DROP TABLE IF EXISTS " + TABLE_NAME).get();
+        executor.executeAsync("CREATE TABLE " + TABLE_NAME + " (id BIGINT, field0 VARCHAR(100), field1 VARCHAR(100), field2 INT)"
+                + (ingest ? " COMMENT 'INGEST'" : "")).get();
+        Random random = ThreadLocalRandom.current();
+        for (long start = 0; start < records; start += LOAD_BATCH_SIZE) {
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(TABLE_NAME).append(" VALUES ");
+            for (long key = start; key < Math.min(records, start + LOAD_BATCH_SIZE); key++) {
+                if (key > start) {
+                    sql.append(", ");
+                }
+                sql.append(values(key, random));
+            }
+            executor.executeAsync(sql.toString()).get();
+        }
+    }
+
+    // 启动工作线程运行负载，结束后汇总各线程的直方图
+    private Report runWorkload(SQLExecutionService executionService) throws InterruptedException {
+        AtomicLong remaining = new AtomicLong(operations);
+        long deadline = durationSeconds > 0 ? System.nanoTime() + durationSeconds * 1_000_000_000L : Long.MAX_VALUE;
+        List<Worker> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Worker(new SQLExecutor(DatabaseContainer.getInstance(), executionService), remaining, deadline));
+        }
+        long start = System.nanoTime();
+        List<Thread> workerThreads = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(workers.get(i), "workload-" + i);
+            workerThreads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : workerThreads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        Report report = new Report(elapsedNanos);
+        for (Worker worker : workers) {
+            if (worker.failure != null) {
+                throw new IllegalStateException("worker failed", worker.failure);
+            }
+            for (Operation operation : Operation.values()) {
+                report.histograms[operation.ordinal()].add(worker.histograms[operation.ordinal()]);
+                report.errors[operation.ordinal()] += worker.errors[operation.ordinal()];
+            }
+        }
+        return report;
+    }
+
+    // 按比例选择操作类型
+    private Operation chooseOperation(Random random) {
+        double total = Arrays.stream(proportions).sum();
+        double value = random.nextDouble() * total;
+        for (Operation operation : Operation.values()) {
+            value -= proportions[operation.ordinal()];
+            if (value < 0) {
+                return operation;
+            }
+        }
+        return Operation.READ;
+    }
+
+    // 生成操作对应的SQL语句，insertKey 为插入操作预留的键
+    private String statement(Operation operation, long insertKey, Random random) {
+        switch (operation) {
+            case INSERT:
+                return "INSERT INTO " + TABLE_NAME + " VALUES " + values(insertKey, random);
+            case UPDATE:
+                return "UPDATE " + TABLE_NAME + " SET field0 = '" + randomString(random) + "', field2 = field2 + 1 WHERE id = " + chooseKey(random);
+            case DELETE:
+                return "DELETE FROM " + TABLE_NAME + " WHERE id = " + chooseKey(random);
+            case SCAN:
+                long key = chooseKey(random);
+                return "SELECT * FROM " + TABLE_NAME + " WHERE id BETWEEN " + key + " AND " + (key + random.nextInt(maxScanLength));
+            default:
+                return "SELECT * FROM " + TABLE_NAME + " WHERE id = " + chooseKey(random);
+        }
+    }
+
+    private long chooseKey(Random random) {
+        return keyChooser.nextKey(random, insertKeys.getAcknowledged());
+    }
+
+    private String values(long key, Random random) {
+        return "(" + key + ", '" + randomString(random) + "', '" + randomString(random) + "', " + random.nextInt(1000) + ")";
+    }
+
+    private String randomString(Random random) {
+        char[] chars = new char[fieldLength];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 工作线程，使用独立的会话执行操作并记录延迟（纳秒）
+     */
+    private class Worker implements Runnable {
+        private final SQLExecutor executor;
+        private final AtomicLong remaining;
+        private final long deadline;
+        private final LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+        private final long[] errors = new long[Operation.values().length];
+        private Throwable failure;
+
+        Worker(SQLExecutor executor, AtomicLong remaining, long deadline) {
+            this.executor = executor;
+            this.remaining = remaining;
+            this.deadline = deadline;
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                executor.executeAsync("USE " + DATABASE_NAME).get();
+                Random random = ThreadLocalRandom.current();
+                while (hasNext()) {
+                    Operation operation = chooseOperation(random);
+                    long insertKey = operation == Operation.INSERT ? insertKeys.next() : -1;
+                    String sql = statement(operation, insertKey, random);
+                    long start = System.nanoTime();
+                    try {
+                        executor.executeAsync(sql).get();
+                    } catch (ExecutionException e) {
+                        errors[operation.ordinal()]++;
+                    } finally {
+                        if (insertKey >= 0) {
+                            insertKeys.acknowledge(insertKey);
+                        }
+                    }
+                    histograms[operation.ordinal()].record(System.nanoTime() - start);
+                }
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+
+        private boolean hasNext() {
+            if (deadline != Long.MAX_VALUE) {
+                return System.nanoTime() < deadline;
+            }
+            return remaining.getAndDecrement() > 0;
+        }
+    }
+
+    /**
+     * 负载运行结果，延迟以微秒输出
+     */
+    private class Report {
+        private final long elapsedNanos;
+        private final LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+        private final long[] errors = new long[Operation.values().length];
+
+        Report(long elapsedNanos) {
+            this.elapsedNanos = elapsedNanos;
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        // 汇总所有操作类型的直方图
+        private LatencyHistogram overall() {
+            LatencyHistogram overall = new LatencyHistogram();
+            for (LatencyHistogram histogram : histograms) {
+                overall.add(histogram);
+            }
+            return overall;
+        }
+
+        private double throughput(LatencyHistogram histogram) {
+            return histogram.getTotalCount() * 1e9 / elapsedNanos;
+        }
+
+        String toCsv() {
+            StringBuilder csv = new StringBuilder("operation,count,errors,throughput_ops_per_sec,mean_us,min_us");
+            for (double percentile : PERCENTILES) {
+                csv.append(",p").append(percentileName(percentile)).append("_us");
+            }
+            csv.append(",max_us\n");
+            for (Operation operation : Operation.values()) {
+                LatencyHistogram histogram = histograms[operation.ordinal()];
+                if (histogram.getTotalCount() > 0) {
+                    appendCsvRow(csv, operation.name(), histogram, errors[operation.ordinal()]);
+                }
+            }
+            appendCsvRow(csv, "OVERALL", overall(), Arrays.stream(errors).sum());
+            return csv.toString();
+        }
+
+        private void appendCsvRow(StringBuilder csv, String name, LatencyHistogram histogram, long errorCount) {
+            csv.append(name).append(',').append(histogram.getTotalCount()).append(',').append(errorCount)
+                    .append(',').append(format(throughput(histogram)))
+                    .append(',').append(format(histogram.getMean() / 1000)).append(',').append(format(histogram.getMin() / 1000.0));
+            for (double percentile : PERCENTILES) {
+                csv.append(',').append(format(histogram.getValueAtPercentile(percentile) / 1000.0));
+            }
+            csv.append(',').append(format(histogram.getMax() / 1000.0)).append('\n');
+        }
+
+        String toJson() {
+            StringBuilder json = new StringBuilder("{\n  \"config\": {");
+            json.append("\"threads\": ").append(threads).append(", \"records\": ").append(records)
+                    .append(", \"operations\": ").append(operations).append(", \"duration\": ").append(durationSeconds)
+                    .append(", \"distribution\": \"").append(distribution).append('"');
+            for (Operation operation : Operation.values()) {
+                json.append(", \"").append(operation.name().toLowerCase()).append("\": ").append(proportions[operation.ordinal()]);
+            }
+            json.append("},\n  \"elapsed_ms\": ").append(format(elapsedNanos / 1e6)).append(",\n  \"operations\": [\n");
+            List<String> entries = new ArrayList<>();
+            for (Operation operation : Operation.values()) {
+                LatencyHistogram histogram = histograms[operation.ordinal()];
+                if (histogram.getTotalCount() > 0) {
+                    entries.add(jsonEntry(operation.name(), histogram, errors[operation.ordinal()]));
+                }
+            }
+            entries.add(jsonEntry("OVERALL", overall(), Arrays.stream(errors).sum()));
+            json.append(String.join(",\n", entries)).append("\n  ]\n}\n");
+            return json.toString();
+        }
+
+        private String jsonEntry(String name, LatencyHistogram histogram, long errorCount) {
+            StringBuilder entry = new StringBuilder("    {\"operation\": \"").append(name).append('"')
+                    .append(", \"count\": ").append(histogram.getTotalCount()).append(", \"errors\": ").append(errorCount)
+                    .append(", \"throughput_ops_per_sec\": ").append(format(throughput(histogram)))
+                    .append(", \"mean_us\": ").append(format(histogram.getMean() / 1000))
+                    .append(", \"min_us\": ").append(format(histogram.getMin() / 1000.0));
+            for (double percentile : PERCENTILES) {
+                entry.append(", \"p").append(percentileName(percentile)).append("_us\": ")
+                        .append(format(histogram.getValueAtPercentile(percentile) / 1000.0));
+            }
+            return entry.append(", \"max_us\": ").append(format(histogram.getMax() / 1000.0)).append('}').toString();
+        }
+
+        private String percentileName(double percentile) {
+            return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile).replace('.', '_');
+        }
+
+        private String format(double value) {
+            return String.format(Locale.ROOT, "%.3f", value);
+        }
+    }
+}
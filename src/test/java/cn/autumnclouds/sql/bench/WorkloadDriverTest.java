@@ -0,0 +1,124 @@
+package cn.autumnclouds.sql.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.assertTrue;
+
+/**
+ * 负载生成器及其辅助类的测试
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class WorkloadDriverTest {
+
+    public void testAcknowledgedCounterNeverPassesAPendingKey() throws Exception {
+        AcknowledgedCounter counter = new AcknowledgedCounter(100);
+        ConcurrentSkipListSet<Long> pending = new ConcurrentSkipListSet<>();
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                Random random = ThreadLocalRandom.current();
+                try {
+                    for (int i = 0; i < 5000; i++) {
+                        long key = counter.next();
+                        pending.add(key);
+                        long acknowledged = counter.getAcknowledged();
+                        // 确认范围不会越过任何尚未确认的键
+                        Long oldest = pending.isEmpty() ? null : pending.first();
+                        if (oldest != null && acknowledged > oldest) {
+                            throw new AssertionError("acknowledged " + acknowledged + " passes pending key " + oldest);
+                        }
+                        if (random.nextInt(8) == 0) {
+                            Thread.yield();
+                        }
+                        pending.remove(key);
+                        counter.acknowledge(key);
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(failures.isEmpty(), "failures: " + failures);
+        assertEquals(100L + 8 * 5000, counter.getAcknowledged());
+    }
+
+    public void testAcknowledgedCounterWaitsForOutOfOrderKeys() {
+        AcknowledgedCounter counter = new AcknowledgedCounter(0);
+        long first = counter.next();
+        long second = counter.next();
+        counter.acknowledge(second);
+        assertEquals(0L, counter.getAcknowledged());
+        counter.acknowledge(first);
+        assertEquals(2L, counter.getAcknowledged());
+    }
+
+    public void testHistogramPercentilesWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        LatencyHistogram other = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            (value % 2 == 0 ? histogram : other).record(value * 1000);
+        }
+        histogram.add(other);
+        assertEquals(100000L, histogram.getTotalCount());
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = (long) Math.ceil(percentile / 100 * 100000) * 1000;
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertTrue(reported >= exact && reported <= exact + exact / 64, "p" + percentile + " = " + reported + ", exact " + exact);
+        }
+        assertEquals(100000000L, histogram.getValueAtPercentile(100));
+    }
+
+    public void testKeyChoosersStayInRange() {
+        Random random = new Random(42);
+        for (String distribution : new String[]{"uniform", "zipfian", "latest"}) {
+            KeyChooser chooser = KeyChooser.of(distribution, 1000);
+            for (int i = 0; i < 10000; i++) {
+                long itemCount = 1000 + i / 10;
+                long key = chooser.nextKey(random, itemCount);
+                assertTrue(key >= 0 && key < itemCount, distribution + " chose " + key + " of " + itemCount);
+            }
+        }
+    }
+
+    public void testWorkloadRunsTwiceInOneProcess() throws Exception {
+        Path output = Files.createTempFile("workload", ".json");
+        try {
+            for (int run = 0; run < 2; run++) {
+                Map<String, String> options = new LinkedHashMap<>();
+                options.put("threads", "4");
+                options.put("records", "500");
+                options.put("operations", "2000");
+                options.put("distribution", "latest");
+                options.put("read", "0.5");
+                options.put("insert", "0.3");
+                options.put("update", "0.1");
+                options.put("scan", "0.1");
+                options.put("format", "json");
+                options.put("output", output.toString());
+                new WorkloadDriver(options).run();
+                String report = new String(Files.readAllBytes(output), StandardCharsets.UTF_8);
+                assertTrue(report.contains("INSERT") || report.contains("insert"), "report without inserts: " + report);
+            }
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package cn.autumnclouds.sql.bench;
+
+import java.util.Random;
+
+/**
+ * Zipfian 分布的生成器，采用 Gray 等人在 "Quickly Generating Billion-Record Synthetic Databases" 中的算法，
+ * 与 YCSB 相同，排名越小的元素越热。
+ * <p>
+ * 元素数量增长时增量地更新 zeta 常数，而不是重新计算。
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class ZipfianGenerator {
+    public static final double ZIPFIAN_CONSTANT = 0.99;    // 分布的倾斜程度
+
+    private final double theta;         // 倾斜程度
+    private final double alpha;         // 1 / (1 - theta)
+    private final double zeta2Theta;    // 前两个元素的 zeta 值
+    private volatile State state;       // 当前元素数量对应的常数
+
+    /**
+     * 创建一个新的 ZipfianGenerator 对象。
+     *
+     * @param itemCount 初始的元素数量
+     */
+    public ZipfianGenerator(long itemCount) {
+        this.theta = ZIPFIAN_CONSTANT;
+        this.alpha = 1.0 / (1.0 - theta);
+        this.zeta2Theta = zeta(0, 2, 0);
+        long count = Math.max(itemCount, 2);
+        this.state = newState(count, zeta(0, count, 0));
+    }
+
+    /**
+     * 从 [0, itemCount) 中生成一个排名。
+     *
+     * @param random    随机数生成器
+     * @param itemCount 当前的元素数量
+     * @return 排名
+     */
+    public long next(Random random, long itemCount) {
+        State current = state;
+        if (itemCount > current.itemCount) {
+            current = grow(itemCount);
+        }
+        double u = random.nextDouble();
+        double uz = u * current.zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, theta)) {
+            return Math.min(1, itemCount - 1);
+        }
+        long rank = (long) (current.itemCount * Math.pow(current.eta * u - current.eta + 1, alpha));
+        return Math.min(rank, itemCount - 1);
+    }
+
+    // 元素数量增长时增量更新 zeta 常数
+    private synchronized State grow(long itemCount) {
+        State current = state;
+        if (itemCount > current.itemCount) {
+            current = newState(itemCount, zeta(current.itemCount, itemCount, current.zetaN));
+            state = current;
+        }
+        return current;
+    }
+
+    private State newState(long itemCount, double zetaN) {
+        double eta = (1 - Math.pow(2.0 / itemCount, 1 - theta)) / (1 - zeta2Theta / zetaN);
+        return new State(itemCount, zetaN, eta);
+    }
+
+    // 在 [from, to) 上累加 zeta 值
+    private double zeta(long from, long to, double initial) {
+        double sum = initial;
+        for (long i = from; i < to; i++) {
+            sum += 1 / Math.pow(i + 1, theta);
+        }
+        return sum;
+    }
+
+    /**
+     * 某个元素数量对应的常数
+     */
+    private static class State {
+        private final long itemCount;
+        private final double zetaN;
+        private final double eta;
+
+        State(long itemCount, double zetaN, double eta) {
+            this.itemCount = itemCount;
+            this.zetaN = zetaN;
+            this.eta = eta;
+        }
+    }
+}
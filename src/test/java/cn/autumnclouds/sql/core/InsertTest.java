@@ -0,0 +1,96 @@
+package cn.autumnclouds.sql.core;
+
+import cn.autumnclouds.sql.SqlSession;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.assertTrue;
+import static cn.autumnclouds.sql.SqlSession.row;
+
+/**
+ * 多行 INSERT 和 INSERT ... SELECT 的测试
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class InsertTest {
+
+    public void testMultiRowInsertWithColumnSubsetAndExpressions() {
+        try (SqlSession session = new SqlSession("insert_test")) {
+            session.execute("CREATE TABLE t (id INT, name VARCHAR, amount DECIMAL)");
+            assertEquals(3, session.update("INSERT INTO t (name, id) VALUES ('a', 1), ('b', 1 + 1), ('', 3)"));
+            assertEquals(1, session.update("INSERT INTO t VALUES (4, 'd', 2.50)"));
+            assertEquals(Arrays.asList(row(1, "a", null), row(2, "b", null), row(3, "", null), row(4, "d", new BigDecimal("2.50"))),
+                    session.query("SELECT * FROM t ORDER BY id"));
+            assertTrue(session.expectFailure("INSERT INTO t (id, name) VALUES (5)").getMessage().contains("column count"),
+                    "mismatched value count should be rejected");
+            assertEquals(4, session.query("SELECT id FROM t").size());
+        }
+    }
+
+    public void testInsertSelectCoercesComputedValues() {
+        try (SqlSession session = new SqlSession("insert_test")) {
+            session.execute("CREATE TABLE src (id INT, price DOUBLE, name VARCHAR)");
+            session.execute("CREATE TABLE dst (id BIGINT, total DOUBLE, label VARCHAR)");
+            session.execute("INSERT INTO src (id, price, name) VALUES (1, 1.5, 'x'), (2, 2.5, 'y'), (3, 3.5, 'z')");
+            assertEquals(2, session.update("INSERT INTO dst (id, total, label) SELECT id * 10, price * 2, name FROM src WHERE id >= 2"));
+            assertEquals(Arrays.asList(row(20L, 5.0, "y"), row(30L, 7.0, "z")), session.query("SELECT * FROM dst ORDER BY id"));
+        }
+    }
+
+    public void testInsertSelectIntoItself() {
+        try (SqlSession session = new SqlSession("insert_test")) {
+            session.execute("CREATE TABLE t (id INT)");
+            session.execute("INSERT INTO t (id) VALUES (1), (2)");
+            for (int i = 0; i < 3; i++) {
+                session.execute("INSERT INTO t (id) SELECT id FROM t");
+            }
+            assertEquals(16, session.query("SELECT id FROM t").size());
+            assertEquals(8, session.query("SELECT id FROM t WHERE id = 2").size());
+        }
+    }
+
+    public void testSharedValueExpressionsAreEvaluatedPerRow() {
+        try (SqlSession session = new SqlSession("insert_test")) {
+            session.execute("CREATE TABLE t (id INT, twice INT, label VARCHAR)");
+            // 同一列中结构相同的表达式只编译一次，但每行按该行已赋值的列分别求值
+            assertEquals(3, session.update("INSERT INTO t (id, twice, label) VALUES (1, id * 2, 'a'), (2, id * 2, 'b'), (3, id + 100, 'c')"));
+            assertEquals(Arrays.asList(row(1, 2, "a"), row(2, 4, "b"), row(3, 103, "c")), session.query("SELECT * FROM t ORDER BY id"));
+        }
+    }
+
+    public void testInsertSelectAppendsInBoundedBatches() {
+        List<Integer> batches = new ArrayList<>();
+        InsertingResultSink sink = new InsertingResultSink(10, rows -> {
+            batches.add(rows.size());
+            return rows.size() * 2;
+        });
+        sink.begin(Arrays.asList("id"));
+        for (int i = 0; i < 25; i++) {
+            sink.accept(row(i));
+        }
+        assertEquals(Arrays.asList(10, 10), batches);
+        sink.end();
+        assertEquals(Arrays.asList(10, 10, 5), batches);
+        assertEquals(50, sink.getAffected());
+
+        try (SqlSession session = new SqlSession("insert_test")) {
+            int count = InsertingResultSink.BATCH_SIZE * 2 + 5;
+            session.execute("CREATE TABLE src (id INT)");
+            session.execute("CREATE TABLE dst (id INT PRIMARY KEY)");
+            StringBuilder values = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                values.append(i == 0 ? "" : ", ").append('(').append(i).append(')');
+            }
+            session.execute("INSERT INTO src (id) VALUES " + values);
+            assertEquals(count, session.update("INSERT INTO dst (id) SELECT id FROM src"));
+            assertEquals(count, session.query("SELECT id FROM dst").size());
+            assertEquals(count, session.update("REPLACE INTO dst (id) SELECT id + " + count + " FROM src"));
+            assertEquals(count * 2, session.query("SELECT id FROM dst").size());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package cn.autumnclouds.sql.core;
+
+import cn.autumnclouds.sql.SqlSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.assertTrue;
+import static cn.autumnclouds.sql.SqlSession.row;
+
+/**
+ * 异步执行、准入控制和会话内顺序的测试
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class SQLExecutionServiceTest {
+
+    private static Throwable failureOf(CompletableFuture<?> future) throws InterruptedException {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (TimeoutException e) {
+            throw new AssertionError("statement did not finish");
+        }
+        throw new AssertionError("expected the statement to fail");
+    }
+
+    public void testStatementsOfASessionRunInSubmissionOrder() throws Exception {
+        SQLExecutionService service = SQLExecutionService.fixedThreadPool(4, 1024, SQLExecutionService.AdmissionPolicy.BLOCK);
+        try (SqlSession session = new SqlSession("execution_order_test")) {
+            session.execute("CREATE TABLE t (id INT)");
+            SQLExecutor executor = new SQLExecutor(DatabaseContainer.getInstance(), service);
+            executor.executeAsync("USE execution_order_test").get();
+            List<CompletableFuture<ExecutionResult>> futures = new ArrayList<>();
+            List<List<Object>> expected = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(executor.executeAsync("INSERT INTO t (id) VALUES (" + i + ")"));
+                expected.add(row(i));
+            }
+            // 失败的语句不影响同一会话中之后的语句
+            CompletableFuture<ExecutionResult> failed = executor.executeAsync("INSERT INTO missing (id) VALUES (1)");
+            CompletableFuture<ExecutionResult> last = executor.executeAsync("SELECT id FROM t");
+            for (CompletableFuture<ExecutionResult> future : futures) {
+                assertEquals(1, future.get().getUpdateCount());
+            }
+            assertTrue(failureOf(failed) instanceof RuntimeException, "statement on a missing table should fail");
+            assertEquals(expected, last.get().getQueryResult().getRows());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    public void testRejectPolicyAndTimeout() throws Exception {
+        ExecutorService threads = Executors.newSingleThreadExecutor();
+        SQLExecutionService service = new SQLExecutionService(threads, 1, SQLExecutionService.AdmissionPolicy.REJECT);
+        CountDownLatch gate = new CountDownLatch(1);
+        try {
+            // 占住唯一的执行线程，使提交的语句停留在队列中
+            threads.execute(() -> {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            SQLExecutor executor = new SQLExecutor(DatabaseContainer.getInstance(), service);
+            CompletableFuture<ExecutionResult> queued = executor.executeAsync("USE execution_admission_test", 50, TimeUnit.MILLISECONDS);
+            CompletableFuture<ExecutionResult> rejected = new SQLExecutor(DatabaseContainer.getInstance(), service).executeAsync("USE execution_admission_test");
+            assertTrue(failureOf(rejected) instanceof RejectedExecutionException, "second statement should be rejected");
+            assertTrue(failureOf(queued) instanceof TimeoutException, "queued statement should time out");
+            gate.countDown();
+
+            // 超时的语句释放许可后可以继续提交
+            ExecutionResult result = null;
+            for (int attempt = 0; attempt < 100 && result == null; attempt++) {
+                try {
+                    result = executor.executeAsync("USE execution_admission_test").get();
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof RejectedExecutionException, "unexpected failure " + e.getCause());
+                    Thread.sleep(10);
+                }
+            }
+            assertTrue(result != null, "permit was never released");
+        } finally {
+            gate.countDown();
+            service.shutdown();
+        }
+    }
+
+    public void testCancellingARunningStatementStopsTheScan() throws Exception {
+        SQLExecutionService service = SQLExecutionService.fixedThreadPool(2, 16, SQLExecutionService.AdmissionPolicy.BLOCK);
+        try (SqlSession session = new SqlSession("execution_cancel_test")) {
+            session.execute("CREATE TABLE src (id INT)");
+            session.execute("CREATE TABLE dst (id INT PRIMARY KEY)");
+            StringBuilder values = new StringBuilder();
+            for (int i = 0; i < InsertingResultSink.BATCH_SIZE; i++) {
+                values.append(i == 0 ? "" : ", ").append('(').append(i).append(')');
+            }
+            session.execute("INSERT INTO src (id) VALUES " + values);
+            for (int rows = InsertingResultSink.BATCH_SIZE; rows < InsertingResultSink.BATCH_SIZE * 64; rows *= 2) {
+                session.execute("INSERT INTO src (id) SELECT id + " + rows + " FROM src");
+            }
+            int total = InsertingResultSink.BATCH_SIZE * 64;
+
+            // INSERT ... SELECT 按批写入目标表，目标表中出现第一批行时语句一定正在扫描源表
+            SQLExecutor executor = new SQLExecutor(DatabaseContainer.getInstance(), service);
+            executor.executeAsync("USE execution_cancel_test").get();
+            CompletableFuture<ExecutionResult> running = executor.executeAsync("INSERT INTO dst (id) SELECT id FROM src");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (session.query("SELECT id FROM dst WHERE id < 1").isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertTrue(!running.isDone(), "statement finished before it could be cancelled");
+            assertTrue(running.cancel(true), "running statement could not be cancelled");
+
+            // 同一会话的下一条语句在被取消的语句结束后执行，此时扫描已经停止，目标表只有已提交的批次
+            List<List<Object>> copied = executor.executeAsync("SELECT id FROM dst").get(10, TimeUnit.SECONDS).getQueryResult().getRows();
+            assertTrue(!copied.isEmpty() && copied.size() < total, "scan was not stopped: " + copied.size() + " of " + total + " rows copied");
+            assertEquals(0, copied.size() % InsertingResultSink.BATCH_SIZE);
+            assertEquals(copied.size(), session.query("SELECT id FROM dst").size());
+        } finally {
+            service.shutdown();
+        }
+    }
+}
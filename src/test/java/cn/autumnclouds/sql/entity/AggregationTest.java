@@ -0,0 +1,67 @@
+package cn.autumnclouds.sql.entity;
+
+import cn.autumnclouds.sql.SqlSession;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.assertTrue;
+
+/**
+ * 近似聚合和抽样查询的结果及其误差列的测试
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class AggregationTest {
+    private static final int ROWS = 20000;
+    private static final int GROUPS = 1000;
+
+    private static void load(SqlSession session) {
+        session.execute("CREATE TABLE t (id INT, grp INT)");
+        StringBuilder sql = new StringBuilder("INSERT INTO t (id, grp) VALUES ");
+        for (int i = 0; i < ROWS; i++) {
+            sql.append(i == 0 ? "" : ", ").append('(').append(i).append(", ").append(i % GROUPS).append(')');
+        }
+        session.execute(sql.toString());
+    }
+
+    private static double number(Object value) {
+        return ((Number) value).doubleValue();
+    }
+
+    // 估计值与真实值之差不超过误差列的两倍（误差列是约 95% 置信区间的半宽）
+    private static void assertWithinError(double expected, Object estimate, Object error) {
+        assertTrue(Math.abs(number(estimate) - expected) <= 2 * number(error),
+                "estimate " + estimate + " with error " + error + " is too far from " + expected);
+    }
+
+    public void testApproximateAggregatesReportTheirError() {
+        try (SqlSession session = new SqlSession("aggregation_test")) {
+            load(session);
+            List<Object> row = session.query("SELECT COUNT(*), APPROX_COUNT_DISTINCT(grp), APPROX_PERCENTILE(id, 0.5) FROM t").get(0);
+            assertEquals(6, row.size());
+            // 不抽样时计数是精确的
+            assertEquals((double) ROWS, number(row.get(0)));
+            assertEquals(0.0, number(row.get(3)));
+            assertTrue(number(row.get(4)) > 0 && number(row.get(5)) > 0, "sketch errors should be positive: " + row);
+            assertWithinError(GROUPS, row.get(1), row.get(4));
+            assertWithinError((ROWS - 1) / 2.0, row.get(2), row.get(5));
+
+            // 只有精确聚合时不附加误差列
+            assertEquals(Arrays.asList(Arrays.<Object>asList((long) ROWS)), session.query("SELECT COUNT(*) FROM t"));
+        }
+    }
+
+    public void testSampledCountIsScaledUp() {
+        try (SqlSession session = new SqlSession("aggregation_test")) {
+            load(session);
+            for (String sample : new String[]{"TABLESAMPLE BERNOULLI (50)", "TABLESAMPLE BERNOULLI (10)"}) {
+                List<Object> row = session.query("SELECT COUNT(*), APPROX_PERCENTILE(id, 0.9) FROM t " + sample).get(0);
+                assertWithinError(ROWS, row.get(0), row.get(2));
+                assertWithinError(ROWS * 0.9, row.get(1), row.get(3));
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package cn.autumnclouds.sql.entity;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.assertTrue;
+import static cn.autumnclouds.sql.SqlSession.row;
+
+/**
+ * 字典编码列的测试
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class DictionaryTest {
+
+    private static List<List<Object>> rows(int from, int to, int distinct) {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            rows.add(row(i, "v" + (i % distinct)));
+        }
+        return rows;
+    }
+
+    public void testOrderedDictionaryKeepsOrder() {
+        Table table = TableFixture.create("CREATE TABLE t (id INT, name VARCHAR COMMENT 'DICT ORDERED')");
+        table.insertRows(Arrays.asList("id", "name"), Arrays.asList(row(1, "m"), row(2, "c"), row(3, "x"), row(4, "a")));
+        assertEquals(Arrays.asList(row(2), row(1)), TableFixture.select(table, "SELECT id FROM t WHERE name > 'b' AND name < 'n' ORDER BY name"));
+        assertEquals(Arrays.asList(row(4)), TableFixture.select(table, "SELECT id FROM t WHERE name = 'a'"));
+    }
+
+    public void testOrderedDictionaryReencodesBlocksLazily() throws Exception {
+        Table table = TableFixture.create("CREATE TABLE t (id INT, name VARCHAR COMMENT 'DICT ORDERED')");
+        List<String> columns = Arrays.asList("id", "name");
+        int total = Table.BLOCK_SIZE * 3;
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            rows.add(row(i, "k" + (i % 50 + 100)));
+        }
+        table.insertRows(columns, rows);
+
+        Path file = Files.createTempFile("dictionary", ".snapshot");
+        try {
+            table.writeSnapshot(file);
+            Table restored = Table.readSnapshot(file);
+            // 插入到已有值之间使所有编码后移，已满的数据块不为改写编码而加载
+            for (int i = 0; i < 20; i++) {
+                restored.insertRows(columns, Collections.singletonList(row(total + i, "k1" + i + "5")));
+            }
+            assertTrue(restored.getDictionaries()[1].getVersion() > 0, "middle inserts should shift the codes");
+            List<Block> blocks = TableFixture.blocks(restored);
+            assertTrue(blocks.subList(0, blocks.size() - 1).stream().noneMatch(Block::isLoaded), "shifting codes loaded the blocks");
+
+            // 延迟加载和已加载的数据块都在读取编码时重新编码，范围条件的结果与原表一致
+            String query = "SELECT id FROM t WHERE name >= 'k110' AND name < 'k120' ORDER BY id";
+            List<List<Object>> expected = TableFixture.select(table, query);
+            for (int i = 0; i < 20; i++) {
+                String name = "k1" + i + "5";
+                if (name.compareTo("k110") >= 0 && name.compareTo("k120") < 0) {
+                    expected.add(row(total + i));
+                }
+            }
+            assertEquals(expected, TableFixture.select(restored, query));
+            assertEquals(Collections.singletonList(row(total + 10)), TableFixture.select(restored, "SELECT id FROM t WHERE name = 'k1105'"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testHighCardinalityRetiresAutoDictionary() throws Exception {
+        Table table = TableFixture.create("CREATE TABLE t (id INT, name VARCHAR)");
+        List<String> columns = Arrays.asList("id", "name");
+        // 第一个数据块只有 10 个不同值，自动启用字典编码
+        table.insertRows(columns, rows(0, Table.BLOCK_SIZE, 10));
+        assertTrue(table.getDictionaries()[1] != null, "low cardinality column should be dictionary encoded");
+
+        // 之后每行都是新值，字典超过上限后新建的数据块不再编码
+        int total = Table.BLOCK_SIZE * 4;
+        table.insertRows(columns, rows(Table.BLOCK_SIZE, total, Integer.MAX_VALUE));
+        assertTrue(table.getDictionaries()[1] == null, "dictionary should be retired after exceeding the cap");
+        List<Block> blocks = TableFixture.blocks(table);
+        assertTrue(blocks.get(0).hasCodes(1), "existing blocks keep their codes");
+        assertTrue(!blocks.get(blocks.size() - 1).hasCodes(1), "new blocks store the column plainly");
+
+        // 编码块和未编码块上的查询结果都正确
+        assertEquals(Arrays.asList(row(3), row(13)), TableFixture.select(table, "SELECT id FROM t WHERE name = 'v3' AND id < 20 ORDER BY id"));
+        assertEquals(Arrays.asList(row(total - 1)), TableFixture.select(table, "SELECT id FROM t WHERE name = 'v" + (total - 1) + "'"));
+        List<List<Object>> matched = TableFixture.select(table, "SELECT id FROM t WHERE name IN ('v7', 'v" + (total - 2) + "') ORDER BY id");
+        assertEquals(Table.BLOCK_SIZE / 10 + 1, matched.size());
+        assertEquals(row(total - 2), matched.get(matched.size() - 1));
+
+        // 快照按原值保存停用字典的列，恢复后查询结果不变
+        Path file = Files.createTempFile("dictionary", ".snapshot");
+        try {
+            table.writeSnapshot(file);
+            Table restored = Table.readSnapshot(file);
+            assertTrue(restored.getDictionaries()[1] == null, "restored column should not be dictionary encoded");
+            assertEquals(Arrays.asList(row(3), row(13)), TableFixture.select(restored, "SELECT id FROM t WHERE name = 'v3' AND id < 20 ORDER BY id"));
+            assertEquals(total, TableFixture.select(restored, "SELECT id FROM t").size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
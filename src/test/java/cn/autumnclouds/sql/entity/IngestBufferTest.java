@@ -0,0 +1,145 @@
+package cn.autumnclouds.sql.entity;
+
+import cn.autumnclouds.sql.SqlSession;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.assertTrue;
+import static cn.autumnclouds.sql.SqlSession.row;
+
+/**
+ * 摄入缓冲区的可见性、分批发布和失败处理的测试
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class IngestBufferTest {
+
+    private static List<List<Object>> rows(int from, int to) {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            rows.add(new ArrayList<>(row(i, "n" + i % 5)));
+        }
+        return rows;
+    }
+
+    private static long publishedRows(Table table) {
+        return TableFixture.blocks(table).stream().mapToLong(Block::size).sum();
+    }
+
+    // 等待后台线程发布失败并由查询抛出保存的异常；查询自己发布失败时直接抛出原始异常，继续等待
+    private static RuntimeException awaitFailure(Table table) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            try {
+                table.flushIngested();
+                throw new AssertionError("publishing a malformed row should fail");
+            } catch (IndexOutOfBoundsException e) {
+                Thread.sleep(5);
+            } catch (RuntimeException e) {
+                return e;
+            }
+        }
+        throw new AssertionError("background publish failure was not reported");
+    }
+
+    public void testInsertsAreVisibleBeforeTheInterval() throws Exception {
+        try (SqlSession session = new SqlSession("ingest_test")) {
+            session.execute("CREATE TABLE t (id INT, name VARCHAR) COMMENT 'INGEST BATCH=64 INTERVAL=600000'");
+            List<Thread> threads = new ArrayList<>();
+            List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    try (SqlSession writer = new SqlSession("ingest_writer_" + thread)) {
+                        writer.execute("USE ingest_test");
+                        for (int i = 0; i < 100; i++) {
+                            int id = thread * 1000 + i;
+                            writer.execute("INSERT INTO t (id, name) VALUES (" + id + ", 'x')");
+                            // 插入返回后，同一会话的查询立即可以读到该行
+                            assertEquals(1, writer.query("SELECT id FROM t WHERE id = " + id).size());
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(failures.isEmpty(), "failures: " + failures);
+            assertEquals(800, session.query("SELECT id FROM t").size());
+        }
+    }
+
+    public void testBackgroundPublisherPublishesIdleBuffers() throws Exception {
+        Table table = TableFixture.create("CREATE TABLE t (id INT, name VARCHAR) COMMENT 'INGEST BATCH=1000 INTERVAL=10'");
+        table.insertRows(Arrays.asList("id", "name"), rows(0, 10));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (publishedRows(table) < 10 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(10L, publishedRows(table));
+        assertTrue(table.getIngestBuffer().isEmpty(), "rows left in the buffer");
+    }
+
+    public void testDrainIsBoundedAndRequeuedRowsComeFirst() {
+        IngestBuffer buffer = new IngestBuffer(10, 1000);
+        List<List<Object>> rows = rows(0, 25);
+        buffer.append(rows);
+        assertEquals(25, buffer.size());
+
+        List<List<Object>> first = buffer.drain(10);
+        assertEquals(rows.subList(0, 10), first);
+        buffer.requeue(first.subList(6, 10));
+        assertEquals(19, buffer.size());
+        assertEquals(rows.subList(6, 16), buffer.drain(10));
+        assertEquals(rows.subList(16, 25), buffer.drain(10));
+        assertTrue(buffer.isEmpty() && buffer.drain(10).isEmpty(), "buffer should be empty");
+    }
+
+    public void testPublishFailureIsReportedAndUnpublishedRowsAreKept() throws Exception {
+        // name 列使用字典编码，列数不足的行在写入数据块之前就会失败
+        Table table = TableFixture.create("CREATE TABLE t (id INT, name VARCHAR COMMENT 'DICT') COMMENT 'INGEST BATCH=1000 INTERVAL=10'");
+        IngestBuffer buffer = table.getIngestBuffer();
+        buffer.append(rows(0, 5));
+        buffer.append(Collections.singletonList(new ArrayList<>(row(5))));
+        buffer.append(rows(6, 10));
+
+        RuntimeException failure = awaitFailure(table);
+        assertTrue(failure.getMessage().startsWith("failed to publish ingested rows to table t") && failure.getCause() != null,
+                "unexpected failure " + failure);
+        // 失败之前的行已经发布，失败的行及其后的行仍在缓冲区中等待重试
+        assertEquals(5L, publishedRows(table));
+        // 后台线程在失败后继续运行，再次失败时同样会被报告
+        awaitFailure(table);
+        assertEquals(5L, publishedRows(table));
+    }
+
+    public void testPublisherRunsOnlyWhileTheTableIsInADatabase() {
+        String ddl = "CREATE TABLE t (id INT, name VARCHAR) COMMENT 'INGEST BATCH=1000 INTERVAL=10'";
+        // 构造表对象不开始后台发布，同名的表创建失败时不会留下发布任务
+        assertTrue(!TableFixture.construct(ddl).getIngestBuffer().isScheduled(), "constructing a table scheduled a publisher");
+
+        Database database = new Database("ingest_publisher_test");
+        TableFixture.create(database, ddl);
+        Table table = database.getTable("t");
+        assertTrue(table.getIngestBuffer().isScheduled(), "created table has no publisher");
+        TableFixture.create(database, ddl.replace("CREATE TABLE", "CREATE TABLE IF NOT EXISTS"));
+        assertTrue(database.getTable("t") == table, "IF NOT EXISTS replaced the existing table");
+        database.dropTable("t");
+        assertTrue(!table.getIngestBuffer().isScheduled(), "dropped table still has a publisher");
+
+        TableFixture.create(database, ddl);
+        Table recreated = database.getTable("t");
+        assertTrue(recreated.getIngestBuffer().isScheduled(), "recreated table has no publisher");
+        database.close();
+        assertTrue(!recreated.getIngestBuffer().isScheduled(), "closed database still has a publisher");
+    }
+}
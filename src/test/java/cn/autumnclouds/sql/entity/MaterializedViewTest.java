@@ -0,0 +1,194 @@
+package cn.autumnclouds.sql.entity;
+
+import cn.autumnclouds.sql.SqlSession;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.assertTrue;
+import static cn.autumnclouds.sql.SqlSession.row;
+
+/**
+ * 物化视图的增量维护、命名冲突以及从快照恢复的测试
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class MaterializedViewTest {
+    private static final String DATABASE = "view_test";
+    private static final String VIEW = "CREATE MATERIALIZED VIEW v AS SELECT grp, COUNT(*) AS cnt, SUM(amount) AS total, "
+            + "MIN(amount) AS lo, MAX(amount) AS hi FROM t WHERE amount >= 0 GROUP BY grp";
+    private static final String VIEW_QUERY = "SELECT grp, cnt, total, lo, hi FROM v ORDER BY grp";
+
+    private static String values(int from, int to) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            sql.append(i == from ? "" : ", ").append('(').append(i).append(", 'g").append(i % 7).append("', ")
+                    .append(i % 11 == 0 ? "NULL" : String.valueOf(i % 1000 - 10)).append(')');
+        }
+        return sql.toString();
+    }
+
+    // 按视图定义在基表的行上直接计算视图的结果
+    private static List<List<Object>> expected(List<List<Object>> baseRows) {
+        Map<String, List<Object>> groups = new TreeMap<>();
+        for (List<Object> row : baseRows) {
+            Integer amount = (Integer) row.get(1);
+            if (amount == null || amount < 0) {
+                continue;
+            }
+            List<Object> group = groups.computeIfAbsent((String) row.get(0), grp -> new ArrayList<>(row(grp, 0L, 0L, amount, amount)));
+            group.set(1, (Long) group.get(1) + 1);
+            group.set(2, (Long) group.get(2) + amount);
+            group.set(3, Math.min((Integer) group.get(3), amount));
+            group.set(4, Math.max((Integer) group.get(4), amount));
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private static void assertConsistent(SqlSession session) {
+        assertEquals(expected(session.query("SELECT grp, amount FROM t")), session.query(VIEW_QUERY));
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    public void testViewFollowsInsertDeleteAndUpdate() {
+        try (SqlSession session = new SqlSession(DATABASE)) {
+            session.execute("CREATE TABLE t (id INT, grp VARCHAR, amount INT)");
+            session.execute("INSERT INTO t (id, grp, amount) VALUES " + values(0, Table.BLOCK_SIZE + 100));
+            session.execute(VIEW);
+            assertConsistent(session);
+
+            session.execute("INSERT INTO t (id, grp, amount) VALUES " + values(Table.BLOCK_SIZE + 100, Table.BLOCK_SIZE * 2));
+            session.execute("INSERT INTO t (id, grp, amount) VALUES (-1, 'new', 5), (-2, 'new', -5)");
+            assertConsistent(session);
+
+            // 删除当前最值后得到新的最值，分组被清空时视图中对应的行被删除
+            session.execute("DELETE FROM t WHERE amount >= 985");
+            session.execute("DELETE FROM t WHERE grp = 'new'");
+            assertConsistent(session);
+            assertEquals(0, session.query("SELECT grp FROM v WHERE grp = 'new'").size());
+
+            // 更新分组列和聚合参数，以及使行开始或不再满足视图条件的更新
+            session.execute("UPDATE t SET grp = 'g0' WHERE id BETWEEN 100 AND 199");
+            session.execute("UPDATE t SET amount = amount + 2000 WHERE grp = 'g3'");
+            session.execute("UPDATE t SET amount = -1 WHERE id < 50");
+            assertConsistent(session);
+
+            session.expectFailure("INSERT INTO v (grp, cnt) VALUES ('x', 1)");
+            session.expectFailure("DROP TABLE t");
+            session.execute("DROP MATERIALIZED VIEW v");
+            session.execute("DROP TABLE t");
+        }
+    }
+
+    public void testDoubleSumMatchesFullRecomputeAfterMixedDml() {
+        try (SqlSession session = new SqlSession(DATABASE)) {
+            session.execute("CREATE TABLE d (id INT, grp VARCHAR, x DOUBLE)");
+            session.execute("CREATE MATERIALIZED VIEW dv AS SELECT grp, SUM(x) AS total FROM d GROUP BY grp");
+            // 用 double 加减时 1e16 + 1 舍入为 1e16，再撤回 1e16 会得到 0 而不是 1
+            session.execute("INSERT INTO d (id, grp, x) VALUES (0, 'big', 1e16), (1, 'big', 1)");
+            session.execute("DELETE FROM d WHERE id = 0");
+            assertEquals(Collections.singletonList(row("big", 1.0)), session.query("SELECT grp, total FROM dv"));
+
+            for (int round = 0; round < 50; round++) {
+                StringBuilder values = new StringBuilder();
+                for (int i = 0; i < 20; i++) {
+                    int id = round * 20 + i + 2;
+                    values.append(i == 0 ? "" : ", ").append('(').append(id).append(", 'g").append(id % 3).append("', ")
+                            .append(id % 2 == 0 ? "0.1" : id % 5 == 0 ? "1e15" : String.valueOf(id * 0.37)).append(')');
+                }
+                session.execute("INSERT INTO d (id, grp, x) VALUES " + values);
+                session.execute("UPDATE d SET x = x * 1.1 + 0.3 WHERE id BETWEEN " + (round * 20 - 15) + " AND " + (round * 20 + 4));
+                session.execute("UPDATE d SET grp = 'g" + round % 3 + "' WHERE grp = 'g" + (round + 1) % 3 + "' AND x < 1");
+                session.execute("DELETE FROM d WHERE id BETWEEN " + (round * 20 - 7) + " AND " + (round * 20 + 2));
+            }
+            // 增量维护的结果与在基表现有数据上重新创建的视图完全相同，也与精确求和后舍入的结果相同
+            session.execute("CREATE MATERIALIZED VIEW dv2 AS SELECT grp, SUM(x) AS total FROM d GROUP BY grp");
+            List<List<Object>> view = session.query("SELECT grp, total FROM dv ORDER BY grp");
+            assertEquals(session.query("SELECT grp, total FROM dv2 ORDER BY grp"), view);
+            Map<String, BigDecimal> sums = new TreeMap<>();
+            for (List<Object> row : session.query("SELECT grp, x FROM d")) {
+                sums.merge((String) row.get(0), new BigDecimal((Double) row.get(1)), BigDecimal::add);
+            }
+            List<List<Object>> expected = new ArrayList<>();
+            sums.forEach((grp, sum) -> expected.add(row(grp, sum.doubleValue())));
+            assertEquals(expected, view);
+            session.execute("DROP MATERIALIZED VIEW dv2");
+            session.execute("DROP MATERIALIZED VIEW dv");
+            session.execute("DROP TABLE d");
+        }
+    }
+
+    public void testNamesMustBeUnique() {
+        try (SqlSession session = new SqlSession(DATABASE)) {
+            session.execute("CREATE TABLE t (id INT, grp VARCHAR, amount INT)");
+            session.execute("INSERT INTO t (id, grp, amount) VALUES (1, 'a', 1)");
+            assertEquals("Table 't' already exists", session.expectFailure("CREATE TABLE t (id INT)").getMessage());
+            // IF NOT EXISTS 时保留已有的表及其数据
+            session.execute("CREATE TABLE IF NOT EXISTS t (id INT)");
+            assertEquals(Collections.singletonList(row(1, "a", 1)), session.query("SELECT id, grp, amount FROM t"));
+
+            session.execute(VIEW);
+            assertEquals("Table 'v' already exists", session.expectFailure(VIEW).getMessage());
+            assertEquals("Table 'v' already exists", session.expectFailure("CREATE TABLE v (id INT)").getMessage());
+            assertEquals("Table 't' already exists", session.expectFailure(VIEW.replace(" v ", " t ")).getMessage());
+            session.execute("DROP MATERIALIZED VIEW v");
+            // 创建失败的视图没有留在基表上
+            session.execute("DROP TABLE t");
+        }
+    }
+
+    public void testRestoredViewIsRebuiltOnFirstWrite() throws Exception {
+        Path directory = Files.createTempDirectory("view");
+        try (SqlSession session = new SqlSession(DATABASE)) {
+            session.execute("CREATE TABLE t (id INT, grp VARCHAR, amount INT)");
+            session.execute("INSERT INTO t (id, grp, amount) VALUES " + values(0, Table.BLOCK_SIZE * 2 + 10));
+            session.execute(VIEW);
+            List<List<Object>> snapshot = session.query(VIEW_QUERY);
+            session.execute("BACKUP DATABASE " + DATABASE + " TO '" + directory + "'");
+
+            // 恢复时不扫描基表，查询视图只读取视图自己的快照
+            Database database = Database.restore(DATABASE, directory);
+            Table base = database.getTable("t");
+            Table view = database.getTable("v");
+            assertEquals(snapshot, TableFixture.select(view, VIEW_QUERY));
+            assertTrue(TableFixture.blocks(base).stream().noneMatch(Block::isLoaded), "restore scanned the base table");
+
+            // 基表第一次写入时重新计算视图，之后增量维护
+            database.insertRows("t", Arrays.asList("id", "grp", "amount"), Collections.singletonList(row(-1, "g1", 999)),
+                    Collections.emptyList());
+            assertEquals(expected(TableFixture.select(base, "SELECT grp, amount FROM t")), TableFixture.select(view, VIEW_QUERY));
+
+            // 通过SQL恢复后依次删除、更新和插入
+            session.execute("RESTORE DATABASE " + DATABASE + " FROM '" + directory + "'");
+            assertEquals(snapshot, session.query(VIEW_QUERY));
+            session.execute("DELETE FROM t WHERE grp = 'g2'");
+            assertConsistent(session);
+            session.execute("UPDATE t SET amount = amount + 1 WHERE grp = 'g4'");
+            assertConsistent(session);
+            session.execute("INSERT INTO t (id, grp, amount) VALUES (-1, 'g2', 7)");
+            assertConsistent(session);
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+}
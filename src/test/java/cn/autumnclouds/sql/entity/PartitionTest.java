@@ -0,0 +1,102 @@
+package cn.autumnclouds.sql.entity;
+
+import cn.autumnclouds.sql.SqlSession;
+import cn.autumnclouds.sql.core.ExecutionResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.row;
+
+/**
+ * RANGE 和 HASH 分区的路由、裁剪以及增删分区的测试
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class PartitionTest {
+
+    private static String values(int from, int to) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            sql.append(i == from ? "" : ", ").append('(').append(i).append(", 'n").append(i).append("')");
+        }
+        return sql.toString();
+    }
+
+    private static List<List<Object>> ids(int from, int to) {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            rows.add(row(i));
+        }
+        return rows;
+    }
+
+    public void testRangePartitionPruning() {
+        try (SqlSession session = new SqlSession("partition_test")) {
+            session.execute("CREATE TABLE t (id INT, name VARCHAR) PARTITION BY RANGE (id) ("
+                    + "PARTITION p0 VALUES LESS THAN (100), PARTITION p1 VALUES LESS THAN (200), PARTITION p2 VALUES LESS THAN MAXVALUE)");
+            session.execute("INSERT INTO t (id, name) VALUES " + values(0, 300));
+
+            ExecutionResult result = session.execute("SELECT id FROM t WHERE id >= 120 AND id < 130 ORDER BY id");
+            assertEquals(ids(120, 130), result.getQueryResult().getRows());
+            assertEquals(1L, result.getStatistics().getScannedPartitions());
+            assertEquals(2L, result.getStatistics().getSkippedPartitions());
+
+            assertEquals(ids(95, 105), session.query("SELECT id FROM t WHERE id BETWEEN 95 AND 104 ORDER BY id"));
+            assertEquals(Arrays.asList(row(5), row(250)), session.query("SELECT id FROM t WHERE id IN (5, 250, 1000) ORDER BY id"));
+            assertEquals(300, session.query("SELECT id FROM t WHERE name > 'm'").size());
+
+            // 更新分区列时行移动到新的分区
+            session.update("UPDATE t SET id = id + 1000 WHERE id = 7");
+            assertEquals(Arrays.asList(row(1007, "n7")), session.query("SELECT id, name FROM t WHERE id > 999"));
+            assertEquals(0, session.query("SELECT id FROM t WHERE id = 7").size());
+        }
+    }
+
+    public void testAddAndDropPartitions() {
+        try (SqlSession session = new SqlSession("partition_test")) {
+            session.execute("CREATE TABLE t (id INT, name VARCHAR) PARTITION BY RANGE (id) ("
+                    + "PARTITION p0 VALUES LESS THAN (100), PARTITION p1 VALUES LESS THAN (200))");
+            session.execute("INSERT INTO t (id, name) VALUES " + values(0, 200));
+            // 没有分区可以容纳的行被拒绝
+            session.expectFailure("INSERT INTO t (id, name) VALUES (250, 'x')");
+
+            session.execute("ALTER TABLE t ADD PARTITION (PARTITION p2 VALUES LESS THAN (300))");
+            session.execute("INSERT INTO t (id, name) VALUES " + values(200, 300));
+            assertEquals(100, session.update("ALTER TABLE t DROP PARTITION p0"));
+            assertEquals(ids(100, 300), session.query("SELECT id FROM t ORDER BY id"));
+            assertEquals(0, session.query("SELECT id FROM t WHERE id < 100").size());
+        }
+    }
+
+    public void testHashPartitionPruning() {
+        try (SqlSession session = new SqlSession("partition_test")) {
+            session.execute("CREATE TABLE t (id INT, name VARCHAR) PARTITION BY HASH (id) PARTITIONS 4");
+            session.execute("INSERT INTO t (id, name) VALUES " + values(0, 400));
+
+            ExecutionResult result = session.execute("SELECT name FROM t WHERE id = 42");
+            assertEquals(Arrays.asList(row("n42")), result.getQueryResult().getRows());
+            assertEquals(1L, result.getStatistics().getScannedPartitions());
+            assertEquals(3L, result.getStatistics().getSkippedPartitions());
+            assertEquals(ids(10, 20), session.query("SELECT id FROM t WHERE id >= 10 AND id < 20 ORDER BY id"));
+        }
+    }
+
+    public void testHashPartitionsIgnoreDecimalScale() {
+        try (SqlSession session = new SqlSession("partition_test")) {
+            session.execute("CREATE TABLE t (d DECIMAL, name VARCHAR) PARTITION BY HASH (d) PARTITIONS 8");
+            session.execute("INSERT INTO t (d, name) VALUES (1.0, 'a'), (2.50, 'b'), (0.00, 'z'), (100, 'c')");
+
+            // 路由和裁剪使用同一个规范化后的哈希码，精度不同的相等值落在同一个分区
+            ExecutionResult result = session.execute("SELECT name FROM t WHERE d = 1.00");
+            assertEquals(Arrays.asList(row("a")), result.getQueryResult().getRows());
+            assertEquals(1L, result.getStatistics().getScannedPartitions());
+            assertEquals(Arrays.asList(row("a"), row("b")), session.query("SELECT name FROM t WHERE d IN (1.00, 2.5) ORDER BY name"));
+            assertEquals(Arrays.asList(row("z")), session.query("SELECT name FROM t WHERE d = 0"));
+            assertEquals(Arrays.asList(row("c")), session.query("SELECT name FROM t WHERE d = 1E+2"));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package cn.autumnclouds.sql.entity;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.statement.SQLCreateTableStatement;
+import com.alibaba.druid.sql.ast.statement.SQLSelectQueryBlock;
+import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
+import com.alibaba.druid.sql.ast.statement.SQLTableConstraint;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 直接创建和查询表对象的测试辅助方法，用于检查表的内部状态
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+final class TableFixture {
+
+    private TableFixture() {
+    }
+
+    /**
+     * 按 CREATE TABLE 语句创建表，与加入数据库的表一样开始后台发布摄入缓冲区
+     *
+     * @param ddl CREATE TABLE 语句
+     * @return 表
+     */
+    static Table create(String ddl) {
+        Table table = construct(ddl);
+        table.startIngestPublisher();
+        return table;
+    }
+
+    /**
+     * 按 CREATE TABLE 语句构造表对象，不开始后台发布
+     *
+     * @param ddl CREATE TABLE 语句
+     * @return 表
+     */
+    static Table construct(String ddl) {
+        SQLCreateTableStatement statement = (SQLCreateTableStatement) SQLUtils.parseSingleStatement(ddl, DbType.mysql);
+        return new Table(statement.getTableSource().getTableName(), statement.getColumnDefinitions(), constraints(statement),
+                statement.getPartitioning(), statement.getComment());
+    }
+
+    /**
+     * 按 CREATE TABLE 语句在数据库中创建表
+     *
+     * @param database 数据库
+     * @param ddl      CREATE TABLE 语句
+     */
+    static void create(Database database, String ddl) {
+        SQLCreateTableStatement statement = (SQLCreateTableStatement) SQLUtils.parseSingleStatement(ddl, DbType.mysql);
+        database.creatTable(statement.getTableSource().getTableName(), statement.getColumnDefinitions(), constraints(statement),
+                statement.getPartitioning(), statement.getComment(), statement.isIfNotExists());
+    }
+
+    private static List<SQLTableConstraint> constraints(SQLCreateTableStatement statement) {
+        return statement.getTableElementList().stream()
+                .filter(element -> element instanceof SQLTableConstraint)
+                .map(element -> (SQLTableConstraint) element).collect(Collectors.toList());
+    }
+
+    /**
+     * 在表上执行单表查询，忽略 FROM 子句中的表名
+     *
+     * @param table 表
+     * @param sql   SELECT 语句
+     * @return 结果行
+     */
+    static List<List<Object>> select(Table table, String sql) {
+        SQLSelectStatement statement = (SQLSelectStatement) SQLUtils.parseSingleStatement(sql, DbType.mysql);
+        SQLSelectQueryBlock queryBlock = statement.getSelect().getQueryBlock();
+        return table.selectRow(queryBlock.getSelectList(), queryBlock.getWhere(), queryBlock.getOrderBy()).getRows();
+    }
+
+    /**
+     * 获取表的所有数据块
+     *
+     * @param table 表
+     * @return 数据块
+     */
+    static List<Block> blocks(Table table) {
+        return table.getPartitionScheme().getPartitions().stream()
+                .flatMap(partition -> partition.getBlocks().stream()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,166 @@
+package cn.autumnclouds.sql.entity;
+
+import cn.autumnclouds.sql.SqlSession;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.assertTrue;
+import static cn.autumnclouds.sql.SqlSession.row;
+
+/**
+ * 二进制快照的备份和恢复测试
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class TableSnapshotTest {
+    private static final String DATABASE = "snapshot_test";
+    private static final int ROWS = Table.BLOCK_SIZE * 2 + 17;
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static List<String> fileNames(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static List<List<Object>> all(SqlSession session) {
+        return session.query("SELECT * FROM t ORDER BY id");
+    }
+
+    public void testAllValueTypesRoundTrip() throws Exception {
+        Path directory = Files.createTempDirectory("snapshot");
+        try (SqlSession session = new SqlSession(DATABASE)) {
+            session.execute("CREATE TABLE t (id INT, small SMALLINT, tiny TINYINT, big BIGINT, ratio DOUBLE, weight FLOAT, "
+                    + "amount DECIMAL, flag BOOLEAN, day DATE, ts TIMESTAMP, name VARCHAR, tag VARCHAR COMMENT 'DICT ORDERED')");
+            StringBuilder sql = new StringBuilder("INSERT INTO t (id, small, tiny, big, ratio, weight, amount, flag, day, ts, name, tag) VALUES ");
+            for (int i = 0; i < ROWS; i++) {
+                sql.append(i == 0 ? "" : ", ");
+                if (i % 50 == 0) {
+                    sql.append('(').append(i).append(", NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL)");
+                    continue;
+                }
+                sql.append('(').append(i).append(", ").append(i % 30000).append(", ").append(i % 100 - 50).append(", ")
+                        .append(i * 1000000007L).append(", ").append(i / 7.0).append(", ").append(i / 4.0).append(", ")
+                        .append(i).append(".").append(i % 100).append(", ").append(i % 2 == 0).append(", '2023-05-")
+                        .append(10 + i % 19).append("', ").append(1685332800000L + i * 1000L).append(", 'name")
+                        .append(i).append(" 名称', 'tag").append(i % 13).append("')");
+            }
+            session.execute(sql.toString());
+            List<List<Object>> expected = all(session);
+            assertEquals(ROWS, expected.size());
+
+            session.execute("BACKUP DATABASE " + DATABASE + " TO '" + directory + "'");
+            session.execute("RESTORE DATABASE " + DATABASE + " FROM '" + directory + "'");
+            assertEquals(expected, all(session));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    public void testBackupToTheDirectoryItWasRestoredFrom() throws Exception {
+        Path directory = Files.createTempDirectory("snapshot");
+        try (SqlSession session = new SqlSession(DATABASE)) {
+            session.execute("CREATE TABLE t (id INT, name VARCHAR)");
+            StringBuilder sql = new StringBuilder("INSERT INTO t (id, name) VALUES ");
+            for (int i = 0; i < ROWS; i++) {
+                sql.append(i == 0 ? "" : ", ").append('(').append(i).append(", 'n").append(i).append("')");
+            }
+            session.execute(sql.toString());
+            List<List<Object>> expected = all(session);
+            session.execute("BACKUP DATABASE " + DATABASE + " TO '" + directory + "'");
+
+            // 恢复后数据块尚未加载，仍映射着快照文件，再备份到同一目录会替换这些文件
+            session.execute("RESTORE DATABASE " + DATABASE + " FROM '" + directory + "'");
+            session.execute("BACKUP DATABASE " + DATABASE + " TO '" + directory + "'");
+            assertEquals(expected, all(session));
+            session.execute("RESTORE DATABASE " + DATABASE + " FROM '" + directory + "'");
+            assertEquals(expected, all(session));
+
+            // 目录中只有快照文件和清单，没有遗留的临时文件
+            assertEquals(Arrays.asList("MANIFEST", "t.tbl"), fileNames(directory));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    public void testRestoreOnlyReadsTablesOfTheLatestBackup() throws Exception {
+        Path directory = Files.createTempDirectory("snapshot");
+        try (SqlSession session = new SqlSession(DATABASE)) {
+            session.execute("CREATE TABLE t (id INT)");
+            session.execute("CREATE TABLE old (id INT)");
+            session.execute("INSERT INTO t (id) VALUES (1)");
+            session.execute("BACKUP DATABASE " + DATABASE + " TO '" + directory + "'");
+            assertEquals(Arrays.asList("MANIFEST", "old.tbl", "t.tbl"), fileNames(directory));
+
+            // 删除的表的快照文件在下一次备份后被移除，不会在恢复时重新出现
+            session.execute("DROP TABLE old");
+            session.execute("BACKUP DATABASE " + DATABASE + " TO '" + directory + "'");
+            assertEquals(Arrays.asList("MANIFEST", "t.tbl"), fileNames(directory));
+            // 不在清单中的快照文件不会被恢复
+            Files.copy(directory.resolve("t.tbl"), directory.resolve("copy.tbl"));
+            session.execute("RESTORE DATABASE " + DATABASE + " FROM '" + directory + "'");
+            session.expectFailure("SELECT id FROM old");
+            session.expectFailure("SELECT id FROM copy");
+            assertEquals(Collections.singletonList(row(1)), session.query("SELECT id FROM t"));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    public void testViewIsBackedUpAtTheSameMomentAsItsBase() throws Exception {
+        Path directory = Files.createTempDirectory("snapshot");
+        try (SqlSession session = new SqlSession(DATABASE)) {
+            session.execute("CREATE TABLE t (id INT, grp INT)");
+            session.execute("INSERT INTO t (id, grp) VALUES (1, 0), (2, 1), (3, 1)");
+            session.execute("CREATE MATERIALIZED VIEW v AS SELECT grp, COUNT(*) AS cnt FROM t GROUP BY grp");
+            session.execute("BACKUP DATABASE " + DATABASE + " TO '" + directory + "'");
+            Database database = Database.restore(DATABASE, directory);
+            Table base = database.getTable("t");
+            Table view = database.getTable("v");
+
+            // 写入视图的快照时基表的读锁仍被持有，基表的写入要等到视图写完之后
+            Thread writer = new Thread(() -> database.insertRows("t", Arrays.asList("id", "grp"),
+                    Collections.singletonList(row(4, 0)), Collections.emptyList()));
+            Path copy = directory.resolve("copy");
+            Files.createDirectories(copy);
+            List<Table> written = base.writeSnapshots(table -> {
+                if (table == view) {
+                    writer.start();
+                    try {
+                        writer.join(200);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    assertTrue(writer.isAlive(), "the base table was written while its view was being backed up");
+                }
+                return copy.resolve(table.getTableName() + ".tbl");
+            });
+            writer.join();
+            assertEquals(Arrays.asList(base, view), written);
+
+            List<List<Object>> counts = TableFixture.select(Table.readSnapshot(copy.resolve("v.tbl")), "SELECT grp, cnt FROM v ORDER BY grp");
+            assertEquals(Arrays.asList(row(0, 1L), row(1, 2L)), counts);
+            assertEquals(3, TableFixture.select(Table.readSnapshot(copy.resolve("t.tbl")), "SELECT id FROM t").size());
+            assertEquals(4, TableFixture.select(base, "SELECT id FROM t").size());
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package cn.autumnclouds.sql.entity;
+
+import cn.autumnclouds.sql.SqlSession;
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLPartitionByRange;
+import com.alibaba.druid.sql.ast.statement.SQLCreateTableStatement;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.assertTrue;
+import static cn.autumnclouds.sql.SqlSession.row;
+
+/**
+ * 主键和唯一键的冲突检查、ON DUPLICATE KEY UPDATE 和 REPLACE 的测试
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class UniqueKeyTest {
+
+    public void testDuplicateKeysAreRejected() {
+        try (SqlSession session = new SqlSession("unique_key_test")) {
+            session.execute("CREATE TABLE t (id INT PRIMARY KEY, code VARCHAR, UNIQUE KEY uk_code (code))");
+            session.execute("INSERT INTO t (id, code) VALUES (1, 'a'), (2, 'b'), (3, NULL), (4, NULL)");
+
+            assertEquals("Duplicate entry '1' for key 'PRIMARY'", session.expectFailure("INSERT INTO t (id, code) VALUES (1, 'x')").getMessage());
+            assertEquals("Duplicate entry 'b' for key 'uk_code'", session.expectFailure("INSERT INTO t (id, code) VALUES (5, 'b')").getMessage());
+            // 同一条语句中的行之间也不能冲突，失败的语句不插入任何行
+            session.expectFailure("INSERT INTO t (id, code) VALUES (5, 'e'), (5, 'f')");
+            session.expectFailure("INSERT INTO t (id, code) VALUES (NULL, 'n')");
+            session.expectFailure("UPDATE t SET code = 'a' WHERE id = 2");
+            assertEquals(4, session.query("SELECT id FROM t").size());
+
+            // 删除后键值可以重新使用，更新后的键值只与更新后的其他行比较
+            session.execute("DELETE FROM t WHERE id = 3");
+            assertEquals(2, session.update("UPDATE t SET id = id + 1 WHERE id BETWEEN 1 AND 2"));
+            session.execute("INSERT INTO t (id, code) VALUES (1, 'c')");
+            assertEquals(Arrays.asList(row(1, "c"), row(2, "a"), row(3, "b"), row(4, null)), session.query("SELECT id, code FROM t ORDER BY id"));
+        }
+    }
+
+    public void testDecimalKeysIgnoreScale() {
+        try (SqlSession session = new SqlSession("unique_key_test")) {
+            session.execute("CREATE TABLE t (amount DECIMAL, part INT, name VARCHAR, PRIMARY KEY (amount, part), UNIQUE KEY uk_amount (amount))");
+            session.execute("INSERT INTO t (amount, part, name) VALUES (1.50, 1, 'a'), (0, 1, 'z')");
+            assertEquals("Duplicate entry '1.5' for key 'uk_amount'",
+                    session.expectFailure("INSERT INTO t (amount, part, name) VALUES (1.5, 2, 'b')").getMessage());
+            session.expectFailure("INSERT INTO t (amount, part, name) VALUES (0.000, 2, 'b')");
+
+            session.execute("CREATE TABLE c (amount DECIMAL, part INT, name VARCHAR, PRIMARY KEY (amount, part))");
+            session.execute("INSERT INTO c (amount, part, name) VALUES (10, 1, 'a')");
+            assertEquals("Duplicate entry '10-1' for key 'PRIMARY'",
+                    session.expectFailure("INSERT INTO c (amount, part, name) VALUES (10.00, 1, 'b')").getMessage());
+            assertEquals(1, session.update("INSERT INTO c (amount, part, name) VALUES (10.00, 2, 'b')"));
+            assertEquals(2, session.update("INSERT INTO c (amount, part, name) VALUES (10.0, 1, 'c') ON DUPLICATE KEY UPDATE name = 'updated'"));
+            assertEquals(Arrays.asList(row(new BigDecimal("10"), 1, "updated"), row(new BigDecimal("10.00"), 2, "b")),
+                    session.query("SELECT amount, part, name FROM c ORDER BY part"));
+        }
+    }
+
+    public void testInsertOnDuplicateKeyUpdate() {
+        try (SqlSession session = new SqlSession("unique_key_test")) {
+            session.execute("CREATE TABLE t (id INT PRIMARY KEY, hits INT, name VARCHAR)");
+            session.execute("INSERT INTO t (id, hits, name) VALUES (1, 1, 'a'), (2, 1, 'b')");
+
+            // 插入的行计 1，更新的行计 2，值未改变的行计 0
+            assertEquals(1 + 2, session.update("INSERT INTO t (id, hits, name) VALUES (3, 1, 'c'), (1, 1, 'x') "
+                    + "ON DUPLICATE KEY UPDATE hits = hits + 1"));
+            assertEquals(0, session.update("INSERT INTO t (id, hits, name) VALUES (2, 5, 'y') ON DUPLICATE KEY UPDATE name = 'b'"));
+            // 同一条语句中后面的行可以更新前面插入的行
+            assertEquals(1 + 2, session.update("INSERT INTO t (id, hits, name) VALUES (4, 1, 'd'), (4, 1, 'd') "
+                    + "ON DUPLICATE KEY UPDATE hits = hits + 10"));
+            assertEquals(Arrays.asList(row(1, 2, "a"), row(2, 1, "b"), row(3, 1, "c"), row(4, 11, "d")),
+                    session.query("SELECT id, hits, name FROM t ORDER BY id"));
+        }
+    }
+
+    public void testReplaceDeletesEveryConflictingRow() {
+        try (SqlSession session = new SqlSession("unique_key_test")) {
+            session.execute("CREATE TABLE t (id INT PRIMARY KEY, code VARCHAR, name VARCHAR, UNIQUE KEY uk_code (code))");
+            session.execute("INSERT INTO t (id, code, name) VALUES (1, 'a', 'x'), (2, 'b', 'y')");
+
+            assertEquals(1, session.update("REPLACE INTO t (id, code, name) VALUES (3, 'c', 'z')"));
+            assertEquals(2, session.update("REPLACE INTO t (id, code, name) VALUES (3, 'd', 'w')"));
+            // 新行同时与两行冲突，两行都被删除
+            assertEquals(3, session.update("REPLACE INTO t (id, code, name) VALUES (1, 'b', 'v')"));
+            assertEquals(Arrays.asList(row(1, "b", "v"), row(3, "d", "w")), session.query("SELECT id, code, name FROM t ORDER BY id"));
+        }
+    }
+
+    public void testDropPartitionRemovesKeys() {
+        Table table = TableFixture.create("CREATE TABLE t (id INT, name VARCHAR, PRIMARY KEY (id), UNIQUE KEY uk_name (name)) "
+                + "PARTITION BY RANGE (id) (PARTITION p0 VALUES LESS THAN (100), PARTITION p1 VALUES LESS THAN (200))");
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rows.add(row(i, "n" + i));
+        }
+        table.insertRows(Arrays.asList("id", "name"), rows);
+
+        assertEquals(100L, table.dropPartitions(Collections.singletonList("p0")));
+        List<Block> blocks = TableFixture.blocks(table);
+        for (UniqueKey uniqueKey : table.getUniqueKeys()) {
+            assertEquals(100, uniqueKey.getEntries().size());
+            assertTrue(blocks.containsAll(uniqueKey.getEntries().values()), "key " + uniqueKey.getName() + " points to a dropped block");
+        }
+        // 被删除分区中的键值可以在其他行中重新使用
+        table.addPartitions(((SQLPartitionByRange) ((SQLCreateTableStatement) SQLUtils.parseSingleStatement(
+                "CREATE TABLE x (id INT) PARTITION BY RANGE (id) (PARTITION p2 VALUES LESS THAN (300))", DbType.mysql))
+                .getPartitioning()).getPartitions());
+        table.insertRows(Arrays.asList("id", "name"), Collections.singletonList(row(250, "n5")));
+        assertEquals(Collections.singletonList(row(250, "n5")), TableFixture.select(table, "SELECT id, name FROM t WHERE name = 'n5'"));
+    }
+}
@@ -0,0 +1,91 @@
+package cn.autumnclouds.sql.entity;
+
+import cn.autumnclouds.sql.SqlSession;
+import cn.autumnclouds.sql.core.ExecutionResult;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.assertTrue;
+import static cn.autumnclouds.sql.SqlSession.row;
+
+/**
+ * 区域映射跳过数据块后的查询结果必须与全表扫描一致
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class ZoneMapTest {
+    private static final int ROWS = Table.BLOCK_SIZE * 5 + 123;
+
+    private SqlSession open(List<List<Object>> expected) {
+        SqlSession session = new SqlSession("zone_map_test");
+        session.execute("CREATE TABLE t (id BIGINT, v INT, name VARCHAR)");
+        StringBuilder sql = new StringBuilder("INSERT INTO t (id, v, name) VALUES ");
+        for (int i = 0; i < ROWS; i++) {
+            sql.append(i == 0 ? "" : ", ").append('(').append(i).append(", ").append(i % 7).append(", 'n").append(i % 11).append("')");
+            expected.add(row((long) i, i % 7, "n" + (i % 11)));
+        }
+        session.execute(sql.toString());
+        return session;
+    }
+
+    // 比较查询结果与在全部数据上直接过滤的结果
+    private static void assertSameRows(SqlSession session, List<List<Object>> data, String where, Predicate<List<Object>> filter) {
+        Set<List<Object>> expected = new HashSet<>();
+        for (List<Object> row : data) {
+            if (filter.test(row)) {
+                expected.add(row);
+            }
+        }
+        List<List<Object>> actual = session.query("SELECT id, v, name FROM t WHERE " + where);
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, new HashSet<>(actual));
+    }
+
+    private static long id(List<Object> row) {
+        return (Long) row.get(0);
+    }
+
+    public void testPrunedResultsEqualFullScan() {
+        List<List<Object>> data = new ArrayList<>();
+        try (SqlSession session = open(data)) {
+            assertSameRows(session, data, "id < 5000", row -> id(row) < 5000);
+            assertSameRows(session, data, "id BETWEEN 8000 AND 8100", row -> id(row) >= 8000 && id(row) <= 8100);
+            assertSameRows(session, data, "id IN (3, 4096, 20000, 99999)", row -> id(row) == 3 || id(row) == 4096 || id(row) == 20000);
+            assertSameRows(session, data, "v = 3 AND id >= 12000", row -> (Integer) row.get(1) == 3 && id(row) >= 12000);
+            assertSameRows(session, data, "name = 'n5' AND id <= 300", row -> "n5".equals(row.get(2)) && id(row) <= 300);
+            assertSameRows(session, data, "id > " + ROWS, row -> false);
+
+            ExecutionResult result = session.execute("SELECT id FROM t WHERE id BETWEEN 8000 AND 8100");
+            assertEquals(101, result.getQueryResult().getRows().size());
+            QueryStatistics statistics = result.getStatistics();
+            assertTrue(statistics.getSkippedBlocks() >= 4, "expected skipped blocks: " + statistics);
+            assertEquals(1L, statistics.getScannedBlocks());
+        }
+    }
+
+    public void testZoneMapsWidenOnUpdate() {
+        List<List<Object>> data = new ArrayList<>();
+        try (SqlSession session = open(data)) {
+            session.update("UPDATE t SET id = id + 1000000 WHERE id < 10");
+            session.update("DELETE FROM t WHERE id >= 4096 AND id < 8192");
+            List<List<Object>> updated = new ArrayList<>();
+            for (List<Object> row : data) {
+                long id = id(row);
+                if (id < 10) {
+                    updated.add(row(id + 1000000, row.get(1), row.get(2)));
+                } else if (id < 4096 || id >= 8192) {
+                    updated.add(row);
+                }
+            }
+            assertSameRows(session, updated, "id > 999999", row -> id(row) > 999999);
+            assertSameRows(session, updated, "id < 20", row -> id(row) < 20);
+            assertSameRows(session, updated, "id BETWEEN 4000 AND 9000", row -> id(row) >= 4000 && id(row) <= 9000);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package cn.autumnclouds.sql.expression;
+
+import cn.autumnclouds.sql.SqlSession;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.assertTrue;
+import static cn.autumnclouds.sql.SqlSession.row;
+
+/**
+ * 编译后的查询项、排序项和 UPDATE SET 表达式的测试
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class ExpressionCompilerTest {
+
+    private SqlSession open() {
+        SqlSession session = new SqlSession("expression_compiler_test");
+        session.execute("CREATE TABLE t (id INT, name VARCHAR, price DOUBLE, level TINYINT)");
+        session.execute("INSERT INTO t (id, name, price, level) VALUES (1, 'b', 2.5, 1), (2, 'a', 1.0, 2), (3, 'c', 4.0, 3)");
+        return session;
+    }
+
+    public void testSelectListExpressions() {
+        try (SqlSession session = open()) {
+            List<List<Object>> rows = session.query("SELECT id * 10 + 1 AS v, name FROM t WHERE id = 2");
+            assertEquals(Arrays.asList(row(21L, "a")), rows);
+        }
+    }
+
+    public void testOrderBySelectAlias() {
+        try (SqlSession session = open()) {
+            List<List<Object>> rows = session.query("SELECT id, price * -1 AS neg FROM t ORDER BY neg");
+            assertEquals(Arrays.asList(row(3, -4.0), row(1, -2.5), row(2, -1.0)), rows);
+        }
+    }
+
+    public void testOrderByComputedItemAndPosition() {
+        try (SqlSession session = open()) {
+            assertEquals(Arrays.asList(row(3), row(2), row(1)), session.query("SELECT id FROM t ORDER BY id * -1"));
+            assertEquals(Arrays.asList(row("c", 3), row("b", 1), row("a", 2)), session.query("SELECT name, id FROM t ORDER BY 1 DESC"));
+            assertTrue(session.expectFailure("SELECT name FROM t ORDER BY 2").getMessage().contains("order clause"), "position out of range");
+        }
+    }
+
+    public void testOrderByColumnNotSelectedDefaultsToAscending() {
+        try (SqlSession session = open()) {
+            session.execute("INSERT INTO t (id, name) VALUES (4, 'd')");
+            List<List<Object>> rows = session.query("SELECT name FROM t ORDER BY price");
+            assertEquals(Arrays.asList(row("d"), row("a"), row("b"), row("c")), rows);
+        }
+    }
+
+    public void testUpdateOverflowIsRejected() {
+        try (SqlSession session = open()) {
+            session.update("UPDATE t SET level = level * 40 WHERE id = 3");
+            assertEquals(Arrays.asList(row((byte) 120)), session.query("SELECT level FROM t WHERE id = 3"));
+            RuntimeException e = session.expectFailure("UPDATE t SET level = level * 100 WHERE id = 3");
+            assertTrue(e instanceof ArithmeticException, "expected ArithmeticException but was " + e);
+            e = session.expectFailure("UPDATE t SET id = 9223372036854775807 WHERE id = 1");
+            assertTrue(e instanceof ArithmeticException, "expected ArithmeticException but was " + e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package cn.autumnclouds.sql.sink;
+
+import cn.autumnclouds.sql.SqlSession;
+import cn.autumnclouds.sql.core.DatabaseContainer;
+import cn.autumnclouds.sql.core.SQLExecutor;
+import cn.autumnclouds.sql.util.ValueCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.assertTrue;
+import static cn.autumnclouds.sql.SqlSession.row;
+
+/**
+ * 查询结果编码器的测试
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class ResultSinkTest {
+
+    private static String encode(ResultSink sink, ByteArrayOutputStream out, List<String> columnNames,
+                                 List<List<Object>> rows) throws IOException {
+        sink.begin(columnNames);
+        for (List<Object> row : rows) {
+            sink.accept(row);
+        }
+        sink.end();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    public void testCsvQuotingAndNullVersusEmptyString() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String csv = encode(new CsvResultSink(out), out, Arrays.asList("id", "name"), Arrays.asList(
+                row(1, "plain"), row(2, "a,b"), row(3, "say \"hi\""), row(4, "line\nbreak"), row(5, ""), row(6, null)));
+        assertEquals("id,name\r\n1,plain\r\n2,\"a,b\"\r\n3,\"say \"\"hi\"\"\"\r\n4,\"line\nbreak\"\r\n5,\"\"\r\n6,\r\n", csv);
+    }
+
+    public void testJsonLinesEscapingAndNonFiniteDoubles() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String json = encode(new JsonLinesResultSink(out), out, Arrays.asList("k\"ey", "v"), Arrays.asList(
+                row("a\\b\"c\n\t\u0001", 1.5), row(null, Double.NaN), row(true, Double.POSITIVE_INFINITY),
+                row(new BigDecimal("1E+3"), Float.NEGATIVE_INFINITY), row(7L, 2.0f)));
+        assertEquals("{\"k\\\"ey\":\"a\\\\b\\\"c\\n\\t\\u0001\",\"v\":1.5}\n"
+                + "{\"k\\\"ey\":null,\"v\":\"NaN\"}\n"
+                + "{\"k\\\"ey\":true,\"v\":\"Infinity\"}\n"
+                + "{\"k\\\"ey\":1000,\"v\":\"-Infinity\"}\n"
+                + "{\"k\\\"ey\":7,\"v\":2.0}\n", json);
+    }
+
+    public void testBinaryRoundTripThroughValueCodec() throws Exception {
+        List<Object> values = row(null, 1, 2L, 3.5, 4.5f, (short) 5, (byte) 6, true, "名称", new BigDecimal("7.50"),
+                Date.valueOf("2023-05-29"), new Timestamp(1685332800123L));
+        List<String> columnNames = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            columnNames.add("c" + i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResultSink sink = new BinaryResultSink(out);
+        encode(sink, out, columnNames, Arrays.asList(values, values));
+
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+        assertEquals(BinaryResultSink.MAGIC, in.getInt());
+        assertEquals(BinaryResultSink.VERSION, in.get());
+        assertEquals(values.size(), in.getInt());
+        for (String columnName : columnNames) {
+            assertEquals(columnName, ValueCodec.readString(in));
+        }
+        for (int row = 0; row < 2; row++) {
+            assertEquals(BinaryResultSink.ROW_MARKER, in.get());
+            for (Object value : values) {
+                assertEquals(value, ValueCodec.readValue(in));
+            }
+        }
+        assertEquals(BinaryResultSink.END_MARKER, in.get());
+        assertEquals(2L, in.getLong());
+        assertEquals(0, in.remaining());
+    }
+
+    public void testAlignedTextWidensCellsAfterTheSample() throws Exception {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < AlignedTextResultSink.WIDTH_SAMPLE_ROWS; i++) {
+            rows.add(row(i % 10));
+        }
+        rows.add(row("much wider"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String text = encode(new AlignedTextResultSink(out), out, Arrays.asList("id"), rows);
+        String[] lines = text.split("\n");
+        // 列宽由列名和前 WIDTH_SAMPLE_ROWS 行决定，之后的宽值撑开单元格而不是被截断
+        assertEquals("+----+", lines[0]);
+        assertEquals("| id |", lines[1]);
+        assertEquals("| 0  |", lines[3]);
+        assertEquals("| much wider |", lines[3 + AlignedTextResultSink.WIDTH_SAMPLE_ROWS]);
+        assertEquals("+----+", lines[lines.length - 2]);
+        assertEquals((AlignedTextResultSink.WIDTH_SAMPLE_ROWS + 1) + " rows in set", lines[lines.length - 1]);
+    }
+
+    public void testSlowSinkDoesNotBlockWriters() throws Exception {
+        try (SqlSession session = new SqlSession("sink_test")) {
+            session.execute("CREATE TABLE t (id INT)");
+            session.execute("INSERT INTO t (id) VALUES (1), (2), (3)");
+
+            CountDownLatch accepted = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CollectingResultSink sink = new CollectingResultSink() {
+                @Override
+                public void accept(List<Object> row) {
+                    super.accept(row);
+                    accepted.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            Thread reader = new Thread(() -> session.getExecutor().executeSql("SELECT id FROM t", sink));
+            reader.start();
+            try {
+                assertTrue(accepted.await(10, TimeUnit.SECONDS), "the query did not reach the sink");
+                // 接收者阻塞时，其他会话的写入不需要等待表锁
+                SQLExecutor writer = new SQLExecutor(DatabaseContainer.getInstance());
+                writer.executeAsync("USE sink_test").get(10, TimeUnit.SECONDS);
+                assertEquals(1, writer.executeAsync("INSERT INTO t (id) VALUES (4)").get(10, TimeUnit.SECONDS).getUpdateCount());
+            } finally {
+                release.countDown();
+                reader.join();
+            }
+            assertEquals(4, session.query("SELECT id FROM t").size());
+        }
+    }
+}
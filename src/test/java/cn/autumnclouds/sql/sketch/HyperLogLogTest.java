@@ -0,0 +1,64 @@
+package cn.autumnclouds.sql.sketch;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.assertTrue;
+
+/**
+ * HyperLogLog 草图的误差和合并测试
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class HyperLogLogTest {
+
+    public void testEstimateWithinErrorBound() {
+        for (int precision : new int[]{10, HyperLogLog.DEFAULT_PRECISION}) {
+            for (int n : new int[]{1, 10, 100, 1000, 10000, 100000, 1000000}) {
+                HyperLogLog sketch = new HyperLogLog(precision);
+                for (int i = 0; i < n; i++) {
+                    sketch.add("value-" + i);
+                    // 重复值不影响估计
+                    sketch.add("value-" + i);
+                }
+                double error = Math.abs(sketch.estimate() - n);
+                // 4 倍相对标准误差，小基数时线性计数接近精确
+                assertTrue(error <= Math.max(1, 4 * sketch.relativeError() * n),
+                        "precision " + precision + ": estimate " + sketch.estimate() + " for " + n + " distinct values");
+            }
+        }
+    }
+
+    public void testEmptySketchAndNulls() {
+        HyperLogLog sketch = new HyperLogLog();
+        sketch.add(null);
+        assertEquals(0.0, sketch.estimate());
+        assertEquals(1.04 / Math.sqrt(1 << HyperLogLog.DEFAULT_PRECISION), sketch.relativeError());
+    }
+
+    public void testMergeEqualsSketchOfUnion() {
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        HyperLogLog all = new HyperLogLog();
+        for (long i = 0; i < 200000; i++) {
+            // 两部分数据有一半重叠
+            (i % 2 == 0 ? left : right).add(i);
+            if (i % 4 == 0) {
+                right.add(i);
+            }
+            all.add(i);
+        }
+        left.merge(right);
+        assertEquals(all.estimate(), left.estimate());
+    }
+
+    public void testInvalidPrecisionIsRejected() {
+        for (int precision : new int[]{3, 19}) {
+            try {
+                new HyperLogLog(precision);
+                throw new AssertionError("precision " + precision + " should be rejected");
+            } catch (IllegalArgumentException expected) {
+                // 预期的异常
+            }
+        }
+    }
+}
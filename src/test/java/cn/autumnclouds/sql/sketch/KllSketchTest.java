@@ -0,0 +1,102 @@
+package cn.autumnclouds.sql.sketch;
+
+import java.util.Random;
+
+import static cn.autumnclouds.sql.SqlSession.assertEquals;
+import static cn.autumnclouds.sql.SqlSession.assertTrue;
+
+/**
+ * KLL 草图的秩误差和合并测试
+ *
+ * @author Oreki
+ * @since 2026/10/19
+ */
+public class KllSketchTest {
+    private static final double[] FRACTIONS = {0.01, 0.05, 0.1, 0.25, 0.4, 0.5, 0.6, 0.75, 0.9, 0.95, 0.99};
+
+    // 打乱 0 到 n - 1 的整数，值等于其在全体数据中的秩
+    private static int[] shuffled(int n, long seed) {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+        return values;
+    }
+
+    // 草图中每个分位数的秩误差；报告的误差是单个分位数约 99% 置信度的界，这里要求不超过其两倍，确保测试结果稳定
+    private static int countExceeding(KllSketch sketch, int n) {
+        assertTrue(sketch.rankError() > 0, "sketch should be compacted");
+        int exceeding = 0;
+        for (double fraction : FRACTIONS) {
+            double error = Math.abs(sketch.quantile(fraction) / n - fraction);
+            assertTrue(error <= 2 * sketch.rankError(),
+                    "quantile " + fraction + " has rank error " + error + ", bound " + sketch.rankError());
+            if (error > sketch.rankError()) {
+                exceeding++;
+            }
+        }
+        return exceeding;
+    }
+
+    public void testSmallInputIsExact() {
+        KllSketch sketch = new KllSketch();
+        assertTrue(Double.isNaN(sketch.quantile(0.5)), "empty sketch should return NaN");
+        for (int value : shuffled(100, 1)) {
+            sketch.add(value);
+        }
+        assertEquals(0.0, sketch.rankError());
+        assertEquals(49.0, sketch.quantile(0.5));
+        assertEquals(0.0, sketch.quantile(0));
+        assertEquals(99.0, sketch.quantile(1));
+    }
+
+    public void testRankErrorHoldsAtStatedConfidence() {
+        int n = 100000;
+        int sketches = 40;
+        int exceeding = 0;
+        for (int seed = 0; seed < sketches; seed++) {
+            KllSketch sketch = new KllSketch();
+            for (int value : shuffled(n, seed)) {
+                sketch.add(value);
+            }
+            assertEquals((long) n, sketch.getCount());
+            exceeding += countExceeding(sketch, n);
+        }
+        // 约 1% 的分位数超出报告的误差，允许到 5%
+        assertTrue(exceeding <= sketches * FRACTIONS.length / 20, exceeding + " quantiles exceed the reported rank error");
+    }
+
+    public void testSmallKAndSortedInput() {
+        int n = 1000000;
+        KllSketch sketch = new KllSketch(50);
+        for (int i = 0; i < n; i++) {
+            sketch.add(i);
+        }
+        countExceeding(sketch, n);
+    }
+
+    public void testMergedSketchWithinRankError() {
+        int n = 1000000;
+        KllSketch[] parts = new KllSketch[8];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new KllSketch();
+        }
+        int[] values = shuffled(n, 7);
+        for (int i = 0; i < n; i++) {
+            parts[i % parts.length].add(values[i]);
+        }
+        KllSketch merged = new KllSketch();
+        for (KllSketch part : parts) {
+            merged.merge(part);
+        }
+        assertEquals((long) n, merged.getCount());
+        countExceeding(merged, n);
+    }
+}